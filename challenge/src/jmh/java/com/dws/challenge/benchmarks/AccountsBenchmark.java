@@ -0,0 +1,128 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Account creation, lookup and JSON (de)serialization of {@link Account}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class LookupState {
+
+    @Param({"100000"})
+    int accounts;
+
+    @Param({"uniform", "zipfian"})
+    String distribution;
+
+    AccountsRepository repository;
+
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      repository = Benchmarks.populatedRepository(accounts);
+      ids = Benchmarks.accountIds(accounts);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class LookupKeys {
+
+    Benchmarks.KeyChooser keys;
+
+    @Setup(Level.Trial)
+    public void setUp(LookupState state) {
+      keys = new Benchmarks.KeyChooser(state.distribution, state.accounts, Thread.currentThread().getId());
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class CreationState {
+
+    final AtomicLong sequence = new AtomicLong();
+
+    final BigDecimal balance = new BigDecimal("100.00");
+
+    AccountsRepository repository;
+
+    // A fresh map per iteration keeps its size, and so resize cost, comparable between runs
+    @Setup(Level.Iteration)
+    public void setUp() {
+      repository = new AccountsRepositoryInMemory();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class JsonState {
+
+    final ObjectMapper mapper = new ObjectMapper();
+
+    ObjectWriter writer;
+
+    ObjectReader reader;
+
+    Account account;
+
+    String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      writer = mapper.writerFor(Account.class);
+      reader = mapper.readerFor(Account.class);
+      account = new Account("Id-1234567", new BigDecimal("123.45"));
+      json = writer.writeValueAsString(account);
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Account getAccount(LookupState state, LookupKeys keys) {
+    return state.repository.getAccount(state.ids[keys.keys.next()]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void createAccount(CreationState state) {
+    state.repository.createAccount(new Account("Id-" + state.sequence.incrementAndGet(), state.balance));
+  }
+
+  @Benchmark
+  public String serializeAccount(JsonState state) throws IOException {
+    return state.writer.writeValueAsString(state.account);
+  }
+
+  @Benchmark
+  public Account deserializeAccount(JsonState state) throws IOException {
+    return state.reader.readValue(state.json);
+  }
+}
@@ -0,0 +1,99 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+/**
+ * Shared fixtures: a service wired the way Spring wires it, minus the context.
+ */
+final class Benchmarks {
+
+  static final NotificationService SILENT_NOTIFICATIONS = new NotificationService() {
+    @Override
+    public void notifyAboutTransfer(Account account, String transferDescription) {
+    }
+
+    @Override
+    public void sendNotification(String accountFromId, String s) {
+    }
+  };
+
+  private Benchmarks() {
+  }
+
+  static NotificationDispatcher dispatcher() {
+    return new NotificationDispatcher(SILENT_NOTIFICATIONS, 65536, 2, 1024,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+  }
+
+  static AccountsServiceImpl service(AccountsRepository repository, NotificationDispatcher dispatcher) {
+    return service(repository, dispatcher, TransferMetrics.disabled());
+  }
+
+  static AccountsServiceImpl service(AccountsRepository repository, NotificationDispatcher dispatcher,
+                                     TransferMetrics metrics) {
+    return new AccountsServiceImpl(repository, dispatcher, new AccountLockManager(1024), metrics, new TransferLedger());
+  }
+
+  /**
+   * Creates {@code count} accounts named {@link #accountId(int)} with a balance large enough that
+   * no benchmark transfer is ever rejected.
+   */
+  static AccountsRepository populatedRepository(int count) {
+    AccountsRepository repository = new AccountsRepositoryInMemory();
+    for (int i = 0; i < count; i++) {
+      repository.createAccount(new Account(accountId(i), new BigDecimal("1000000000000")));
+    }
+    return repository;
+  }
+
+  static String[] accountIds(int count) {
+    String[] ids = new String[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = accountId(i);
+    }
+    return ids;
+  }
+
+  static String accountId(int index) {
+    return "Id-" + index;
+  }
+
+  /**
+   * Picks account indexes uniformly or with a Zipfian hot set.
+   */
+  static final class KeyChooser {
+
+    private final SplittableRandom uniform;
+
+    private final ZipfianGenerator zipfian;
+
+    private final int accounts;
+
+    KeyChooser(String distribution, int accounts, long seed) {
+      this.accounts = accounts;
+      this.uniform = new SplittableRandom(seed);
+      this.zipfian = "zipfian".equals(distribution)
+              ? new ZipfianGenerator(accounts, ZipfianGenerator.DEFAULT_THETA, seed) : null;
+    }
+
+    int next() {
+      return zipfian != null ? zipfian.next() : uniform.nextInt(accounts);
+    }
+
+    int nextOther(int index) {
+      int other = next();
+      return other != index ? other : (index + 1) % accounts;
+    }
+  }
+}
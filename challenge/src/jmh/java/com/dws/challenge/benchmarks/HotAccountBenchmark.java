@@ -0,0 +1,152 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.TransferRateLimitedException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.HotAccountDetector;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferRateLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Latency of transfers between cold accounts while a few hot senders hammer one merchant
+ * account. {@code uncontrolled} runs without hot-account detection or rate limiting, {@code
+ * controlled} stripes the merchant's credits once it is detected and limits each source account.
+ * Compare the {@code cold} percentiles; a rate-limited hot sender backs off as a client honouring
+ * 429 would.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotAccountBenchmark {
+
+  static final String MERCHANT = "Id-merchant";
+
+  static final int HOT_SENDERS = 8;
+
+  @State(Scope.Group)
+  public static class ServiceState {
+
+    @Param({"uncontrolled", "striping", "rate-limit", "controlled"})
+    String mode;
+
+    @Param({"10000"})
+    int accounts;
+
+    @Param({"500"})
+    double transfersPerSecond;
+
+    @Param({"memory", "journal"})
+    String repository;
+
+    Path directory;
+
+    JournaledAccountsRepository journaled;
+
+    NotificationDispatcher dispatcher;
+
+    AccountsServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      AccountsRepository repository;
+      if ("journal".equals(this.repository)) {
+        directory = Files.createTempDirectory("hot-account-benchmark");
+        journaled = new JournaledAccountsRepository(directory, 64 << 20, true);
+        for (String id : Benchmarks.accountIds(accounts)) {
+          journaled.createAccount(new Account(id, new BigDecimal("1000000000000")));
+        }
+        repository = journaled;
+      } else {
+        repository = Benchmarks.populatedRepository(accounts);
+      }
+      repository.createAccount(new Account(MERCHANT, BigDecimal.ZERO));
+      dispatcher = Benchmarks.dispatcher();
+      boolean striping = "striping".equals(mode) || "controlled".equals(mode);
+      boolean rateLimit = "rate-limit".equals(mode) || "controlled".equals(mode);
+      service = new AccountsServiceImpl(repository, dispatcher, new AccountLockManager(1024),
+              TransferMetrics.disabled(), new TransferLedger(),
+              striping ? new HotAccountDetector(64, Duration.ofSeconds(1), 0) : HotAccountDetector.disabled(),
+              rateLimit ? new TransferRateLimiter(transfersPerSecond, 0) : TransferRateLimiter.disabled());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      dispatcher.shutdown();
+      if (journaled != null) {
+        journaled.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+          files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    SplittableRandom random;
+
+    final BigDecimal amount = new BigDecimal("1.25");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      random = new SplittableRandom(Thread.currentThread().getId());
+    }
+  }
+
+  @Benchmark
+  @Group("overload")
+  @GroupThreads(6)
+  public void hot(ServiceState state, ThreadState thread) {
+    try {
+      state.service.transfer(Benchmarks.accountId(thread.random.nextInt(HOT_SENDERS)), MERCHANT, thread.amount);
+    } catch (TransferRateLimitedException e) {
+      LockSupport.parkNanos(100_000);
+    }
+  }
+
+  @Benchmark
+  @Group("overload")
+  @GroupThreads(2)
+  public void cold(ServiceState state, ThreadState thread) {
+    int from = HOT_SENDERS + thread.random.nextInt(state.accounts - HOT_SENDERS);
+    int to = HOT_SENDERS + thread.random.nextInt(state.accounts - HOT_SENDERS);
+    if (from != to) {
+      state.service.transfer(Benchmarks.accountId(from), Benchmarks.accountId(to), thread.amount);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.TransferMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link TransferMetrics} on a transfer: compare the {@code disabled} and
+ * {@code prometheus} runs of {@code transfer}, and {@code recordTransfer} alone against the
+ * transfer latency. The notification workers share the CPU with the measured thread, so on
+ * machines with few cores {@code recordTransfer} is the more reliable of the two.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MetricsOverheadBenchmark {
+
+  @Param({"disabled", "prometheus"})
+  String metrics;
+
+  private static final int ACCOUNTS = 10000;
+
+  private final BigDecimal amount = new BigDecimal("1.25");
+
+  private final SplittableRandom random = new SplittableRandom(42);
+
+  private AccountsServiceImpl service;
+
+  private TransferMetrics transferMetrics;
+
+  private NotificationDispatcher dispatcher;
+
+  private String[] ids;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    dispatcher = Benchmarks.dispatcher();
+    transferMetrics = "prometheus".equals(metrics)
+            ? new TransferMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), dispatcher)
+            : TransferMetrics.disabled();
+    service = Benchmarks.service(Benchmarks.populatedRepository(ACCOUNTS), dispatcher, transferMetrics);
+    ids = Benchmarks.accountIds(ACCOUNTS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    dispatcher.shutdown();
+  }
+
+  @Benchmark
+  public void transfer() {
+    int from = random.nextInt(ACCOUNTS);
+    service.transfer(ids[from], ids[(from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS], amount);
+  }
+
+  @Benchmark
+  public void recordTransfer() {
+    long started = System.nanoTime();
+    transferMetrics.recordTransfer(started, System.nanoTime());
+  }
+}
@@ -0,0 +1,137 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * One payment fanned out to {@code legs} receivers: a single multi-leg transfer against the same
+ * legs issued as sequential single transfers, which lock and journal once per leg and are not
+ * atomic as a whole. Scores are payments per second. With {@code journal} every transfer waits
+ * for its journal record to be synced, which is where a single record per payment pays off.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MultiLegTransferBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ServiceState {
+
+    @Param({"2", "4", "8"})
+    int legs;
+
+    @Param({"10000"})
+    int accounts;
+
+    @Param({"memory", "journal"})
+    String repository;
+
+    Path directory;
+
+    JournaledAccountsRepository journaled;
+
+    NotificationDispatcher dispatcher;
+
+    AccountsServiceImpl service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+      dispatcher = Benchmarks.dispatcher();
+      if ("journal".equals(repository)) {
+        directory = Files.createTempDirectory("multi-leg-benchmark");
+        journaled = new JournaledAccountsRepository(directory, 64 << 20, true);
+        for (String id : Benchmarks.accountIds(accounts)) {
+          journaled.createAccount(new Account(id, new BigDecimal("1000000000000")));
+        }
+        service = Benchmarks.service(journaled, dispatcher);
+      } else {
+        service = Benchmarks.service(Benchmarks.populatedRepository(accounts), dispatcher);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+      dispatcher.shutdown();
+      if (journaled != null) {
+        journaled.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+          files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    SplittableRandom random;
+
+    final BigDecimal amount = new BigDecimal("1.25");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      random = new SplittableRandom(Thread.currentThread().getId());
+    }
+
+    String from(ServiceState state) {
+      return Benchmarks.accountId(random.nextInt(state.accounts));
+    }
+
+    List<TransferLeg> legs(ServiceState state, String from) {
+      List<TransferLeg> legs = new ArrayList<>(state.legs);
+      while (legs.size() < state.legs) {
+        String to = Benchmarks.accountId(random.nextInt(state.accounts));
+        if (!to.equals(from)) {
+          legs.add(new TransferLeg(to, amount));
+        }
+      }
+      return legs;
+    }
+  }
+
+  @Benchmark
+  public void multiLeg(ServiceState state, ThreadState thread) {
+    String from = thread.from(state);
+    state.service.transferMultiLeg(from, thread.legs(state, from));
+  }
+
+  @Benchmark
+  public void sequential(ServiceState state, ThreadState thread) {
+    String from = thread.from(state);
+    for (TransferLeg leg : thread.legs(state, from)) {
+      state.service.transfer(from, leg.getToAccountId(), leg.getAmount());
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.ShardedAccountsRepository;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput of {@link ShardedAccountsRepository} as the shard count grows, with a fixed
+ * number of callers. {@code local} keeps both accounts of a transfer on one shard, {@code uniform}
+ * picks them independently so most transfers take the two-phase cross-shard path. Scaling only
+ * shows with at least as many cores as shards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardScalingBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class ShardedState {
+
+    @Param({"1", "2", "4", "8"})
+    int shards;
+
+    @Param({"local", "uniform"})
+    String routing;
+
+    @Param({"10000"})
+    int accounts;
+
+    ShardedAccountsRepository repository;
+
+    NotificationDispatcher dispatcher;
+
+    AccountsServiceImpl service;
+
+    // Account ids grouped by the shard owning them
+    String[][] idsByShard;
+
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      repository = new ShardedAccountsRepository(shards);
+      List<List<String>> grouped = new ArrayList<>();
+      for (int i = 0; i < shards; i++) {
+        grouped.add(new ArrayList<>());
+      }
+      ids = Benchmarks.accountIds(accounts);
+      for (String id : ids) {
+        repository.createAccount(new Account(id, new BigDecimal("1000000000000")));
+        grouped.get(repository.shardOf(id)).add(id);
+      }
+      idsByShard = new String[shards][];
+      for (int i = 0; i < shards; i++) {
+        idsByShard[i] = grouped.get(i).toArray(new String[0]);
+      }
+      dispatcher = Benchmarks.dispatcher();
+      service = Benchmarks.service(repository, dispatcher);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      repository.close();
+      dispatcher.shutdown();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    SplittableRandom random;
+
+    final BigDecimal amount = new BigDecimal("1.25");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      random = new SplittableRandom(Thread.currentThread().getId());
+    }
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void transfer(ShardedState state, ThreadState thread) {
+    String from;
+    String to;
+    if ("local".equals(state.routing)) {
+      String[] shard = state.idsByShard[thread.random.nextInt(state.shards)];
+      int index = thread.random.nextInt(shard.length);
+      from = shard[index];
+      to = shard[(index + 1 + thread.random.nextInt(shard.length - 1)) % shard.length];
+    } else {
+      int index = thread.random.nextInt(state.accounts);
+      from = state.ids[index];
+      to = state.ids[(index + 1 + thread.random.nextInt(state.accounts - 1)) % state.accounts];
+    }
+    state.service.transfer(from, to, thread.amount);
+  }
+}
@@ -0,0 +1,104 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes allocated per transfer, meant to be run with the GC profiler:
+ * {@code -Djmh.args="TransferAllocationBenchmark -prof gc"} and read {@code gc.alloc.rate.norm}.
+ * Covers the {@link BigDecimal} entry point, the minor-unit one the controller uses, and a
+ * rejection for insufficient balance. The figure includes the dispatcher threads rendering the
+ * notification text.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class TransferAllocationBenchmark {
+
+  static final String EMPTY_ACCOUNT = "Id-empty";
+
+  @State(Scope.Benchmark)
+  public static class ServiceState {
+
+    @Param({"10000"})
+    int accounts;
+
+    AccountsServiceImpl service;
+
+    NotificationDispatcher dispatcher;
+
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      AccountsRepository repository = Benchmarks.populatedRepository(accounts);
+      repository.createAccount(new Account(EMPTY_ACCOUNT, BigDecimal.ZERO));
+      dispatcher = Benchmarks.dispatcher();
+      service = Benchmarks.service(repository, dispatcher);
+      ids = Benchmarks.accountIds(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      dispatcher.shutdown();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    Benchmarks.KeyChooser keys;
+
+    final BigDecimal amount = new BigDecimal("1.25");
+
+    @Setup(Level.Trial)
+    public void setUp(ServiceState service) {
+      keys = new Benchmarks.KeyChooser("uniform", service.accounts, Thread.currentThread().getId());
+    }
+  }
+
+  @Benchmark
+  public void transferDecimal(ServiceState service, ThreadState thread) {
+    int from = thread.keys.next();
+    service.service.transfer(service.ids[from], service.ids[thread.keys.nextOther(from)], thread.amount);
+  }
+
+  @Benchmark
+  public void transferMinorUnits(ServiceState service, ThreadState thread) {
+    int from = thread.keys.next();
+    service.service.transfer(service.ids[from], service.ids[thread.keys.nextOther(from)], 125L);
+  }
+
+  @Benchmark
+  public Object rejectedInsufficientBalance(ServiceState service, ThreadState thread) {
+    try {
+      service.service.transfer(EMPTY_ACCOUNT, service.ids[thread.keys.next()], 125L);
+      return null;
+    } catch (InsufficientBalanceException e) {
+      return e;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package com.dws.challenge.benchmarks;
+
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AccountsServiceImpl#transfer} and {@link AccountsServiceImpl#transferBatch} throughput,
+ * single- and multi-threaded, with uniform or Zipfian (hot account) key choice.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+  static final int BATCH_SIZE = 1000;
+
+  @State(Scope.Benchmark)
+  public static class ServiceState {
+
+    @Param({"10000"})
+    int accounts;
+
+    @Param({"uniform", "zipfian"})
+    String distribution;
+
+    AccountsServiceImpl service;
+
+    NotificationDispatcher dispatcher;
+
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      dispatcher = Benchmarks.dispatcher();
+      service = Benchmarks.service(Benchmarks.populatedRepository(accounts), dispatcher);
+      ids = Benchmarks.accountIds(accounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      dispatcher.shutdown();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    Benchmarks.KeyChooser keys;
+
+    final BigDecimal amount = new BigDecimal("1.25");
+
+    @Setup(Level.Trial)
+    public void setUp(ServiceState service) {
+      keys = new Benchmarks.KeyChooser(service.distribution, service.accounts, Thread.currentThread().getId());
+    }
+
+    List<TransferRequest> nextBatch(ServiceState service) {
+      List<TransferRequest> batch = new ArrayList<>(BATCH_SIZE);
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        int from = keys.next();
+        batch.add(new TransferRequest(service.ids[from], service.ids[keys.nextOther(from)], amount));
+      }
+      return batch;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void transferSingleThread(ServiceState service, ThreadState thread) {
+    transfer(service, thread);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void transferMultiThread(ServiceState service, ThreadState thread) {
+    transfer(service, thread);
+  }
+
+  @Benchmark
+  @Threads(1)
+  @OperationsPerInvocation(BATCH_SIZE)
+  public List<TransferResult> transferBatchSingleThread(ServiceState service, ThreadState thread) {
+    return service.service.transferBatch(thread.nextBatch(service));
+  }
+
+  private static void transfer(ServiceState service, ThreadState thread) {
+    int from = thread.keys.next();
+    service.service.transfer(service.ids[from], service.ids[thread.keys.nextOther(from)], thread.amount);
+  }
+}
@@ -1,34 +1,266 @@
 package com.dws.challenge.domain;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.math.BigDecimal;
-import lombok.Data;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 
-@Data
+/**
+ * Account state. The balance is held as a scaled {@code long} of minor units and converted to
+ * {@link BigDecimal} only at the edges (JSON, the service API). It lives in an immutable
+ * {@link AccountSnapshot} that every debit and credit replaces by compare-and-set, so changes are
+ * lock-free and readers take a consistent {@link #snapshot()} without ever waiting on a writer.
+ *
+ * <p>Every account holds one currency, an ISO 4217 code fixed when it is created; balances and
+ * amounts are kept with {@link #SCALE} decimal places whatever the currency.
+ *
+ * <p>An account that many transfers pay into can have its credits striped: they then land in
+ * separate cells instead of contending on the one balance, are merged on read, and are folded
+ * into the balance before every debit. A read racing a fold may briefly miss the credits being
+ * folded, never count them twice.
+ */
+@Getter
+@ToString
+@JsonPropertyOrder({"accountId", "balance", "currency"})
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Account {
 
+  /**
+   * Number of decimal places kept for every balance and amount.
+   */
+  public static final int SCALE = 2;
+
+  /**
+   * Currency of accounts created without one.
+   */
+  public static final String DEFAULT_CURRENCY = "EUR";
+
+  private static final int STRIPE_SPACING = 8;
+
   @NotNull
   @NotEmpty
+  @EqualsAndHashCode.Include
   private final String accountId;
 
   @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
-  private BigDecimal balance;
+  @Pattern(regexp = "[A-Z]{3}", message = "Currency must be a three-letter ISO 4217 code.")
+  private final String currency;
+
+  @JsonIgnore
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<AccountSnapshot> state;
+
+  // Pending credits, one cell per stripe spaced a cache line apart; null until striped
+  @JsonIgnore
+  @ToString.Exclude
+  @Getter(AccessLevel.NONE)
+  private volatile AtomicLongArray creditStripes;
 
   public Account(String accountId) {
-    this.accountId = accountId;
-    this.balance = BigDecimal.ZERO;
+    this(accountId, BigDecimal.ZERO);
+  }
+
+  public Account(String accountId, BigDecimal balance) {
+    this(accountId, balance, DEFAULT_CURRENCY);
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
-    @JsonProperty("balance") BigDecimal balance) {
+    @JsonProperty("balance") BigDecimal balance,
+    @JsonProperty("currency") String currency) {
+    this.accountId = accountId;
+    this.currency = currency == null ? DEFAULT_CURRENCY : currency;
+    this.state = new AtomicReference<>(new AccountSnapshot(accountId, toMinorUnits(balance), 0, this.currency));
+  }
+
+  private Account(String accountId, AccountSnapshot snapshot) {
     this.accountId = accountId;
-    this.balance = balance;
+    this.currency = snapshot.getCurrency();
+    this.state = new AtomicReference<>(snapshot);
+  }
+
+  /**
+   * An account rebuilt from state kept elsewhere, at the version it had there.
+   */
+  public static Account restore(String accountId, long balanceMinorUnits, long version, String currency) {
+    return new Account(accountId, new AccountSnapshot(accountId, balanceMinorUnits, version, currency));
+  }
+
+  @NotNull
+  @Min(value = 0, message = "Initial balance must be positive.")
+  @ToString.Include(name = "balance")
+  @EqualsAndHashCode.Include
+  public BigDecimal getBalance() {
+    return fromMinorUnits(getBalanceMinorUnits());
+  }
+
+  public void setBalance(BigDecimal balance) {
+    long balanceMinorUnits = toMinorUnits(balance);
+    // Pending credits are part of the balance being replaced
+    foldCredits();
+    AccountSnapshot current;
+    do {
+      current = state.get();
+    } while (!state.compareAndSet(current, current.withBalance(balanceMinorUnits)));
+  }
+
+  @JsonIgnore
+  public long getBalanceMinorUnits() {
+    return state.get().getBalanceMinorUnits() + pendingCredits();
+  }
+
+  /**
+   * The current balance and version, immutable and consistent with each other. Pending striped
+   * credits are included in the balance; they do not count as a version until folded.
+   */
+  public AccountSnapshot snapshot() {
+    AccountSnapshot current = state.get();
+    long pending = pendingCredits();
+    return pending == 0 ? current
+      : new AccountSnapshot(accountId, current.getBalanceMinorUnits() + pending, current.getVersion(), currency);
+  }
+
+  /**
+   * Spreads further credits over {@code stripes} cells, see the class comment. Cannot be undone;
+   * has no effect if the account is already striped.
+   */
+  public synchronized void stripeCredits(int stripes) {
+    if (creditStripes == null) {
+      creditStripes = new AtomicLongArray(Math.max(1, stripes) * STRIPE_SPACING);
+    }
+  }
+
+  @JsonIgnore
+  public boolean isCreditStriped() {
+    return creditStripes != null;
+  }
+
+  /**
+   * Credits the account without contending with other creditors if it is striped, otherwise the
+   * same as {@link #credit(long)}. Needs no lock on the account.
+   */
+  public void creditStriped(long amountMinorUnits) {
+    AtomicLongArray stripes = creditStripes;
+    if (stripes == null) {
+      credit(amountMinorUnits);
+      return;
+    }
+    // Threads keep their stripe, so a pool of creditors spreads out and stays spread
+    int stripe = (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 33)
+      % (stripes.length() / STRIPE_SPACING);
+    stripes.getAndAdd(stripe * STRIPE_SPACING, amountMinorUnits);
+  }
+
+  /**
+   * Debits the account unless that would take the balance below zero.
+   *
+   * @return {@code false} if the balance is insufficient, leaving it untouched
+   */
+  public boolean tryDebit(long amountMinorUnits) {
+    foldCredits();
+    AccountSnapshot current;
+    do {
+      current = state.get();
+      if (current.getBalanceMinorUnits() < amountMinorUnits) {
+        return false;
+      }
+    } while (!state.compareAndSet(current, current.withBalance(current.getBalanceMinorUnits() - amountMinorUnits)));
+    return true;
+  }
+
+  /**
+   * Replaces the balance if the account is still at {@code expectedVersion}, for a read-modify-write
+   * by a caller that read the account earlier. Pending striped credits are folded in first; as that
+   * moves the version, an update racing credits into a hot account fails and is retried instead of
+   * overwriting them.
+   *
+   * @return the state that was replaced, or {@code null} if the version no longer matches
+   */
+  public AccountSnapshot compareAndSetBalance(long expectedVersion, long balanceMinorUnits) {
+    foldCredits();
+    AccountSnapshot current;
+    do {
+      current = state.get();
+      if (current.getVersion() != expectedVersion) {
+        return null;
+      }
+    } while (!state.compareAndSet(current, current.withBalance(balanceMinorUnits)));
+    return current;
+  }
+
+  public void credit(long amountMinorUnits) {
+    AccountSnapshot current;
+    do {
+      current = state.get();
+    } while (!state.compareAndSet(current, current.withBalance(current.getBalanceMinorUnits() + amountMinorUnits)));
+  }
+
+  private long pendingCredits() {
+    AtomicLongArray stripes = creditStripes;
+    if (stripes == null) {
+      return 0;
+    }
+    long pending = 0;
+    for (int i = 0; i < stripes.length(); i += STRIPE_SPACING) {
+      pending += stripes.get(i);
+    }
+    return pending;
+  }
+
+  // Moves pending credits into the balance; each cell is taken atomically, so none is lost
+  private void foldCredits() {
+    AtomicLongArray stripes = creditStripes;
+    if (stripes == null) {
+      return;
+    }
+    long folded = 0;
+    for (int i = 0; i < stripes.length(); i += STRIPE_SPACING) {
+      if (stripes.get(i) != 0) {
+        folded += stripes.getAndSet(i, 0);
+      }
+    }
+    if (folded != 0) {
+      credit(folded);
+    }
+  }
+
+  /**
+   * Converts a decimal amount to minor units, rejecting amounts with more than {@link #SCALE}
+   * decimal places. A {@code null} amount is rejected, so a missing balance in a request
+   * body fails deserialization instead of producing an account without one.
+   */
+  public static long toMinorUnits(BigDecimal amount) {
+    if (amount == null) {
+      throw new IllegalArgumentException("Balance must be provided");
+    }
+    int scale = amount.scale();
+    if (scale >= 0 && scale <= SCALE && amount.precision() <= 16) {
+      // The usual case: exact, cannot overflow, and skips the BigInteger of unscaledValue()
+      return amount.movePointRight(SCALE).longValueExact();
+    }
+    try {
+      return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Amount " + amount + " cannot be represented with "
+        + SCALE + " decimal places", e);
+    }
+  }
+
+  public static BigDecimal fromMinorUnits(long minorUnits) {
+    return BigDecimal.valueOf(minorUnits, SCALE);
   }
 }
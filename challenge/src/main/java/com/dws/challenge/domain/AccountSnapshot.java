@@ -0,0 +1,36 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.math.BigDecimal;
+import lombok.Value;
+
+/**
+ * Immutable state of an account at one version. Every change to an {@link Account} installs a
+ * new snapshot, so a reader holding one sees a balance no transfer can change underneath it.
+ */
+@Value
+@JsonPropertyOrder({"accountId", "balance", "currency"})
+public class AccountSnapshot {
+
+  String accountId;
+
+  @JsonIgnore
+  long balanceMinorUnits;
+
+  /**
+   * Number of changes applied to the account since it was created.
+   */
+  @JsonIgnore
+  long version;
+
+  String currency;
+
+  public BigDecimal getBalance() {
+    return Account.fromMinorUnits(balanceMinorUnits);
+  }
+
+  AccountSnapshot withBalance(long balanceMinorUnits) {
+    return new AccountSnapshot(accountId, balanceMinorUnits, version + 1, currency);
+  }
+}
@@ -0,0 +1,14 @@
+package com.dws.challenge.domain;
+
+import lombok.Value;
+
+/**
+ * Body of every rejected request: a stable code to branch on and a message for people.
+ */
+@Value
+public class ApiError {
+
+  String error;
+
+  String message;
+}
@@ -0,0 +1,49 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.math.BigDecimal;
+import lombok.Value;
+
+/**
+ * One entry of the change feed: an account was created, or its balance changed by
+ * {@code change}. Sequence numbers are global and gap-free, so a consumer that has seen sequence
+ * {@code n} resumes from {@code n + 1}.
+ */
+@Value
+@JsonPropertyOrder({"sequence", "type", "accountId", "balance", "change", "version"})
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BalanceChange {
+
+  public enum Type {
+    ACCOUNT_CREATED,
+    BALANCE_CHANGED
+  }
+
+  long sequence;
+
+  Type type;
+
+  String accountId;
+
+  @JsonIgnore
+  long balanceMinorUnits;
+
+  @JsonIgnore
+  long changeMinorUnits;
+
+  /**
+   * Version of the account the balance belongs to, see {@link AccountSnapshot#getVersion()}.
+   */
+  long version;
+
+  public BigDecimal getBalance() {
+    return Account.fromMinorUnits(balanceMinorUnits);
+  }
+
+  // Absent for a creation
+  public BigDecimal getChange() {
+    return type == Type.ACCOUNT_CREATED ? null : Account.fromMinorUnits(changeMinorUnits);
+  }
+}
@@ -0,0 +1,22 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import javax.validation.constraints.NotNull;
+import lombok.Value;
+
+/**
+ * Ids of the accounts to read in one request.
+ */
+@Value
+public class BatchGetRequest {
+
+  @NotNull
+  List<String> accountIds;
+
+  @JsonCreator
+  public BatchGetRequest(@JsonProperty("accountIds") List<String> accountIds) {
+    this.accountIds = accountIds;
+  }
+}
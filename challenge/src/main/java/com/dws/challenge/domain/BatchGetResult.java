@@ -0,0 +1,16 @@
+package com.dws.challenge.domain;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Accounts found by a batch read in request order; ids that do not exist are listed in
+ * {@code missing} instead of failing the request.
+ */
+@Value
+public class BatchGetResult {
+
+  List<AccountSnapshot> accounts;
+
+  List<String> missing;
+}
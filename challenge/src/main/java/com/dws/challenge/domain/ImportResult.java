@@ -0,0 +1,26 @@
+package com.dws.challenge.domain;
+
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Outcome of a bulk import. {@code errors} lists rejected rows by line number, up to a limit;
+ * {@code rejected} counts all of them.
+ */
+@Value
+public class ImportResult {
+
+  long imported;
+
+  long rejected;
+
+  List<RowError> errors;
+
+  @Value
+  public static class RowError {
+
+    long line;
+
+    String message;
+  }
+}
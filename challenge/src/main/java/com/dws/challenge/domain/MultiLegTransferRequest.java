@@ -0,0 +1,24 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * A single debit of {@code fromAccountId} funding every leg, such as a payment and its fees.
+ */
+@Value
+public class MultiLegTransferRequest {
+
+  String fromAccountId;
+
+  List<TransferLeg> legs;
+
+  @JsonCreator
+  public MultiLegTransferRequest(@JsonProperty("fromAccountId") String fromAccountId,
+    @JsonProperty("legs") List<TransferLeg> legs) {
+    this.fromAccountId = fromAccountId;
+    this.legs = legs;
+  }
+}
@@ -0,0 +1,41 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import java.time.Instant;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import lombok.Value;
+
+/**
+ * A transfer to run at {@code executeAt} instead of right away.
+ */
+@Value
+public class ScheduleTransferRequest {
+
+  @NotEmpty
+  String fromAccountId;
+
+  @NotEmpty
+  String toAccountId;
+
+  @NotNull
+  @Positive
+  BigDecimal amount;
+
+  @NotNull
+  Instant executeAt;
+
+  @JsonCreator
+  public ScheduleTransferRequest(@JsonProperty("fromAccountId") String fromAccountId,
+    @JsonProperty("toAccountId") String toAccountId,
+    @JsonProperty("amount") BigDecimal amount,
+    @JsonProperty("executeAt") Instant executeAt) {
+    this.fromAccountId = fromAccountId;
+    this.toAccountId = toAccountId;
+    this.amount = amount;
+    this.executeAt = executeAt;
+  }
+}
@@ -0,0 +1,36 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.Value;
+
+/**
+ * A transfer waiting for its time. {@code executeAt} is the time it was asked for plus any
+ * jitter applied when it was scheduled; it runs at the first scheduler tick from then on.
+ */
+@Value
+@JsonPropertyOrder({"id", "fromAccountId", "toAccountId", "amount", "executeAt"})
+public class ScheduledTransfer {
+
+  long id;
+
+  String fromAccountId;
+
+  String toAccountId;
+
+  @JsonIgnore
+  long amountMinorUnits;
+
+  @JsonIgnore
+  long executeAtMillis;
+
+  public BigDecimal getAmount() {
+    return Account.fromMinorUnits(amountMinorUnits);
+  }
+
+  public Instant getExecuteAt() {
+    return Instant.ofEpochMilli(executeAtMillis);
+  }
+}
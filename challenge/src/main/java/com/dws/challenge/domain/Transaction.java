@@ -0,0 +1,20 @@
+package com.dws.challenge.domain;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import lombok.Value;
+
+/**
+ * One ledger entry as seen from an account: {@code amount} is negative when money left it.
+ */
+@Value
+public class Transaction {
+
+  long id;
+
+  Instant timestamp;
+
+  String counterpartyAccountId;
+
+  BigDecimal amount;
+}
@@ -0,0 +1,18 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Transactions of an account, newest first. Pass {@code nextCursor} back to continue with older
+ * ones; it is absent on the last page.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionPage {
+
+  List<Transaction> transactions;
+
+  Long nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import lombok.Value;
+
+/**
+ * One credit of a multi-leg transfer: {@code amount} goes to {@code toAccountId}.
+ */
+@Value
+public class TransferLeg {
+
+  String toAccountId;
+
+  BigDecimal amount;
+
+  @JsonCreator
+  public TransferLeg(@JsonProperty("toAccountId") String toAccountId,
+    @JsonProperty("amount") BigDecimal amount) {
+    this.toAccountId = toAccountId;
+    this.amount = amount;
+  }
+}
@@ -0,0 +1,28 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.math.BigDecimal;
+import lombok.Value;
+
+/**
+ * One transfer of a batch: {@code amount} moves from {@code fromAccountId} to {@code toAccountId}.
+ */
+@Value
+public class TransferRequest {
+
+  String fromAccountId;
+
+  String toAccountId;
+
+  BigDecimal amount;
+
+  @JsonCreator
+  public TransferRequest(@JsonProperty("fromAccountId") String fromAccountId,
+    @JsonProperty("toAccountId") String toAccountId,
+    @JsonProperty("amount") BigDecimal amount) {
+    this.fromAccountId = fromAccountId;
+    this.toAccountId = toAccountId;
+    this.amount = amount;
+  }
+}
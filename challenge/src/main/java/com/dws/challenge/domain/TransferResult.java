@@ -0,0 +1,31 @@
+package com.dws.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Value;
+
+/**
+ * Outcome of one item of a batch, identified by its position in the request.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransferResult {
+
+  public enum Status {
+    SUCCEEDED,
+    REJECTED
+  }
+
+  int index;
+
+  Status status;
+
+  String message;
+
+  public static TransferResult succeeded(int index) {
+    return new TransferResult(index, Status.SUCCEEDED, null);
+  }
+
+  public static TransferResult rejected(int index, String message) {
+    return new TransferResult(index, Status.REJECTED, message);
+  }
+}
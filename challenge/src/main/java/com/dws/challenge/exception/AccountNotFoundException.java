@@ -0,0 +1,26 @@
+package com.dws.challenge.exception;
+
+/**
+ * A request named an account that does not exist. Still an {@link IllegalArgumentException}, as
+ * callers checking for bad arguments should keep catching it.
+ */
+public class AccountNotFoundException extends IllegalArgumentException {
+
+  private final String accountId;
+
+  public AccountNotFoundException(String accountId) {
+    super("Account not found: " + accountId);
+    this.accountId = accountId;
+  }
+
+  public String getAccountId() {
+    return accountId;
+  }
+
+  // Expected under load from clients probing ids, so it captures no stack trace; skipped here as
+  // IllegalArgumentException has no constructor that turns it off
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
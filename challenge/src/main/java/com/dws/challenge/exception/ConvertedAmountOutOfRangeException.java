@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * A transfer between currencies converts to more minor units than a balance can hold. The amount
+ * is what is wrong, so the client should not retry it unchanged.
+ */
+public class ConvertedAmountOutOfRangeException extends RuntimeException {
+
+  public ConvertedAmountOutOfRangeException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -1,24 +1,12 @@
 package com.dws.challenge.exception;
 
+/**
+ * An account with the same id already exists.
+ */
 public class DuplicateAccountIdException extends RuntimeException {
 
   public DuplicateAccountIdException(String message) {
-
-    super(message);
-  }
-
-
-  //Added new
-  public class AccountNotFoundException extends RuntimeException {
-    public AccountNotFoundException(String message) {
-      super(message);
-    }
-  }
-
-  //Added new
-  public static class InsufficientBalanceException extends RuntimeException {
-    public InsufficientBalanceException(String message) {
-      super(message);
-    }
+    // Reported to the client, never a fault worth a stack trace
+    super(message, null, false, false);
   }
 }
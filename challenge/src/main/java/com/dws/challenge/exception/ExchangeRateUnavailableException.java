@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * A cross-currency transfer has no usable exchange rate: the pair is unknown or the cached rates
+ * are older than allowed. The client may retry once rates are refreshed.
+ */
+public class ExchangeRateUnavailableException extends RuntimeException {
+
+  public ExchangeRateUnavailableException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,11 @@
+package com.dws.challenge.exception;
+
+/**
+ * A request with the same idempotency key is still being processed.
+ */
+public class IdempotencyKeyInUseException extends RuntimeException {
+
+  public IdempotencyKeyInUseException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,11 @@
+package com.dws.challenge.exception;
+
+/**
+ * An idempotency key was reused for a request with different parameters.
+ */
+public class IdempotencyKeyMismatchException extends RuntimeException {
+
+  public IdempotencyKeyMismatchException(String message) {
+    super(message);
+  }
+}
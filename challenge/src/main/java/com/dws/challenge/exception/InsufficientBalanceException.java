@@ -0,0 +1,19 @@
+package com.dws.challenge.exception;
+
+/**
+ * The source account cannot fund a transfer.
+ */
+public class InsufficientBalanceException extends IllegalArgumentException {
+
+  public InsufficientBalanceException(String message) {
+    super(message);
+  }
+
+  // An expected business outcome, not a fault: no stack trace is captured, so it costs little more
+  // to throw than a return value. IllegalArgumentException has no constructor that turns the trace
+  // off, nor suppression, so it is skipped here and instances are not shared.
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * A change feed subscriber asked to resume from a sequence number the feed no longer holds, or
+ * has not reached, such as one from before a restart.
+ */
+public class SequenceExpiredException extends RuntimeException {
+
+  public SequenceExpiredException(String message) {
+    super(message);
+  }
+}
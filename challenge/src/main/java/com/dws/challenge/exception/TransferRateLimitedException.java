@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+/**
+ * The source account has used up its transfer rate, the client should retry later.
+ */
+public class TransferRateLimitedException extends RuntimeException {
+
+  public TransferRateLimitedException(String message) {
+    // Thrown at the rate it is meant to shed, so it captures no stack trace, and without
+    // suppression one instance can be shared without collecting exceptions from its throw sites
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+/**
+ * The configured account repository cannot carry out this kind of transfer, such as a
+ * conditional or cross-currency one. Nothing is wrong with the request itself; another
+ * deployment could accept it.
+ */
+public class UnsupportedTransferException extends RuntimeException {
+
+  public UnsupportedTransferException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+/**
+ * A conditional transfer named an account version that is no longer current: the account changed
+ * since the caller read it.
+ */
+public class VersionConflictException extends RuntimeException {
+
+  public VersionConflictException(String message) {
+    // Expected under contention, the caller re-reads and retries; no stack trace is captured
+    super(message, null, false, false);
+  }
+}
@@ -1,8 +1,13 @@
 package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
@@ -10,4 +15,75 @@ public interface AccountsRepository {
   Account getAccount(String accountId);
 
   void clearAccounts();
+
+  /**
+   * Looks up several accounts in one call, in the order of {@code accountIds}, with {@code null}
+   * for an id that does not exist.
+   */
+  default List<Account> getAccounts(List<String> accountIds) {
+    List<Account> accounts = new ArrayList<>(accountIds.size());
+    for (String accountId : accountIds) {
+      accounts.add(getAccount(accountId));
+    }
+    return accounts;
+  }
+
+  /**
+   * Creates several accounts at once. An account that cannot be created, because its id already
+   * exists or the repository cannot store it, is skipped rather than failing the rest.
+   *
+   * @return the accounts that were not created, in input order
+   */
+  default List<RejectedAccount> createAccounts(List<Account> accounts) {
+    List<RejectedAccount> duplicates = new ArrayList<>();
+    for (Account account : accounts) {
+      try {
+        createAccount(account);
+      } catch (DuplicateAccountIdException e) {
+        duplicates.add(new RejectedAccount(account, e.getMessage()));
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * Replaces the balance of the account if its version is still {@code expectedVersion}, atomically
+   * with the check. Callers hold the account's lock and record the change like any other.
+   *
+   * @return the state that was replaced, or {@code null} if the version no longer matches
+   * @throws AccountNotFoundException if the account does not exist
+   */
+  default AccountSnapshot compareAndUpdate(String accountId, long expectedVersion, long balanceMinorUnits) {
+    Account account = getAccount(accountId);
+    if (account == null) {
+      throw new AccountNotFoundException(accountId);
+    }
+    return account.compareAndSetBalance(expectedVersion, balanceMinorUnits);
+  }
+
+  /**
+   * Records balance changes that are applied to the stored accounts as one unit, such as both
+   * legs of a transfer. Callers hold the locks of every account involved. Repositories without
+   * durable storage have nothing to record.
+   *
+   * @return a position to pass to {@link #awaitDurable(long)}
+   */
+  default long recordBalanceChanges(String[] accountIds, long[] deltasMinorUnits, int count) {
+    return 0;
+  }
+
+  /**
+   * {@link #recordBalanceChanges} for the two legs of a single transfer.
+   */
+  default long recordTransfer(String accountFromId, String accountToId, long amountMinorUnits) {
+    return recordBalanceChanges(new String[] {accountFromId, accountToId},
+            new long[] {-amountMinorUnits, amountMinorUnits}, 2);
+  }
+
+  /**
+   * Blocks until everything recorded up to {@code position} survives a crash. Called after the
+   * account locks are released so that concurrent writers can share one sync.
+   */
+  default void awaitDurable(long position) {
+  }
 }
@@ -2,15 +2,34 @@ package com.dws.challenge.repository;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
+@ConditionalOnProperty(name = "challenge.repository.type", havingValue = "memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<String, Account> accounts;
+
+    public AccountsRepositoryInMemory() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity accounts to size the map for up front, so that a large import does
+     *                        not pay for repeated rehashing
+     */
+    @Autowired
+    public AccountsRepositoryInMemory(@Value("${challenge.repository.initial-capacity:16}") int initialCapacity) {
+        this.accounts = new ConcurrentHashMap<>(initialCapacity);
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
@@ -21,6 +40,17 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         }
     }
 
+    @Override
+    public List<RejectedAccount> createAccounts(List<Account> newAccounts) {
+        List<RejectedAccount> duplicates = new ArrayList<>();
+        for (Account account : newAccounts) {
+            if (accounts.putIfAbsent(account.getAccountId(), account) != null) {
+                duplicates.add(RejectedAccount.duplicate(account));
+            }
+        }
+        return duplicates;
+    }
+
     @Override
     public Account getAccount(String accountId) {
         return accounts.get(accountId);
@@ -32,4 +62,10 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
         accounts.clear();
     }
 
+    // Nothing to record, and nothing to allocate for it on the transfer path
+    @Override
+    public long recordTransfer(String accountFromId, String accountToId, long amountMinorUnits) {
+        return 0;
+    }
+
 }
@@ -0,0 +1,57 @@
+package com.dws.challenge.repository;
+
+import java.util.Arrays;
+
+/**
+ * Maps keys to shards through a hash ring with {@link #VIRTUAL_NODES} points per shard. The points
+ * of shard {@code i} do not depend on the shard count, so growing the ring from N to N+1 shards
+ * only moves the keys that land on the new shard's points, about 1/(N+1) of them.
+ */
+final class ConsistentHashRing {
+
+    static final int VIRTUAL_NODES = 128;
+
+    private final long[] points;
+
+    private final int[] shards;
+
+    ConsistentHashRing(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        long[][] nodes = new long[shardCount * VIRTUAL_NODES][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                nodes[shard * VIRTUAL_NODES + node] = new long[] {mix(((long) shard << 32) | node), shard};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[nodes.length];
+        this.shards = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            points[i] = nodes[i][0];
+            shards[i] = (int) nodes[i][1];
+        }
+    }
+
+    /**
+     * The shard owning the first ring point at or after the key's hash, wrapping around.
+     */
+    int shardOf(String key) {
+        int index = Arrays.binarySearch(points, mix(key.hashCode()));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return shards[index == points.length ? 0 : index];
+    }
+
+    // MurmurHash3 finalizer, spreads String.hashCode over the whole ring
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
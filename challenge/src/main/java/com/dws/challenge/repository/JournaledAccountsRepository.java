@@ -0,0 +1,189 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.journal.TransferJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accounts kept in memory like {@link AccountsRepositoryInMemory}, with every change appended to
+ * a {@link TransferJournal} and the map rebuilt from it on startup. The journal is compacted into
+ * a snapshot in the background at a fixed interval.
+ */
+@Repository
+@ConditionalOnProperty(name = "challenge.repository.type", havingValue = "journal")
+@Slf4j
+public class JournaledAccountsRepository implements AccountsRepository, TransferJournal.Visitor {
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    private final TransferJournal journal;
+
+    private final boolean syncWrites;
+
+    private final ScheduledExecutorService compactor;
+
+    public JournaledAccountsRepository(@Value("${challenge.journal.directory:data/journal}") String directory,
+                                       @Value("${challenge.journal.segment-size:67108864}") int segmentSize,
+                                       @Value("${challenge.journal.sync:true}") boolean syncWrites,
+                                       @Value("${challenge.journal.snapshot-interval-ms:60000}") long snapshotIntervalMillis)
+            throws IOException {
+        this(Paths.get(directory), segmentSize, syncWrites, snapshotIntervalMillis);
+    }
+
+    public JournaledAccountsRepository(Path directory, int segmentSize, boolean syncWrites) throws IOException {
+        this(directory, segmentSize, syncWrites, 0);
+    }
+
+    /**
+     * @param snapshotIntervalMillis how often to compact the journal, 0 to only compact on demand
+     */
+    public JournaledAccountsRepository(Path directory, int segmentSize, boolean syncWrites,
+                                       long snapshotIntervalMillis) throws IOException {
+        this.syncWrites = syncWrites;
+        long started = System.nanoTime();
+        this.journal = new TransferJournal(directory, segmentSize, this);
+        log.info("Recovered {} accounts from {} in {} ms", accounts.size(), directory,
+                (System.nanoTime() - started) / 1_000_000);
+
+        if (snapshotIntervalMillis > 0) {
+            this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transfer-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.compactor.scheduleWithFixedDelay(this::compactQuietly, snapshotIntervalMillis,
+                    snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.compactor = null;
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        long position;
+        // Creation is journaled before the account becomes visible, so no transfer record can
+        // precede it; serializing creations keeps a rejected duplicate out of the journal.
+        synchronized (this) {
+            if (accounts.containsKey(account.getAccountId())) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+            position = journal.appendAccountCreated(account.getAccountId(), account.getBalanceMinorUnits(),
+                    account.getCurrency());
+            accounts.put(account.getAccountId(), account);
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public List<RejectedAccount> createAccounts(List<Account> newAccounts) {
+        List<RejectedAccount> duplicates = new ArrayList<>();
+        long position = 0;
+        synchronized (this) {
+            for (Account account : newAccounts) {
+                if (accounts.containsKey(account.getAccountId())) {
+                    duplicates.add(RejectedAccount.duplicate(account));
+                    continue;
+                }
+                position = journal.appendAccountCreated(account.getAccountId(), account.getBalanceMinorUnits(),
+                        account.getCurrency());
+                accounts.put(account.getAccountId(), account);
+            }
+        }
+        // One sync for the whole batch
+        awaitDurable(position);
+        return duplicates;
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return accounts.get(accountId);
+    }
+
+    @Override
+    public void clearAccounts() {
+        long position;
+        synchronized (this) {
+            position = journal.appendAccountsCleared();
+            accounts.clear();
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public long recordBalanceChanges(String[] accountIds, long[] deltasMinorUnits, int count) {
+        return journal.appendBalanceChanges(accountIds, deltasMinorUnits, count);
+    }
+
+    @Override
+    public long recordTransfer(String accountFromId, String accountToId, long amountMinorUnits) {
+        return journal.appendTransfer(accountFromId, accountToId, amountMinorUnits);
+    }
+
+    @Override
+    public void awaitDurable(long position) {
+        if (syncWrites) {
+            journal.awaitDurable(position);
+        }
+    }
+
+    /**
+     * Writes a snapshot of everything in the sealed journal segments and drops those segments.
+     */
+    public boolean compact() throws IOException {
+        return journal.compact();
+    }
+
+    private void compactQuietly() {
+        try {
+            journal.compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Journal compaction failed, will retry at the next interval", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        journal.close();
+    }
+
+    @Override
+    public void accountCreated(String accountId, long balanceMinorUnits, String currency) {
+        accounts.putIfAbsent(accountId, new Account(accountId, Account.fromMinorUnits(balanceMinorUnits), currency));
+    }
+
+    @Override
+    public void balancesChanged(String[] accountIds, long[] deltasMinorUnits, int count) {
+        for (int i = 0; i < count; i++) {
+            Account account = accounts.get(accountIds[i]);
+            if (account == null) {
+                throw new IllegalStateException("Journal changes unknown account " + accountIds[i]);
+            }
+            account.credit(deltasMinorUnits[i]);
+        }
+    }
+
+    @Override
+    public void accountsCleared() {
+        accounts.clear();
+    }
+}
@@ -0,0 +1,523 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.UnsupportedTransferException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Accounts in an open-addressing hash table outside the heap, for account counts an on-heap map
+ * cannot hold without a huge heap. Every account is one fixed-size slot of direct
+ * {@link ByteBuffer}s with its hash, id bytes, currency, balance and version inline: 24 bytes plus the id
+ * capacity, and nothing for the collector to trace. Slots are found by linear probing from the
+ * hash, and the table doubles once it is {@link #LOAD_FACTOR} full.
+ *
+ * <p>The repository owns the balances: {@link #getAccount} returns a detached copy and balances
+ * only change through {@link #transfer}, which refuses transfers between currencies, and
+ * {@link #compareAndUpdate}. Balances are read and changed under lock stripes chosen
+ * by account id. Inserts are serialized and publish a slot's hash last, so a lookup never matches
+ * a slot whose id is still being written. Growing the table excludes everything else.
+ */
+@Repository
+@ConditionalOnProperty(name = "challenge.repository.type", havingValue = "offheap")
+public class OffHeapAccountsRepository implements PartitionedAccountsRepository {
+
+    static final double LOAD_FACTOR = 0.75;
+
+    // Slot layout: hash (int, 0 for an empty slot), id length (short), currency (short), balance,
+    // version, id bytes
+    private static final int HASH = 0;
+
+    private static final int ID_LENGTH = 4;
+
+    private static final int CURRENCY = 6;
+
+    private static final int BALANCE = 8;
+
+    private static final int VERSION = 16;
+
+    private static final int ID = 24;
+
+    private static final VarHandle SLOT_HASH =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private static final int LOCK_STRIPES = 1024;
+
+    private final int maxIdLength;
+
+    private final int slotSize;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+
+    private final StampedLock tableLock = new StampedLock();
+
+    private final Object insertLock = new Object();
+
+    // Replaced only while holding both the insert lock and the table write lock
+    private Table table;
+
+    // Guarded by insertLock
+    private long size;
+
+    /**
+     * @param initialCapacity accounts to size the table for up front, growing it later copies
+     *                        every slot and briefly needs the old and the new table
+     * @param maxIdLength     longest account id in UTF-8 bytes, every slot reserves this much
+     */
+    public OffHeapAccountsRepository(@Value("${challenge.offheap.initial-capacity:1048576}") long initialCapacity,
+                                     @Value("${challenge.offheap.max-id-length:24}") int maxIdLength) {
+        if (initialCapacity <= 0 || maxIdLength <= 0 || maxIdLength > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity and id length must be positive");
+        }
+        this.maxIdLength = maxIdLength;
+        this.slotSize = ID + (maxIdLength + 7 & ~7);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.table = new Table(slotsFor(initialCapacity), slotSize);
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        checkIdLength(account.getAccountId());
+        synchronized (insertLock) {
+            if (!insert(account)) {
+                throw new DuplicateAccountIdException(
+                        "Account id " + account.getAccountId() + " already exists!");
+            }
+        }
+    }
+
+    /**
+     * Same as {@link AccountsRepository#createAccounts}; an id longer than a slot holds is rejected
+     * like a duplicate, leaving the other accounts to be created.
+     */
+    @Override
+    public List<RejectedAccount> createAccounts(List<Account> newAccounts) {
+        List<RejectedAccount> rejected = new ArrayList<>();
+        synchronized (insertLock) {
+            for (Account account : newAccounts) {
+                String tooLong = idLengthProblem(account.getAccountId());
+                if (tooLong != null) {
+                    rejected.add(new RejectedAccount(account, tooLong));
+                } else if (!insert(account)) {
+                    rejected.add(RejectedAccount.duplicate(account));
+                }
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * A copy of the stored account; changing it does not change the store.
+     */
+    @Override
+    public Account getAccount(String accountId) {
+        int hash = hash(accountId);
+        byte[] utf8 = nonAsciiBytes(accountId);
+        long balance;
+        long version;
+        String currency;
+        long stamp = tableLock.readLock();
+        try {
+            Table table = this.table;
+            long slot = probe(table, accountId, utf8, hash);
+            if (slot < 0) {
+                return null;
+            }
+            ByteBuffer buffer = table.buffer(slot);
+            int offset = table.offset(slot);
+            currency = unpackCurrency(buffer.getShort(offset + CURRENCY));
+            ReentrantLock stripe = stripes[hash & LOCK_STRIPES - 1];
+            stripe.lock();
+            try {
+                balance = buffer.getLong(offset + BALANCE);
+                version = buffer.getLong(offset + VERSION);
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+        return Account.restore(accountId, balance, version, currency);
+    }
+
+    /**
+     * Empties the table in place, keeping its capacity the way {@link java.util.HashMap#clear} does.
+     * Direct memory is only returned once its buffers are collected, so a fresh table would need
+     * room for both.
+     */
+    @Override
+    public void clearAccounts() {
+        synchronized (insertLock) {
+            long stamp = tableLock.writeLock();
+            try {
+                byte[] zeros = new byte[1 << 16];
+                for (ByteBuffer buffer : table.buffers) {
+                    ByteBuffer target = buffer.duplicate();
+                    target.clear();
+                    while (target.hasRemaining()) {
+                        target.put(zeros, 0, Math.min(zeros.length, target.remaining()));
+                    }
+                }
+                size = 0;
+            } finally {
+                tableLock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public boolean transfer(String accountFromId, String accountToId, long amountMinorUnits) {
+        int fromHash = hash(accountFromId);
+        int toHash = hash(accountToId);
+        byte[] fromUtf8 = nonAsciiBytes(accountFromId);
+        byte[] toUtf8 = nonAsciiBytes(accountToId);
+        long stamp = tableLock.readLock();
+        try {
+            Table table = this.table;
+            long fromSlot = existing(table, accountFromId, fromUtf8, fromHash);
+            long toSlot = existing(table, accountToId, toUtf8, toHash);
+            checkSameCurrency(table, fromSlot, toSlot);
+            int first = Math.min(fromHash & LOCK_STRIPES - 1, toHash & LOCK_STRIPES - 1);
+            int second = Math.max(fromHash & LOCK_STRIPES - 1, toHash & LOCK_STRIPES - 1);
+            stripes[first].lock();
+            if (second != first) {
+                stripes[second].lock();
+            }
+            try {
+                if (table.buffer(fromSlot).getLong(table.offset(fromSlot) + BALANCE) < amountMinorUnits) {
+                    return false;
+                }
+                change(table, fromSlot, -amountMinorUnits);
+                change(table, toSlot, amountMinorUnits);
+                return true;
+            } finally {
+                if (second != first) {
+                    stripes[second].unlock();
+                }
+                stripes[first].unlock();
+            }
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean transfer(String accountFromId, String[] accountToIds, long[] amountsMinorUnits) {
+        long total = 0;
+        int[] lockOrder = new int[accountToIds.length + 1];
+        lockOrder[0] = hash(accountFromId) & LOCK_STRIPES - 1;
+        for (int i = 0; i < accountToIds.length; i++) {
+            lockOrder[i + 1] = hash(accountToIds[i]) & LOCK_STRIPES - 1;
+            total = Math.addExact(total, amountsMinorUnits[i]);
+        }
+        Arrays.sort(lockOrder);
+
+        long stamp = tableLock.readLock();
+        try {
+            Table table = this.table;
+            long fromSlot = existing(table, accountFromId, nonAsciiBytes(accountFromId), hash(accountFromId));
+            long[] toSlots = new long[accountToIds.length];
+            for (int i = 0; i < accountToIds.length; i++) {
+                toSlots[i] = existing(table, accountToIds[i], nonAsciiBytes(accountToIds[i]), hash(accountToIds[i]));
+                checkSameCurrency(table, fromSlot, toSlots[i]);
+            }
+            int locked = 0;
+            try {
+                for (int i = 0; i < lockOrder.length; i++) {
+                    if (i == 0 || lockOrder[i] != lockOrder[i - 1]) {
+                        stripes[lockOrder[i]].lock();
+                        lockOrder[locked++] = lockOrder[i];
+                    }
+                }
+                if (table.buffer(fromSlot).getLong(table.offset(fromSlot) + BALANCE) < total) {
+                    return false;
+                }
+                change(table, fromSlot, -total);
+                for (int i = 0; i < toSlots.length; i++) {
+                    change(table, toSlots[i], amountsMinorUnits[i]);
+                }
+                return true;
+            } finally {
+                for (int i = locked - 1; i >= 0; i--) {
+                    stripes[lockOrder[i]].unlock();
+                }
+            }
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public AccountSnapshot compareAndUpdate(String accountId, long expectedVersion, long balanceMinorUnits) {
+        int hash = hash(accountId);
+        long stamp = tableLock.readLock();
+        try {
+            Table table = this.table;
+            long slot = existing(table, accountId, nonAsciiBytes(accountId), hash);
+            ByteBuffer buffer = table.buffer(slot);
+            int offset = table.offset(slot);
+            ReentrantLock stripe = stripes[hash & LOCK_STRIPES - 1];
+            stripe.lock();
+            try {
+                long version = buffer.getLong(offset + VERSION);
+                if (version != expectedVersion) {
+                    return null;
+                }
+                long previousBalance = buffer.getLong(offset + BALANCE);
+                buffer.putLong(offset + BALANCE, balanceMinorUnits);
+                buffer.putLong(offset + VERSION, version + 1);
+                return new AccountSnapshot(accountId, previousBalance, version,
+                        unpackCurrency(buffer.getShort(offset + CURRENCY)));
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    public long getSize() {
+        synchronized (insertLock) {
+            return size;
+        }
+    }
+
+    /**
+     * Bytes of direct memory held by the table.
+     */
+    public long getOffHeapBytes() {
+        long stamp = tableLock.readLock();
+        try {
+            return table.capacity * slotSize;
+        } finally {
+            tableLock.unlockRead(stamp);
+        }
+    }
+
+    // Caller holds insertLock, which keeps the table from being replaced by anyone else
+    private boolean insert(Account account) {
+        if (size >= (long) (table.capacity * LOAD_FACTOR)) {
+            grow();
+        }
+        String accountId = account.getAccountId();
+        byte[] utf8 = nonAsciiBytes(accountId);
+        int hash = hash(accountId);
+        long slot = probe(table, accountId, utf8, hash);
+        if (slot >= 0) {
+            return false;
+        }
+        slot = -1 - slot;
+        ByteBuffer buffer = table.buffer(slot);
+        int offset = table.offset(slot);
+        putId(buffer, offset, accountId, utf8);
+        buffer.putShort(offset + CURRENCY, packCurrency(account.getCurrency()));
+        buffer.putLong(offset + BALANCE, account.getBalanceMinorUnits());
+        buffer.putLong(offset + VERSION, account.snapshot().getVersion());
+        SLOT_HASH.setRelease(buffer, offset + HASH, hash);
+        size++;
+        return true;
+    }
+
+    private void grow() {
+        Table grown = new Table(table.capacity * 2, slotSize);
+        long stamp = tableLock.writeLock();
+        try {
+            for (long slot = 0; slot < table.capacity; slot++) {
+                ByteBuffer buffer = table.buffer(slot);
+                int offset = table.offset(slot);
+                int hash = buffer.getInt(offset + HASH);
+                if (hash == 0) {
+                    continue;
+                }
+                long target = home(hash, grown.capacity);
+                while (grown.buffer(target).getInt(grown.offset(target) + HASH) != 0) {
+                    target = target + 1 == grown.capacity ? 0 : target + 1;
+                }
+                ByteBuffer targetBuffer = grown.buffer(target);
+                int targetOffset = grown.offset(target);
+                for (int i = 0; i < slotSize; i += 8) {
+                    targetBuffer.putLong(targetOffset + i, buffer.getLong(offset + i));
+                }
+            }
+            table = grown;
+        } finally {
+            tableLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Slot holding the account, or {@code -1 - slot} of the empty slot where it would go.
+     */
+    private static long probe(Table table, String accountId, byte[] utf8, int hash) {
+        long slot = home(hash, table.capacity);
+        while (true) {
+            ByteBuffer buffer = table.buffer(slot);
+            int offset = table.offset(slot);
+            int slotHash = (int) SLOT_HASH.getAcquire(buffer, offset + HASH);
+            if (slotHash == 0) {
+                return -1 - slot;
+            }
+            if (slotHash == hash && idEquals(buffer, offset, accountId, utf8)) {
+                return slot;
+            }
+            slot = slot + 1 == table.capacity ? 0 : slot + 1;
+        }
+    }
+
+    private static long existing(Table table, String accountId, byte[] utf8, int hash) {
+        long slot = probe(table, accountId, utf8, hash);
+        if (slot < 0) {
+            throw new AccountNotFoundException(accountId);
+        }
+        return slot;
+    }
+
+    // The currency never changes once the slot is published, so it is read without the stripe lock
+    private static void checkSameCurrency(Table table, long fromSlot, long toSlot) {
+        if (table.buffer(fromSlot).getShort(table.offset(fromSlot) + CURRENCY)
+                != table.buffer(toSlot).getShort(table.offset(toSlot) + CURRENCY)) {
+            throw new UnsupportedTransferException("Cross-currency transfers are not supported by this repository");
+        }
+    }
+
+    // Three letters A-Z, five bits each
+    private static short packCurrency(String currency) {
+        int packed = 0;
+        for (int i = 0; i < 3; i++) {
+            packed = packed << 5 | currency.charAt(i) - 'A';
+        }
+        return (short) packed;
+    }
+
+    private static String unpackCurrency(short packed) {
+        char[] letters = new char[3];
+        for (int i = 2, bits = packed; i >= 0; i--, bits >>>= 5) {
+            letters[i] = (char) ('A' + (bits & 0x1F));
+        }
+        return new String(letters);
+    }
+
+    private static void change(Table table, long slot, long deltaMinorUnits) {
+        ByteBuffer buffer = table.buffer(slot);
+        int offset = table.offset(slot);
+        buffer.putLong(offset + BALANCE, buffer.getLong(offset + BALANCE) + deltaMinorUnits);
+        buffer.putLong(offset + VERSION, buffer.getLong(offset + VERSION) + 1);
+    }
+
+    // Maps the hash onto [0, capacity) with a multiply instead of a division
+    private static long home(int hash, long capacity) {
+        return ((hash & 0xFFFFFFFFL) * capacity) >>> 32;
+    }
+
+    private static int hash(String accountId) {
+        int hash = accountId.hashCode() * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        return hash != 0 ? hash : 1;
+    }
+
+    private static long slotsFor(long accounts) {
+        return Math.max(16, (long) Math.ceil(accounts / LOAD_FACTOR));
+    }
+
+    private void checkIdLength(String accountId) {
+        String problem = idLengthProblem(accountId);
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+    }
+
+    // Why the id does not fit in a slot, null if it does
+    private String idLengthProblem(String accountId) {
+        byte[] utf8 = nonAsciiBytes(accountId);
+        int length = utf8 == null ? accountId.length() : utf8.length;
+        return length > maxIdLength ? "Account id " + accountId + " is longer than " + maxIdLength + " bytes" : null;
+    }
+
+    // Ids are nearly always ASCII and are then compared and written char by char; null for those
+    private static byte[] nonAsciiBytes(String accountId) {
+        for (int i = 0; i < accountId.length(); i++) {
+            if (accountId.charAt(i) >= 0x80) {
+                return accountId.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static boolean idEquals(ByteBuffer buffer, int offset, String accountId, byte[] utf8) {
+        int length = buffer.getShort(offset + ID_LENGTH);
+        if (length != (utf8 == null ? accountId.length() : utf8.length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            byte expected = utf8 == null ? (byte) accountId.charAt(i) : utf8[i];
+            if (buffer.get(offset + ID + i) != expected) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putId(ByteBuffer buffer, int offset, String accountId, byte[] utf8) {
+        int length = utf8 == null ? accountId.length() : utf8.length;
+        buffer.putShort(offset + ID_LENGTH, (short) length);
+        for (int i = 0; i < length; i++) {
+            buffer.put(offset + ID + i, utf8 == null ? (byte) accountId.charAt(i) : utf8[i]);
+        }
+    }
+
+    /**
+     * Slots of one table size, split over as many buffers as a buffer's 2 GB limit requires.
+     */
+    private static final class Table {
+
+        private final long capacity;
+
+        private final int slotSize;
+
+        private final int shift;
+
+        private final long mask;
+
+        private final ByteBuffer[] buffers;
+
+        private Table(long capacity, int slotSize) {
+            this.capacity = capacity;
+            this.slotSize = slotSize;
+            int slotsPerBuffer = Integer.highestOneBit(Integer.MAX_VALUE / slotSize);
+            this.shift = Integer.numberOfTrailingZeros(slotsPerBuffer);
+            this.mask = slotsPerBuffer - 1;
+            this.buffers = new ByteBuffer[(int) ((capacity + mask) >>> shift)];
+            for (int i = 0; i < buffers.length; i++) {
+                long slots = Math.min(slotsPerBuffer, capacity - ((long) i << shift));
+                // Aligned so the hash can be read with acquire semantics; direct memory starts zeroed
+                buffers[i] = ByteBuffer.allocateDirect((int) (slots * slotSize) + 7).alignedSlice(8)
+                        .order(ByteOrder.nativeOrder());
+            }
+        }
+
+        private ByteBuffer buffer(long slot) {
+            return buffers[(int) (slot >>> shift)];
+        }
+
+        private int offset(long slot) {
+            return (int) (slot & mask) * slotSize;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.exception.AccountNotFoundException;
+
+/**
+ * A repository that owns its balances, such as one whose accounts belong to its own threads or
+ * live outside the heap. Balances may only be changed through {@link #transfer} and
+ * {@link #compareAndUpdate}, never by callers updating the accounts it hands out.
+ */
+public interface PartitionedAccountsRepository extends AccountsRepository {
+
+    /**
+     * Moves {@code amountMinorUnits} between two accounts and waits until both legs are applied.
+     *
+     * @return {@code false} if the source balance is insufficient, leaving both accounts untouched
+     * @throws AccountNotFoundException if either account does not exist
+     */
+    boolean transfer(String accountFromId, String accountToId, long amountMinorUnits);
+
+    /**
+     * Debits the sum of {@code amountsMinorUnits} from one account and credits each amount to the
+     * account at the same index, all or nothing, and waits until every leg is applied.
+     *
+     * @return {@code false} if the source balance is insufficient, leaving every account untouched
+     * @throws AccountNotFoundException if any account does not exist
+     */
+    boolean transfer(String accountFromId, String[] accountToIds, long[] amountsMinorUnits);
+
+    /**
+     * Same as {@link AccountsRepository#compareAndUpdate}, applied under the repository's own
+     * synchronization; callers hold no lock.
+     */
+    @Override
+    AccountSnapshot compareAndUpdate(String accountId, long expectedVersion, long balanceMinorUnits);
+}
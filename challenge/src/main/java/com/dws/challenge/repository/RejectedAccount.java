@@ -0,0 +1,30 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+
+/**
+ * An account {@link AccountsRepository#createAccounts} did not create, and why.
+ */
+public final class RejectedAccount {
+
+    private final Account account;
+
+    private final String reason;
+
+    public RejectedAccount(Account account, String reason) {
+        this.account = account;
+        this.reason = reason;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    static RejectedAccount duplicate(Account account) {
+        return new RejectedAccount(account, "Account id " + account.getAccountId() + " already exists!");
+    }
+}
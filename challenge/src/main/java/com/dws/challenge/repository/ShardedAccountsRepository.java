@@ -0,0 +1,341 @@
+package com.dws.challenge.repository;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.UnsupportedTransferException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Accounts partitioned over a {@link ConsistentHashRing} of shards. Each shard has one owner
+ * thread that applies every balance change of its accounts from a mailbox, so transfers within a
+ * shard need no locks at all. A transfer across shards is handed off in two phases: the source
+ * owner debits, then passes the credit to the target owner. Between the two phases the amount is
+ * in flight and appears in neither balance. Transfers between currencies are refused.
+ *
+ * <p>Lookups read the shard's map directly and never wait for the owner. A change that throws on
+ * the owner fails the caller waiting on it with that exception.
+ */
+@Repository
+@ConditionalOnProperty(name = "challenge.repository.type", havingValue = "sharded")
+@Slf4j
+public class ShardedAccountsRepository implements PartitionedAccountsRepository {
+
+    private static final int MAILBOX_BATCH = 256;
+
+    private final ConsistentHashRing ring;
+
+    private final Shard[] shards;
+
+    /**
+     * @param shardCount number of shards, 0 for one per available processor
+     */
+    public ShardedAccountsRepository(@Value("${challenge.shards.count:0}") int shardCount) {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.ring = new ConsistentHashRing(count);
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        Account previousAccount = shardFor(account.getAccountId()).accounts
+                .putIfAbsent(account.getAccountId(), account);
+        if (previousAccount != null) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public List<RejectedAccount> createAccounts(List<Account> newAccounts) {
+        List<RejectedAccount> duplicates = new ArrayList<>();
+        for (Account account : newAccounts) {
+            if (shardFor(account.getAccountId()).accounts.putIfAbsent(account.getAccountId(), account) != null) {
+                duplicates.add(RejectedAccount.duplicate(account));
+            }
+        }
+        return duplicates;
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        return shardFor(accountId).accounts.get(accountId);
+    }
+
+    @Override
+    public void clearAccounts() {
+        for (Shard shard : shards) {
+            shard.accounts.clear();
+        }
+    }
+
+    @Override
+    public boolean transfer(String accountFromId, String accountToId, long amountMinorUnits) {
+        Shard fromShard = shardFor(accountFromId);
+        Shard toShard = shardFor(accountToId);
+        Account accountFrom = existing(fromShard, accountFromId);
+        Account accountTo = existing(toShard, accountToId);
+        checkSameCurrency(accountFrom, accountTo);
+
+        CompletableFuture<Boolean> applied = new CompletableFuture<>();
+        if (fromShard == toShard) {
+            fromShard.submit(applied, () -> {
+                boolean debited = accountFrom.tryDebit(amountMinorUnits);
+                if (debited) {
+                    try {
+                        accountTo.credit(amountMinorUnits);
+                    } catch (Throwable e) {
+                        accountFrom.credit(amountMinorUnits);
+                        throw e;
+                    }
+                }
+                applied.complete(debited);
+            });
+        } else {
+            fromShard.submit(applied, () -> {
+                if (!accountFrom.tryDebit(amountMinorUnits)) {
+                    applied.complete(false);
+                    return;
+                }
+                toShard.handOff(applied, () -> {
+                    try {
+                        accountTo.credit(amountMinorUnits);
+                    } catch (Throwable e) {
+                        refund(fromShard, accountFrom, amountMinorUnits, applied, e);
+                        return;
+                    }
+                    applied.complete(true);
+                });
+            });
+        }
+        return await(applied);
+    }
+
+    @Override
+    public boolean transfer(String accountFromId, String[] accountToIds, long[] amountsMinorUnits) {
+        Shard fromShard = shardFor(accountFromId);
+        Account accountFrom = existing(fromShard, accountFromId);
+        Shard[] toShards = new Shard[accountToIds.length];
+        Account[] accountsTo = new Account[accountToIds.length];
+        long total = 0;
+        for (int i = 0; i < accountToIds.length; i++) {
+            toShards[i] = shardFor(accountToIds[i]);
+            accountsTo[i] = existing(toShards[i], accountToIds[i]);
+            checkSameCurrency(accountFrom, accountsTo[i]);
+            total = Math.addExact(total, amountsMinorUnits[i]);
+        }
+
+        long debit = total;
+        CompletableFuture<Boolean> applied = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(accountToIds.length);
+        // What failed legs owe back to the sender, and why the first one failed
+        AtomicLong owed = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        fromShard.submit(applied, () -> {
+            if (!accountFrom.tryDebit(debit)) {
+                applied.complete(false);
+                return;
+            }
+            // Every account is known to exist, so once the debit is in, all credits will follow
+            // unless one fails outright; its amount then goes back to the sender, the other legs stand
+            for (int i = 0; i < accountsTo.length; i++) {
+                Account accountTo = accountsTo[i];
+                long amount = amountsMinorUnits[i];
+                Runnable credit = () -> {
+                    try {
+                        accountTo.credit(amount);
+                    } catch (Throwable e) {
+                        owed.addAndGet(amount);
+                        failure.compareAndSet(null, e);
+                    }
+                    if (pending.decrementAndGet() == 0) {
+                        if (failure.get() == null) {
+                            applied.complete(true);
+                        } else {
+                            refund(fromShard, accountFrom, owed.get(), applied, failure.get());
+                        }
+                    }
+                };
+                if (toShards[i] == fromShard) {
+                    credit.run();
+                } else {
+                    toShards[i].handOff(applied, credit);
+                }
+            }
+        });
+        return await(applied);
+    }
+
+    @Override
+    public AccountSnapshot compareAndUpdate(String accountId, long expectedVersion, long balanceMinorUnits) {
+        Shard shard = shardFor(accountId);
+        Account account = existing(shard, accountId);
+        // On the owner thread like every other change, so it lands between two mailbox tasks
+        CompletableFuture<AccountSnapshot> applied = new CompletableFuture<>();
+        shard.submit(applied,
+                () -> applied.complete(account.compareAndSetBalance(expectedVersion, balanceMinorUnits)));
+        return await(applied);
+    }
+
+    // Gives a debit back on the sender's owner when a credit it paid for failed, then fails the caller
+    private static void refund(Shard fromShard, Account accountFrom, long amountMinorUnits,
+                               CompletableFuture<?> applied, Throwable failure) {
+        fromShard.handOff(applied, () -> {
+            accountFrom.credit(amountMinorUnits);
+            applied.completeExceptionally(failure);
+        });
+    }
+
+    // Rethrows what failed the change on its owner rather than the CompletionException around it
+    private static <T> T await(CompletableFuture<T> applied) {
+        try {
+            return applied.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static void checkSameCurrency(Account accountFrom, Account accountTo) {
+        if (!accountFrom.getCurrency().equals(accountTo.getCurrency())) {
+            throw new UnsupportedTransferException("Cross-currency transfers are not supported by this repository");
+        }
+    }
+
+    /**
+     * Index of the shard owning {@code accountId}.
+     */
+    public int shardOf(String accountId) {
+        return ring.shardOf(accountId);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+    }
+
+    private Shard shardFor(String accountId) {
+        return shards[ring.shardOf(accountId)];
+    }
+
+    private static Account existing(Shard shard, String accountId) {
+        Account account = shard.accounts.get(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException(accountId);
+        }
+        return account;
+    }
+
+    /**
+     * Accounts of one shard and the thread that owns their balances.
+     */
+    private static final class Shard implements Runnable {
+
+        private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+        private final BlockingQueue<Task> mailbox = new LinkedBlockingQueue<>();
+
+        private final Thread owner;
+
+        private volatile boolean running = true;
+
+        private Shard(int index) {
+            this.owner = new Thread(this, "account-shard-" + index);
+            this.owner.setDaemon(true);
+            this.owner.start();
+        }
+
+        // Unbounded, so an owner handing a credit to another shard never blocks on it
+        private void submit(CompletableFuture<?> applied, Runnable change) {
+            if (!running) {
+                throw new IllegalStateException("Shard " + owner.getName() + " is stopped");
+            }
+            mailbox.add(new Task(change, applied));
+        }
+
+        // From another owner; accepted even while stopping, the debit before it is already applied
+        private void handOff(CompletableFuture<?> applied, Runnable change) {
+            mailbox.add(new Task(change, applied));
+        }
+
+        @Override
+        public void run() {
+            List<Task> batch = new ArrayList<>(MAILBOX_BATCH);
+            while (running || !mailbox.isEmpty()) {
+                try {
+                    batch.add(mailbox.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                mailbox.drainTo(batch, MAILBOX_BATCH - 1);
+                for (Task task : batch) {
+                    try {
+                        task.change.run();
+                    } catch (Throwable e) {
+                        // Errors too, the owner must outlive any one change or its whole shard hangs
+                        log.error("Shard task failed on {}", owner.getName(), e);
+                        // Its caller is waiting on the result and would otherwise never return
+                        if (task.applied != null) {
+                            task.applied.completeExceptionally(e);
+                        }
+                    }
+                }
+                batch.clear();
+            }
+        }
+
+        private void stop() {
+            running = false;
+            // Wakes the owner so it notices, after finishing what is already queued
+            mailbox.add(new Task(() -> {
+            }, null));
+        }
+    }
+
+    /**
+     * A change for the owner to apply and the result its caller waits on.
+     */
+    private static final class Task {
+
+        private final Runnable change;
+
+        private final CompletableFuture<?> applied;
+
+        private Task(Runnable change, CompletableFuture<?> applied) {
+            this.change = change;
+            this.applied = applied;
+        }
+    }
+}
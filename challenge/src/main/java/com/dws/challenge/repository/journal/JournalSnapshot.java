@@ -0,0 +1,183 @@
+package com.dws.challenge.repository.journal;
+
+import com.dws.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time image of every account balance and currency, equivalent to replaying all journal
+ * segments below the index in its file name. Written to a temporary file and moved into place, so
+ * a snapshot either exists complete or not at all; the trailing checksum guards against disks
+ * that disagree.
+ */
+@Slf4j
+final class JournalSnapshot {
+
+  static final String SNAPSHOT_PREFIX = "snapshot-";
+
+  static final String SNAPSHOT_SUFFIX = ".snap";
+
+  private static final int MAGIC = 0x44575353;
+
+  // Adds the currency of every account; snapshots of either version are read
+  private static final int MAGIC_V2 = 0x44575354;
+
+  private JournalSnapshot() {
+  }
+
+  /**
+   * Balances folded from the journal without touching live accounts.
+   */
+  static final class Image implements TransferJournal.Visitor {
+
+    final Map<String, long[]> balances = new HashMap<>();
+
+    // Only accounts outside the default currency
+    final Map<String, String> currencies = new HashMap<>();
+
+    @Override
+    public void accountCreated(String accountId, long balanceMinorUnits, String currency) {
+      if (balances.putIfAbsent(accountId, new long[] {balanceMinorUnits}) == null
+              && !Account.DEFAULT_CURRENCY.equals(currency)) {
+        currencies.put(accountId, currency);
+      }
+    }
+
+    String currencyOf(String accountId) {
+      return currencies.getOrDefault(accountId, Account.DEFAULT_CURRENCY);
+    }
+
+    @Override
+    public void balancesChanged(String[] accountIds, long[] deltasMinorUnits, int count) {
+      for (int i = 0; i < count; i++) {
+        long[] balance = balances.get(accountIds[i]);
+        if (balance == null) {
+          throw new IllegalStateException("Journal changes unknown account " + accountIds[i]);
+        }
+        balance[0] += deltasMinorUnits[i];
+      }
+    }
+
+    @Override
+    public void accountsCleared() {
+      balances.clear();
+      currencies.clear();
+    }
+  }
+
+  static void write(Path directory, long segmentsBelow, Image image) throws IOException {
+    Path target = path(directory, segmentsBelow);
+    Path temp = directory.resolve(target.getFileName() + ".tmp");
+    CRC32 crc = new CRC32();
+    try (FileOutputStream file = new FileOutputStream(temp.toFile());
+         DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                 new CheckedOutputStream(file, crc), 1 << 16))) {
+      out.writeInt(MAGIC_V2);
+      out.writeInt(image.balances.size());
+      for (Map.Entry<String, long[]> entry : image.balances.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeLong(entry.getValue()[0]);
+        out.writeUTF(image.currencyOf(entry.getKey()));
+      }
+      out.flush();
+      // The checksum itself is not part of what it covers
+      int checksum = (int) crc.getValue();
+      file.write(new byte[] {(byte) (checksum >>> 24), (byte) (checksum >>> 16), (byte) (checksum >>> 8),
+              (byte) checksum});
+      file.getFD().sync();
+    }
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Feeds the newest readable snapshot into {@code visitor}.
+   *
+   * @return index of the first journal segment the snapshot does not cover, 0 without a snapshot
+   */
+  static long loadLatest(Path directory, TransferJournal.Visitor visitor) throws IOException {
+    List<Long> snapshots = list(directory);
+    for (int i = snapshots.size() - 1; i >= 0; i--) {
+      long segmentsBelow = snapshots.get(i);
+      Image image = new Image();
+      if (read(path(directory, segmentsBelow), image)) {
+        visitor.accountsCleared();
+        for (Map.Entry<String, long[]> entry : image.balances.entrySet()) {
+          visitor.accountCreated(entry.getKey(), entry.getValue()[0], image.currencyOf(entry.getKey()));
+        }
+        return segmentsBelow;
+      }
+      log.warn("Ignoring unreadable snapshot {}", path(directory, segmentsBelow));
+    }
+    return 0;
+  }
+
+  private static boolean read(Path path, Image image) throws IOException {
+    long size = Files.size(path);
+    if (size < 12) {
+      return false;
+    }
+    CRC32 crc = new CRC32();
+    try (InputStream file = Files.newInputStream(path);
+         DataInputStream in = new DataInputStream(new CheckedInputStream(
+                 new BufferedInputStream(file, 1 << 16), crc))) {
+      int magic = in.readInt();
+      if (magic != MAGIC && magic != MAGIC_V2) {
+        return false;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        image.accountCreated(in.readUTF(), in.readLong(), magic == MAGIC ? Account.DEFAULT_CURRENCY : in.readUTF());
+      }
+      int expected = (int) crc.getValue();
+      return in.readInt() == expected;
+    } catch (IOException e) {
+      log.warn("Failed to read snapshot {}", path, e);
+      return false;
+    }
+  }
+
+  static void deleteOlderThan(Path directory, long segmentsBelow) throws IOException {
+    for (long snapshot : list(directory)) {
+      if (snapshot < segmentsBelow) {
+        Files.deleteIfExists(path(directory, snapshot));
+      }
+    }
+  }
+
+  static List<Long> list(Path directory) throws IOException {
+    List<Long> snapshots = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+            SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        snapshots.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(),
+                name.length() - SNAPSHOT_SUFFIX.length())));
+      }
+    }
+    Collections.sort(snapshots);
+    return snapshots;
+  }
+
+  private static Path path(Path directory, long segmentsBelow) {
+    return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, segmentsBelow, SNAPSHOT_SUFFIX));
+  }
+}
@@ -0,0 +1,348 @@
+package com.dws.challenge.repository.journal;
+
+import com.dws.challenge.domain.ScheduledTransfer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of scheduled transfers: one record when a transfer is scheduled, one when it is
+ * claimed for execution and one when it has run or was cancelled. Records are framed like the
+ * {@link TransferJournal}'s, {@code [int length][int crc32][payload]}, and replay stops at the
+ * first torn one. A transfer claimed but never removed was executing when the log was last
+ * written, and may or may not have settled; replay reports it as {@link #getInDoubt in doubt}
+ * rather than pending. Once removals outnumber the transfers still live, {@link #compact} rewrites
+ * the file with only those, preceded by the next id to hand out so ids of transfers that ran or
+ * were cancelled are never reused.
+ *
+ * <p>Not thread-safe, the scheduler serializes appends; {@link #sync()} may run concurrently.
+ */
+@Slf4j
+public class ScheduledTransferLog implements Closeable {
+
+  static final String FILE_NAME = "scheduled-transfers.log";
+
+  private static final int HEADER_BYTES = 8;
+
+  private static final byte TYPE_SCHEDULED = 1;
+
+  private static final byte TYPE_REMOVED = 2;
+
+  private static final byte TYPE_NEXT_ID = 3;
+
+  private static final byte TYPE_CLAIMED = 4;
+
+  private static final int MIN_COMPACTION_REMOVALS = 1024;
+
+  private final Path file;
+
+  private final CRC32 crc = new CRC32();
+
+  private final Map<Long, ScheduledTransfer> replayed = new LinkedHashMap<>();
+
+  private final Set<Long> claimed = new HashSet<>();
+
+  private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+  // Replaced by compaction while sync() may be forcing the old one
+  private volatile FileChannel channel;
+
+  private long removalsSinceCompaction;
+
+  // One above the highest id ever scheduled
+  private long nextId;
+
+  /**
+   * Opens the log in {@code directory} and replays it, see {@link #getPending()}.
+   */
+  public ScheduledTransferLog(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    this.file = directory.resolve(FILE_NAME);
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    long end = replay();
+    if (end < channel.size()) {
+      log.warn("Discarding torn record at offset {} of {}", end, file);
+      channel.truncate(end);
+      channel.force(true);
+    }
+    channel.position(end);
+  }
+
+  /**
+   * Transfers scheduled and neither claimed, run nor cancelled when the log was opened, in the
+   * order they were scheduled.
+   */
+  public List<ScheduledTransfer> getPending() {
+    List<ScheduledTransfer> pending = new ArrayList<>(replayed.size());
+    for (ScheduledTransfer transfer : replayed.values()) {
+      if (!claimed.contains(transfer.getId())) {
+        pending.add(transfer);
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * Transfers claimed for execution but not removed when the log was opened, in the order they
+   * were scheduled: the process stopped while they ran, so they may or may not have settled.
+   */
+  public List<ScheduledTransfer> getInDoubt() {
+    List<ScheduledTransfer> inDoubt = new ArrayList<>(claimed.size());
+    for (ScheduledTransfer transfer : replayed.values()) {
+      if (claimed.contains(transfer.getId())) {
+        inDoubt.add(transfer);
+      }
+    }
+    return inDoubt;
+  }
+
+  /**
+   * Lowest id above every transfer this log has recorded, including those that ran or were
+   * cancelled.
+   */
+  public long getNextId() {
+    return nextId;
+  }
+
+  public void appendScheduled(ScheduledTransfer transfer) {
+    byte[] from = transfer.getFromAccountId().getBytes(StandardCharsets.UTF_8);
+    byte[] to = transfer.getToAccountId().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer payload = payload(1 + 8 + 8 + 8 + 2 + from.length + 2 + to.length);
+    putScheduled(payload, transfer, from, to);
+    append(payload);
+    nextId = Math.max(nextId, transfer.getId() + 1);
+  }
+
+  /**
+   * Records that the transfers are about to run. Synced before they do, a claim keeps a transfer
+   * from running a second time after a crash.
+   */
+  public void appendClaimed(long[] ids, int count) {
+    append(ids(TYPE_CLAIMED, ids, count));
+  }
+
+  public void appendRemoved(long[] ids, int count) {
+    append(ids(TYPE_REMOVED, ids, count));
+    removalsSinceCompaction += count;
+  }
+
+  /**
+   * Forces everything appended so far to disk.
+   */
+  public void sync() {
+    try {
+      channel.force(false);
+    } catch (ClosedChannelException e) {
+      // Compacted meanwhile: the new log was forced with everything appended before
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to sync " + file, e);
+    }
+  }
+
+  public boolean needsCompaction(int pending) {
+    return removalsSinceCompaction >= Math.max(MIN_COMPACTION_REMOVALS, pending);
+  }
+
+  /**
+   * Replaces the log with one holding just {@code pending} and {@code claimed}, the latter claimed
+   * again. Written to a temporary file and moved into place, so a crash leaves either the old log
+   * or the new one.
+   */
+  public void compact(Collection<ScheduledTransfer> pending, Collection<ScheduledTransfer> claimed)
+          throws IOException {
+    Path temp = file.resolveSibling(FILE_NAME + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer next = payload(1 + 8);
+      next.put(TYPE_NEXT_ID);
+      next.putLong(nextId);
+      write(out, next);
+      long[] claimedIds = new long[claimed.size()];
+      int count = 0;
+      for (ScheduledTransfer transfer : claimed) {
+        writeScheduled(out, transfer);
+        claimedIds[count++] = transfer.getId();
+      }
+      for (ScheduledTransfer transfer : pending) {
+        writeScheduled(out, transfer);
+      }
+      if (count > 0) {
+        write(out, ids(TYPE_CLAIMED, claimedIds, count));
+      }
+      out.force(true);
+    }
+    channel.close();
+    try {
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      removalsSinceCompaction = 0;
+    } finally {
+      // The new log if the move went through, otherwise the old one carries on
+      channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      channel.position(channel.size());
+    }
+    log.info("Compacted scheduled transfer log to {} pending and {} executing transfers", pending.size(),
+            claimed.size());
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.force(true);
+    channel.close();
+  }
+
+  private void writeScheduled(FileChannel out, ScheduledTransfer transfer) throws IOException {
+    byte[] from = transfer.getFromAccountId().getBytes(StandardCharsets.UTF_8);
+    byte[] to = transfer.getToAccountId().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer payload = payload(1 + 8 + 8 + 8 + 2 + from.length + 2 + to.length);
+    putScheduled(payload, transfer, from, to);
+    write(out, payload);
+  }
+
+  private ByteBuffer ids(byte type, long[] ids, int count) {
+    ByteBuffer payload = payload(1 + 4 + 8 * count);
+    payload.put(type);
+    payload.putInt(count);
+    for (int i = 0; i < count; i++) {
+      payload.putLong(ids[i]);
+    }
+    return payload;
+  }
+
+  private static void putScheduled(ByteBuffer payload, ScheduledTransfer transfer, byte[] from, byte[] to) {
+    payload.put(TYPE_SCHEDULED);
+    payload.putLong(transfer.getId());
+    payload.putLong(transfer.getExecuteAtMillis());
+    payload.putLong(transfer.getAmountMinorUnits());
+    payload.putShort((short) from.length);
+    payload.put(from);
+    payload.putShort((short) to.length);
+    payload.put(to);
+  }
+
+  private void append(ByteBuffer payload) {
+    long start = -1;
+    try {
+      start = channel.position();
+      write(channel, payload);
+    } catch (IOException e) {
+      // Cut a partly written record off, or replay would stop there and drop everything after it
+      if (start >= 0) {
+        try {
+          channel.truncate(start);
+        } catch (IOException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+      }
+      throw new UncheckedIOException("Failed to append to " + file, e);
+    }
+  }
+
+  private void write(FileChannel out, ByteBuffer payload) throws IOException {
+    payload.flip();
+    crc.reset();
+    crc.update(payload.duplicate());
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+    ByteBuffer[] record = {header, payload};
+    while (header.hasRemaining() || payload.hasRemaining()) {
+      out.write(record);
+    }
+  }
+
+  // Returns the offset right after the last intact record
+  private long replay() throws IOException {
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    CRC32 checksum = new CRC32();
+    long offset = 0;
+    while (offset + HEADER_BYTES <= size) {
+      header.clear();
+      channel.read(header, offset);
+      int length = header.getInt(0);
+      if (length <= 0 || length > size - offset - HEADER_BYTES) {
+        break;
+      }
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      while (payload.hasRemaining()) {
+        channel.read(payload, offset + HEADER_BYTES + payload.position());
+      }
+      payload.flip();
+      checksum.reset();
+      checksum.update(payload.duplicate());
+      if ((int) checksum.getValue() != header.getInt(4)) {
+        break;
+      }
+      apply(payload);
+      offset += HEADER_BYTES + length;
+    }
+    return offset;
+  }
+
+  private void apply(ByteBuffer payload) {
+    byte type = payload.get();
+    switch (type) {
+      case TYPE_SCHEDULED:
+        long id = payload.getLong();
+        long executeAtMillis = payload.getLong();
+        long amountMinorUnits = payload.getLong();
+        String from = getString(payload);
+        String to = getString(payload);
+        replayed.put(id, new ScheduledTransfer(id, from, to, amountMinorUnits, executeAtMillis));
+        nextId = Math.max(nextId, id + 1);
+        break;
+      case TYPE_CLAIMED:
+        int claims = payload.getInt();
+        for (int i = 0; i < claims; i++) {
+          claimed.add(payload.getLong());
+        }
+        break;
+      case TYPE_REMOVED:
+        int count = payload.getInt();
+        for (int i = 0; i < count; i++) {
+          long removed = payload.getLong();
+          replayed.remove(removed);
+          claimed.remove(removed);
+        }
+        removalsSinceCompaction += count;
+        break;
+      case TYPE_NEXT_ID:
+        nextId = Math.max(nextId, payload.getLong());
+        break;
+      default:
+        throw new IllegalStateException("Unknown scheduled transfer record type " + type);
+    }
+  }
+
+  private ByteBuffer payload(int size) {
+    if (scratch.capacity() < size) {
+      scratch = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+    }
+    scratch.clear();
+    return scratch;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
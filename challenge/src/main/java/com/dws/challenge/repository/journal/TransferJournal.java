@@ -0,0 +1,498 @@
+package com.dws.challenge.repository.journal;
+
+import com.dws.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of account changes kept in fixed-size memory-mapped segment files.
+ *
+ * <p>Every record is framed as {@code [int length][int crc32][payload]}; the zero-filled tail of a
+ * segment marks its end, so a record torn by a crash fails its length or checksum and replay stops
+ * right before it. Appends only copy into the mapping; a single flusher thread forces the mapping
+ * to disk on demand, so concurrent writers waiting in {@link #awaitDurable(long)} share one fsync.
+ * {@link #compact()} folds rolled segments into a {@link JournalSnapshot} so startup only replays
+ * the tail written since.
+ */
+@Slf4j
+public class TransferJournal implements Closeable {
+
+  /**
+   * Receives the records of the journal in append order.
+   */
+  public interface Visitor {
+
+    void accountCreated(String accountId, long balanceMinorUnits, String currency);
+
+    void balancesChanged(String[] accountIds, long[] deltasMinorUnits, int count);
+
+    void accountsCleared();
+  }
+
+  static final String SEGMENT_PREFIX = "segment-";
+
+  static final String SEGMENT_SUFFIX = ".log";
+
+  private static final int HEADER_BYTES = 8;
+
+  private static final byte TYPE_CREATE = 1;
+
+  private static final byte TYPE_BALANCE_CHANGES = 2;
+
+  private static final byte TYPE_CLEAR = 3;
+
+  // Accounts in the default currency keep using TYPE_CREATE, so older journals replay unchanged
+  private static final byte TYPE_CREATE_IN_CURRENCY = 4;
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  private final Object appendLock = new Object();
+
+  private final Object flushMonitor = new Object();
+
+  private final Object compactionLock = new Object();
+
+  private final CRC32 crc = new CRC32();
+
+  private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+  private long segmentIndex;
+
+  private FileChannel channel;
+
+  private MappedByteBuffer mapping;
+
+  private ByteBuffer writer;
+
+  // Logical positions: segmentIndex * segmentSize + offset within the segment
+  private long writePosition;
+
+  private long flushRequested;
+
+  private long flushedPosition;
+
+  private volatile boolean running = true;
+
+  private boolean closed;
+
+  private final Thread flusher;
+
+  /**
+   * Opens the journal in {@code directory}, replaying every intact record into {@code visitor}
+   * before new appends are accepted.
+   */
+  public TransferJournal(Path directory, int segmentSize, Visitor visitor) throws IOException {
+    if (segmentSize < 1024) {
+      throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    Files.createDirectories(directory);
+
+    long firstSegment = JournalSnapshot.loadLatest(directory, visitor);
+    List<Long> segments = listSegments(directory);
+    segments.removeIf(index -> index < firstSegment);
+    if (segments.isEmpty()) {
+      openSegment(firstSegment, 0);
+    } else {
+      for (int i = 0; i < segments.size(); i++) {
+        boolean last = i == segments.size() - 1;
+        int end = replaySegment(segments.get(i), visitor, last);
+        if (last) {
+          openSegment(segments.get(i), end);
+        }
+      }
+    }
+    this.flushedPosition = writePosition;
+    this.flushRequested = writePosition;
+
+    this.flusher = new Thread(this::flushLoop, "transfer-journal-flusher");
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  public long appendAccountCreated(String accountId, long balanceMinorUnits, String currency) {
+    boolean defaultCurrency = Account.DEFAULT_CURRENCY.equals(currency);
+    synchronized (appendLock) {
+      ByteBuffer payload = payload(1 + stringSize(accountId) + 8 + (defaultCurrency ? 0 : stringSize(currency)));
+      payload.put(defaultCurrency ? TYPE_CREATE : TYPE_CREATE_IN_CURRENCY);
+      putString(payload, accountId);
+      payload.putLong(balanceMinorUnits);
+      if (!defaultCurrency) {
+        putString(payload, currency);
+      }
+      return append(payload);
+    }
+  }
+
+  /**
+   * Appends a set of balance changes that must be replayed all-or-nothing, such as both legs of
+   * a transfer or the net result of a batch.
+   */
+  public long appendBalanceChanges(String[] accountIds, long[] deltasMinorUnits, int count) {
+    synchronized (appendLock) {
+      int size = 1 + 4;
+      for (int i = 0; i < count; i++) {
+        size += stringSize(accountIds[i]) + 8;
+      }
+      ByteBuffer payload = payload(size);
+      payload.put(TYPE_BALANCE_CHANGES);
+      payload.putInt(count);
+      for (int i = 0; i < count; i++) {
+        putString(payload, accountIds[i]);
+        payload.putLong(deltasMinorUnits[i]);
+      }
+      return append(payload);
+    }
+  }
+
+  /**
+   * {@link #appendBalanceChanges} for the two legs of a single transfer, without the arrays.
+   */
+  public long appendTransfer(String accountFromId, String accountToId, long amountMinorUnits) {
+    synchronized (appendLock) {
+      ByteBuffer payload = payload(1 + 4 + stringSize(accountFromId) + 8 + stringSize(accountToId) + 8);
+      payload.put(TYPE_BALANCE_CHANGES);
+      payload.putInt(2);
+      putString(payload, accountFromId);
+      payload.putLong(-amountMinorUnits);
+      putString(payload, accountToId);
+      payload.putLong(amountMinorUnits);
+      return append(payload);
+    }
+  }
+
+  public long appendAccountsCleared() {
+    synchronized (appendLock) {
+      ByteBuffer payload = payload(1);
+      payload.put(TYPE_CLEAR);
+      return append(payload);
+    }
+  }
+
+  /**
+   * Blocks until every record up to {@code position} has been forced to disk.
+   */
+  public void awaitDurable(long position) {
+    synchronized (flushMonitor) {
+      if (flushedPosition >= position) {
+        return;
+      }
+      if (flushRequested < position) {
+        flushRequested = position;
+        flushMonitor.notifyAll();
+      }
+      boolean interrupted = false;
+      while (flushedPosition < position) {
+        if (closed) {
+          throw new IllegalStateException("Journal is closed");
+        }
+        try {
+          flushMonitor.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Folds every sealed segment into a new snapshot and deletes the segments and snapshots it
+   * supersedes. Only files the writer has already rolled past are read, so appends carry on
+   * untouched while this runs.
+   *
+   * @return {@code false} if there was no sealed segment to fold
+   */
+  public boolean compact() throws IOException {
+    synchronized (compactionLock) {
+      long sealedBelow;
+      synchronized (appendLock) {
+        sealedBelow = segmentIndex;
+      }
+      JournalSnapshot.Image image = new JournalSnapshot.Image();
+      long firstSegment = JournalSnapshot.loadLatest(directory, image);
+      if (firstSegment >= sealedBelow) {
+        return false;
+      }
+      List<Long> segments = listSegments(directory);
+      for (long index : segments) {
+        if (index >= firstSegment && index < sealedBelow) {
+          replaySegment(index, image, false);
+        }
+      }
+      JournalSnapshot.write(directory, sealedBelow, image);
+      for (long index : segments) {
+        if (index < sealedBelow) {
+          Files.deleteIfExists(segmentPath(directory, index));
+        }
+      }
+      JournalSnapshot.deleteOlderThan(directory, sealedBelow);
+      log.info("Compacted transfer journal below segment {} into a snapshot of {} accounts", sealedBelow,
+              image.balances.size());
+      return true;
+    }
+  }
+
+  public long getWritePosition() {
+    synchronized (appendLock) {
+      return writePosition;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (flushMonitor) {
+      running = false;
+      flushMonitor.notifyAll();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    long target;
+    synchronized (appendLock) {
+      mapping.force();
+      channel.close();
+      target = writePosition;
+    }
+    synchronized (flushMonitor) {
+      flushedPosition = Math.max(flushedPosition, target);
+      closed = true;
+      flushMonitor.notifyAll();
+    }
+  }
+
+  private long append(ByteBuffer payload) {
+    payload.flip();
+    int length = payload.remaining();
+    if (HEADER_BYTES + length > segmentSize) {
+      throw new IllegalArgumentException("Journal record of " + length + " bytes exceeds the segment size");
+    }
+    if (writer.remaining() < HEADER_BYTES + length) {
+      rollSegment();
+    }
+    crc.reset();
+    crc.update(payload.duplicate());
+    int start = writer.position();
+    // Payload and checksum go in before the length, so a reader never sees a length whose
+    // record is still being copied
+    writer.position(start + HEADER_BYTES);
+    writer.put(payload);
+    writer.putInt(start + 4, (int) crc.getValue());
+    writer.putInt(start, length);
+    writePosition = segmentIndex * (long) segmentSize + writer.position();
+    return writePosition;
+  }
+
+  private void rollSegment() {
+    try {
+      mapping.force();
+      channel.close();
+      openSegment(segmentIndex + 1, 0);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to roll journal segment", e);
+    }
+    log.info("Rolled transfer journal to segment {}", segmentIndex);
+  }
+
+  private void openSegment(long index, int offset) throws IOException {
+    Path path = segmentPath(directory, index);
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    writer = mapping.duplicate();
+    writer.position(offset);
+    segmentIndex = index;
+    writePosition = index * (long) segmentSize + offset;
+  }
+
+  private void flushLoop() {
+    while (true) {
+      synchronized (flushMonitor) {
+        while (running && flushRequested <= flushedPosition) {
+          try {
+            flushMonitor.wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (!running) {
+          return;
+        }
+      }
+      long target;
+      MappedByteBuffer toForce;
+      synchronized (appendLock) {
+        // Earlier segments were forced when they were rolled, so forcing the current mapping
+        // makes everything up to the current write position durable
+        target = writePosition;
+        toForce = mapping;
+      }
+      toForce.force();
+      synchronized (flushMonitor) {
+        if (target > flushedPosition) {
+          flushedPosition = target;
+        }
+        flushMonitor.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Replays one segment and returns the offset right after its last intact record. A damaged
+   * record is tolerated only at the tail of the newest segment, where a crash can leave it.
+   */
+  private int replaySegment(long index, Visitor visitor, boolean last) throws IOException {
+    Path path = segmentPath(directory, index);
+    // Only the newest segment may need its torn tail wiped, sealed ones are mapped read-only
+    try (FileChannel readChannel = last
+            ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = readChannel.map(last ? FileChannel.MapMode.READ_WRITE
+              : FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+      int offset = 0;
+      CRC32 checksum = new CRC32();
+      while (offset + HEADER_BYTES <= segmentSize) {
+        int length = buffer.getInt(offset);
+        if (length == 0) {
+          return offset;
+        }
+        boolean intact = length > 0 && length <= segmentSize - offset - HEADER_BYTES;
+        if (intact) {
+          ByteBuffer payload = buffer.duplicate();
+          payload.position(offset + HEADER_BYTES).limit(offset + HEADER_BYTES + length);
+          checksum.reset();
+          checksum.update(payload.duplicate());
+          intact = (int) checksum.getValue() == buffer.getInt(offset + 4);
+          if (intact) {
+            apply(payload.slice(), visitor);
+          }
+        }
+        if (!intact) {
+          if (!last) {
+            throw new IllegalStateException("Corrupt record at offset " + offset + " of " + path);
+          }
+          log.warn("Discarding torn record at offset {} of {}", offset, path);
+          for (int i = offset; i < segmentSize; i++) {
+            buffer.put(i, (byte) 0);
+          }
+          buffer.force();
+          return offset;
+        }
+        offset += HEADER_BYTES + length;
+      }
+      return offset;
+    }
+  }
+
+  private static void apply(ByteBuffer payload, Visitor visitor) {
+    byte type = payload.get();
+    switch (type) {
+      case TYPE_CREATE:
+        visitor.accountCreated(getString(payload), payload.getLong(), Account.DEFAULT_CURRENCY);
+        break;
+      case TYPE_CREATE_IN_CURRENCY:
+        visitor.accountCreated(getString(payload), payload.getLong(), getString(payload));
+        break;
+      case TYPE_BALANCE_CHANGES:
+        int count = payload.getInt();
+        String[] accountIds = new String[count];
+        long[] deltas = new long[count];
+        for (int i = 0; i < count; i++) {
+          accountIds[i] = getString(payload);
+          deltas[i] = payload.getLong();
+        }
+        visitor.balancesChanged(accountIds, deltas, count);
+        break;
+      case TYPE_CLEAR:
+        visitor.accountsCleared();
+        break;
+      default:
+        throw new IllegalStateException("Unknown journal record type " + type);
+    }
+  }
+
+  private ByteBuffer payload(int size) {
+    if (scratch.capacity() < size) {
+      scratch = ByteBuffer.allocate(Math.max(size, scratch.capacity() * 2));
+    }
+    scratch.clear();
+    return scratch;
+  }
+
+  private static int stringSize(String value) {
+    int size = isAscii(value) ? value.length() : value.getBytes(StandardCharsets.UTF_8).length;
+    if (size > Short.MAX_VALUE) {
+      throw new IllegalArgumentException("Account id is too long to journal");
+    }
+    return 2 + size;
+  }
+
+  // Account ids are nearly always ASCII, which is written char by char without a byte[] copy
+  private static void putString(ByteBuffer buffer, String value) {
+    if (isAscii(value)) {
+      buffer.putShort((short) value.length());
+      for (int i = 0; i < value.length(); i++) {
+        buffer.put((byte) value.charAt(i));
+      }
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    buffer.putShort((short) bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static boolean isAscii(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static Path segmentPath(Path directory, long index) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  static List<Long> listSegments(Path directory) throws IOException {
+    List<Long> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+            SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path path : stream) {
+        String name = path.getFileName().toString();
+        segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length())));
+      }
+    }
+    Collections.sort(segments);
+    return segments;
+  }
+}
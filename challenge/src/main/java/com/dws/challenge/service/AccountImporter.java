@@ -0,0 +1,302 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ImportResult;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.RejectedAccount;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Streams accounts in from CSV ({@code accountId,balance[,currency]}, optional header) or NDJSON
+ * ({@code {"accountId":..,"balance":..,"currency":..}} per line, currency optional); accounts
+ * without a currency get {@link Account#DEFAULT_CURRENCY}. The caller's thread only splits the
+ * input into chunks of lines; a worker pool parses, validates and inserts the chunks in parallel
+ * with one {@link AccountsRepository#createAccounts} call each. At most two chunks per worker are in
+ * flight, so memory stays bounded however large the input. Invalid rows and existing ids are
+ * reported per line and never abort the import. Rows inserted before a repository failure stay
+ * inserted.
+ */
+@Component
+@Slf4j
+public class AccountImporter {
+
+  public enum Format {
+    CSV,
+    NDJSON
+  }
+
+  static final int CHUNK_SIZE = 4096;
+
+  static final int MAX_REPORTED_ERRORS = 1000;
+
+  private final AccountsRepository accountsRepository;
+
+  private final BalanceIndex balanceIndex;
+
+  private final ObjectReader jsonReader;
+
+  private final ExecutorService workers;
+
+  private final int parallelism;
+
+  // Without a balance index
+  public AccountImporter(AccountsRepository accountsRepository, ObjectMapper objectMapper, int parallelism) {
+    this(accountsRepository, objectMapper, parallelism, BalanceIndex.disabled());
+  }
+
+  @Autowired
+  public AccountImporter(AccountsRepository accountsRepository, ObjectMapper objectMapper,
+                         @Value("${challenge.import.parallelism:0}") int parallelism, BalanceIndex balanceIndex) {
+    this.accountsRepository = accountsRepository;
+    this.balanceIndex = balanceIndex;
+    this.jsonReader = objectMapper.readerFor(JsonNode.class);
+    this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "account-import-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Resolves {@code name} inside {@code directory}, or returns {@code null} if it points elsewhere.
+   */
+  public static Path resolveWithin(Path directory, String name) {
+    Path root = directory.toAbsolutePath().normalize();
+    Path file = root.resolve(name).normalize();
+    return file.startsWith(root) && !file.equals(root) ? file : null;
+  }
+
+  public ImportResult importFile(Path file, Format format) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return importStream(in, format);
+    }
+  }
+
+  public ImportResult importStream(InputStream in, Format format) throws IOException {
+    Run run = new Run(format);
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    List<String> lines = new ArrayList<>(CHUNK_SIZE);
+    long firstLine = 1;
+    long lineNumber = 0;
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        lines.add(line);
+        if (lines.size() == CHUNK_SIZE) {
+          run.submit(firstLine, lines);
+          lines = new ArrayList<>(CHUNK_SIZE);
+          firstLine = lineNumber + 1;
+        }
+      }
+      if (!lines.isEmpty()) {
+        run.submit(firstLine, lines);
+      }
+    } finally {
+      run.awaitAll();
+    }
+    return run.result();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  /**
+   * One import: chunks in flight and what they reported.
+   */
+  private final class Run {
+
+    private final Format format;
+
+    private final Semaphore inFlight = new Semaphore(parallelism * 2);
+
+    private final AtomicLong imported = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final List<ImportResult.RowError> errors = new ArrayList<>();
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private Run(Format format) {
+      this.format = format;
+    }
+
+    private void submit(long firstLine, List<String> lines) {
+      // Stop reading once a chunk has failed
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+      inFlight.acquireUninterruptibly();
+      try {
+        workers.execute(() -> {
+          try {
+            process(firstLine, lines);
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            inFlight.release();
+          }
+        });
+      } catch (RuntimeException notAccepted) {
+        inFlight.release();
+        throw notAccepted;
+      }
+    }
+
+    private void process(long firstLine, List<String> lines) {
+      List<Account> accounts = new ArrayList<>(lines.size());
+      long[] accountLines = new long[lines.size()];
+      for (int i = 0; i < lines.size(); i++) {
+        long line = firstLine + i;
+        String text = lines.get(i).trim();
+        if (text.isEmpty() || line == 1 && format == Format.CSV && isHeader(text)) {
+          continue;
+        }
+        try {
+          accountLines[accounts.size()] = line;
+          accounts.add(format == Format.CSV ? parseCsv(text) : parseJson(text));
+        } catch (IllegalArgumentException e) {
+          reject(line, e.getMessage());
+        }
+      }
+
+      List<RejectedAccount> rejections = accountsRepository.createAccounts(accounts);
+      imported.addAndGet(accounts.size() - rejections.size());
+      // Both lists are in input order, so rejections are matched up in one pass
+      int next = 0;
+      for (int i = 0; i < accounts.size(); i++) {
+        if (next < rejections.size() && accounts.get(i) == rejections.get(next).getAccount()) {
+          reject(accountLines[i], rejections.get(next).getReason());
+          next++;
+        } else {
+          balanceIndex.refresh(accounts.get(i).getAccountId());
+        }
+      }
+    }
+
+    private void reject(long line, String message) {
+      rejected.incrementAndGet();
+      synchronized (errors) {
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+          errors.add(new ImportResult.RowError(line, message));
+        }
+      }
+    }
+
+    private void awaitAll() {
+      inFlight.acquireUninterruptibly(parallelism * 2);
+      inFlight.release(parallelism * 2);
+    }
+
+    private ImportResult result() {
+      RuntimeException e = failure.get();
+      if (e != null) {
+        throw e;
+      }
+      List<ImportResult.RowError> sorted;
+      synchronized (errors) {
+        sorted = new ArrayList<>(errors);
+      }
+      sorted.sort(Comparator.comparingLong(ImportResult.RowError::getLine));
+      return new ImportResult(imported.get(), rejected.get(), sorted);
+    }
+  }
+
+  private static boolean isHeader(String text) {
+    return text.equalsIgnoreCase("accountId,balance") || text.equalsIgnoreCase("accountId,balance,currency");
+  }
+
+  private static Account parseCsv(String text) {
+    int comma = text.indexOf(',');
+    int second = comma < 0 ? -1 : text.indexOf(',', comma + 1);
+    if (comma < 0 || second >= 0 && text.indexOf(',', second + 1) >= 0) {
+      throw new IllegalArgumentException("Expected accountId,balance[,currency]");
+    }
+    if (second < 0) {
+      return validated(text.substring(0, comma).trim(), text.substring(comma + 1).trim(), null);
+    }
+    return validated(text.substring(0, comma).trim(), text.substring(comma + 1, second).trim(),
+            text.substring(second + 1).trim());
+  }
+
+  private Account parseJson(String text) {
+    JsonNode node;
+    try {
+      node = jsonReader.readValue(text);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+    }
+    JsonNode accountId = node.get("accountId");
+    JsonNode balance = node.get("balance");
+    JsonNode currency = node.get("currency");
+    return validated(accountId == null || accountId.isNull() ? null : accountId.asText(),
+            balance == null || balance.isNull() ? null : balance.asText(),
+            currency == null || currency.isNull() ? null : currency.asText());
+  }
+
+  // Same constraints as Account's bean validation, checked by hand to stay cheap per row
+  private static Account validated(String accountId, String balanceText, String currency) {
+    if (accountId == null || accountId.isEmpty()) {
+      throw new IllegalArgumentException("Account id must not be empty");
+    }
+    if (balanceText == null || balanceText.isEmpty()) {
+      throw new IllegalArgumentException("Balance must be provided");
+    }
+    BigDecimal balance;
+    try {
+      balance = new BigDecimal(balanceText);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Balance " + balanceText + " is not a number");
+    }
+    if (balance.signum() < 0) {
+      throw new IllegalArgumentException("Initial balance must be positive.");
+    }
+    if (currency != null && !isCurrencyCode(currency)) {
+      throw new IllegalArgumentException("Currency must be a three-letter ISO 4217 code.");
+    }
+    return new Account(accountId, balance, currency);
+  }
+
+  private static boolean isCurrencyCode(String currency) {
+    if (currency.length() != 3) {
+      return false;
+    }
+    for (int i = 0; i < 3; i++) {
+      if (currency.charAt(i) < 'A' || currency.charAt(i) > 'Z') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,157 @@
+package com.dws.challenge.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped per-account locks. Account ids are hashed onto a fixed pool of locks, so two
+ * transfers contend only when their accounts share a stripe. Every multi-account
+ * acquisition takes its stripes in ascending index order, which rules out deadlock.
+ */
+@Component
+public class AccountLockManager {
+
+  public static final int FIRST_CONTENDED = 1;
+
+  public static final int SECOND_CONTENDED = 2;
+
+  private final ReentrantLock[] stripes;
+
+  private final int mask;
+
+  public AccountLockManager(@Value("${challenge.locks.stripes:1024}") int stripeCount) {
+    if (stripeCount <= 0) {
+      throw new IllegalArgumentException("Stripe count must be positive");
+    }
+    int size = Integer.highestOneBit(stripeCount - 1) << 1;
+    if (size <= 0) {
+      size = 1;
+    }
+    this.stripes = new ReentrantLock[size];
+    for (int i = 0; i < size; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+    this.mask = size - 1;
+  }
+
+  int stripeFor(String accountId) {
+    int h = accountId.hashCode();
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  /**
+   * Locks the stripes guarding both accounts in canonical order.
+   */
+  public Locked lock(String firstAccountId, String secondAccountId) {
+    int first = stripeFor(firstAccountId);
+    int second = stripeFor(secondAccountId);
+    if (first == second) {
+      return acquire(new int[] {first});
+    }
+    return acquire(first < second ? new int[] {first, second} : new int[] {second, first});
+  }
+
+  /**
+   * Same as {@link #lock(String, String)} without allocating a handle; release with
+   * {@link #unlockPair(String, String)} for the same accounts.
+   *
+   * @return which stripes had to be waited for, a combination of {@link #FIRST_CONTENDED} and
+   * {@link #SECOND_CONTENDED}
+   */
+  public int lockPair(String firstAccountId, String secondAccountId) {
+    int first = stripeFor(firstAccountId);
+    int second = stripeFor(secondAccountId);
+    if (first == second) {
+      return lockStripe(first) ? FIRST_CONTENDED | SECOND_CONTENDED : 0;
+    }
+    int lower = Math.min(first, second);
+    int contended = lockStripe(lower) ? (lower == first ? FIRST_CONTENDED : SECOND_CONTENDED) : 0;
+    try {
+      if (lockStripe(Math.max(first, second))) {
+        contended |= lower == first ? SECOND_CONTENDED : FIRST_CONTENDED;
+      }
+    } catch (RuntimeException | Error e) {
+      stripes[lower].unlock();
+      throw e;
+    }
+    return contended;
+  }
+
+  public void unlockPair(String firstAccountId, String secondAccountId) {
+    int first = stripeFor(firstAccountId);
+    int second = stripeFor(secondAccountId);
+    if (first != second) {
+      stripes[Math.max(first, second)].unlock();
+    }
+    stripes[Math.min(first, second)].unlock();
+  }
+
+  /**
+   * Locks the stripes guarding every given account in canonical order.
+   */
+  public Locked lockAll(Collection<String> accountIds) {
+    int[] indexes = new int[accountIds.size()];
+    int n = 0;
+    for (String accountId : accountIds) {
+      indexes[n++] = stripeFor(accountId);
+    }
+    Arrays.sort(indexes);
+    int distinct = 0;
+    for (int i = 0; i < n; i++) {
+      if (distinct == 0 || indexes[distinct - 1] != indexes[i]) {
+        indexes[distinct++] = indexes[i];
+      }
+    }
+    return acquire(Arrays.copyOf(indexes, distinct));
+  }
+
+  // Waits only if the stripe is held, and says so
+  private boolean lockStripe(int index) {
+    if (stripes[index].tryLock()) {
+      return false;
+    }
+    stripes[index].lock();
+    return true;
+  }
+
+  private Locked acquire(int[] orderedStripes) {
+    int acquired = 0;
+    try {
+      for (int index : orderedStripes) {
+        stripes[index].lock();
+        acquired++;
+      }
+    } catch (RuntimeException | Error e) {
+      release(orderedStripes, acquired);
+      throw e;
+    }
+    return new Locked(orderedStripes);
+  }
+
+  private void release(int[] orderedStripes, int count) {
+    for (int i = count - 1; i >= 0; i--) {
+      stripes[orderedStripes[i]].unlock();
+    }
+  }
+
+  /**
+   * Handle for a set of held stripes, released by {@link #close()}.
+   */
+  public final class Locked implements AutoCloseable {
+
+    private final int[] orderedStripes;
+
+    private Locked(int[] orderedStripes) {
+      this.orderedStripes = orderedStripes;
+    }
+
+    @Override
+    public void close() {
+      release(orderedStripes, orderedStripes.length);
+    }
+  }
+}
@@ -1,10 +1,15 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.domain.TransactionPage;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
-import javax.security.auth.login.AccountNotFoundException;
 import java.math.BigDecimal;
+import java.util.List;
 
 
 public interface AccountService {
@@ -13,6 +18,53 @@ public interface AccountService {
 
     Account getAccount(String accountId);
 
+    /**
+     * Immutable current state of the account, or {@code null} if it does not exist. Never waits
+     * for a transfer in progress.
+     */
+    AccountSnapshot getAccountSnapshot(String accountId);
+
+    /**
+     * Snapshots of several accounts read in one pass, in the order of {@code accountIds}, with
+     * {@code null} for an account that does not exist.
+     */
+    List<AccountSnapshot> getAccountSnapshots(List<String> accountIds);
+
+    /**
+     * Accounts with a balance between the bounds, both inclusive and {@code null} for unbounded,
+     * lowest balance first or highest first when {@code descending}. Answered from the balance
+     * index without a scan of the accounts.
+     */
+    List<AccountSnapshot> findByBalance(BigDecimal minBalance, BigDecimal maxBalance, int limit, boolean descending);
+
    void transfer(String accountFromId, String accountToId, BigDecimal amount);
 
+   /**
+    * Same as {@link #transfer(String, String, BigDecimal)} with the amount already in minor units.
+    */
+   void transfer(String accountFromId, String accountToId, long amountMinorUnits);
+
+   /**
+    * Same as {@link #transfer(String, String, long)}, but only while the source account is still at
+    * {@code expectedFromVersion}, as read from its snapshot.
+    *
+    * @throws com.dws.challenge.exception.VersionConflictException if the source account has changed
+    */
+   void transfer(String accountFromId, String accountToId, long amountMinorUnits, long expectedFromVersion);
+
+   List<TransferResult> transferBatch(List<TransferRequest> transfers);
+
+   /**
+    * Debits the sum of all legs from one account and credits every leg, atomically: either all
+    * legs are applied or none is.
+    */
+   void transferMultiLeg(String accountFromId, List<TransferLeg> legs);
+
+   /**
+    * A page of the account's transfers, newest first, or {@code null} if the account does not exist.
+    *
+    * @param cursor {@code nextCursor} of the previous page, {@code null} for the first one
+    */
+   TransactionPage getTransactions(String accountId, Long cursor, int limit);
+
 }
@@ -1,29 +1,127 @@
 package com.dws.challenge.service;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.domain.TransactionPage;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.TransferRateLimitedException;
+import com.dws.challenge.exception.UnsupportedTransferException;
+import com.dws.challenge.exception.VersionConflictException;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.PartitionedAccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import javax.security.auth.login.AccountNotFoundException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class AccountsServiceImpl implements AccountService {
 
+  static final int MAX_TRANSACTIONS_PAGE = 500;
+
+  static final int MAX_BATCH_GET = 1000;
+
+  // Most accounts one chunk of a transfer batch locks at once
+  static final int MAX_SETTLEMENT_ACCOUNTS = 64;
+
+  // Versions start at 0, so no account is ever at this one
+  private static final long ANY_VERSION = -1;
+
+  // Stackless and without suppression, so one instance serves every rejection
+  private static final TransferRateLimitedException RATE_LIMITED =
+          new TransferRateLimitedException("Transfer rate limit exceeded");
+
   @Getter
   private final AccountsRepository accountsRepository;
 
-  @Autowired
-  private NotificationService notificationService;
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final AccountLockManager lockManager;
+
+  private final TransferMetrics metrics;
+
+  private final TransferLedger ledger;
+
+  private final HotAccountDetector hotAccounts;
+
+  private final TransferRateLimiter rateLimiter;
+
+  private final BalanceChangeFeed changeFeed;
+
+  private final BalanceIndex balanceIndex;
+
+  private final ExchangeRateCache exchangeRates;
+
+  // Set when the repository owns its balances, transfers are then handed to it instead of locked here
+  private final PartitionedAccountsRepository partitionedRepository;
+
+  // Without hot-account detection or rate limiting
+  public AccountsServiceImpl(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                             AccountLockManager lockManager, TransferMetrics metrics, TransferLedger ledger) {
+    this(accountsRepository, notificationDispatcher, lockManager, metrics, ledger, HotAccountDetector.disabled(),
+            TransferRateLimiter.disabled());
+  }
+
+  // Without a change feed
+  public AccountsServiceImpl(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                             AccountLockManager lockManager, TransferMetrics metrics, TransferLedger ledger,
+                             HotAccountDetector hotAccounts, TransferRateLimiter rateLimiter) {
+    this(accountsRepository, notificationDispatcher, lockManager, metrics, ledger, hotAccounts, rateLimiter,
+            BalanceChangeFeed.disabled());
+  }
+
+  // Without a balance index
+  public AccountsServiceImpl(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                             AccountLockManager lockManager, TransferMetrics metrics, TransferLedger ledger,
+                             HotAccountDetector hotAccounts, TransferRateLimiter rateLimiter,
+                             BalanceChangeFeed changeFeed) {
+    this(accountsRepository, notificationDispatcher, lockManager, metrics, ledger, hotAccounts, rateLimiter,
+            changeFeed, BalanceIndex.disabled());
+  }
+
+  // Without exchange rates, transfers between currencies are refused
+  public AccountsServiceImpl(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                             AccountLockManager lockManager, TransferMetrics metrics, TransferLedger ledger,
+                             HotAccountDetector hotAccounts, TransferRateLimiter rateLimiter,
+                             BalanceChangeFeed changeFeed, BalanceIndex balanceIndex) {
+    this(accountsRepository, notificationDispatcher, lockManager, metrics, ledger, hotAccounts, rateLimiter,
+            changeFeed, balanceIndex, ExchangeRateCache.unavailable());
+  }
 
   @Autowired
-  public AccountsServiceImpl(AccountsRepository accountsRepository, NotificationService notificationService) {
+  public AccountsServiceImpl(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                             AccountLockManager lockManager, TransferMetrics metrics, TransferLedger ledger,
+                             HotAccountDetector hotAccounts, TransferRateLimiter rateLimiter,
+                             BalanceChangeFeed changeFeed, BalanceIndex balanceIndex,
+                             ExchangeRateCache exchangeRates) {
 
       this.accountsRepository = accountsRepository;
-      this.notificationService = notificationService;
+      this.notificationDispatcher = notificationDispatcher;
+      this.lockManager = lockManager;
+      this.metrics = metrics;
+      this.ledger = ledger;
+      this.hotAccounts = hotAccounts;
+      this.rateLimiter = rateLimiter;
+      this.changeFeed = changeFeed;
+      this.balanceIndex = balanceIndex;
+      this.exchangeRates = exchangeRates;
+      this.partitionedRepository = accountsRepository instanceof PartitionedAccountsRepository
+              ? (PartitionedAccountsRepository) accountsRepository : null;
 
   }
 
@@ -36,54 +134,633 @@ public class AccountsServiceImpl implements AccountService {
     if (amount.compareTo(BigDecimal.ZERO) <= 0) {
       throw new IllegalArgumentException("Amount must be positive");
     }
+    transfer(accountFromId, accountToId, Account.toMinorUnits(amount));
+  }
+
+  @Override
+  public void transfer(String accountFromId, String accountToId, long amountMinorUnits) {
+    transfer(accountFromId, accountToId, amountMinorUnits, ANY_VERSION);
+  }
+
+  @Override
+  // Allocation-free when it succeeds: primitive amounts, a handle-less pair lock, notifications
+  // queued as parts, and a stackless exception when it is rejected
+  public void transfer(String accountFromId, String accountToId, long amountMinorUnits, long expectedFromVersion) {
+    if (amountMinorUnits <= 0) {
+      throw new IllegalArgumentException("Amount must be positive");
+    }
+    if (accountFromId.equals(accountToId)) {
+      throw new IllegalArgumentException("Source and target accounts must differ");
+    }
+    acquireRate(accountFromId);
 
-    // Synchronize on the account IDs to avoid race conditions
-    synchronized (this) {
+    long started = System.nanoTime();
+    if (partitionedRepository != null) {
+      if (expectedFromVersion != ANY_VERSION) {
+        // The check and the debit would happen on different threads, with room for a change between
+        throw new UnsupportedTransferException("Conditional transfers are not supported by this repository");
+      }
+      if (!partitionedRepository.transfer(accountFromId, accountToId, amountMinorUnits)) {
+        metrics.recordInsufficientBalance();
+        throw insufficientBalance();
+      }
+      ledger.append(accountFromId, accountToId, amountMinorUnits);
+      publishChange(accountFromId, -amountMinorUnits);
+      publishChange(accountToId, amountMinorUnits);
+      String currency = currencyOf(accountFromId);
+      notifyTransfer(accountFromId, accountToId, amountMinorUnits, currency, amountMinorUnits, currency);
+      metrics.recordUnlockedTransfer(started);
+      return;
+    }
+    long locked;
+    long journalPosition;
+    long creditedMinorUnits;
+    String currencyFrom;
+    Account accountTo = accountsRepository.getAccount(accountToId);
+    // A hot receiver takes credits into its stripes without being locked, only the sender is
+    boolean stripedReceiver = accountTo != null && accountTo.isCreditStriped();
+    String lockedToId = stripedReceiver ? accountFromId : accountToId;
+    // Lock only the two accounts involved, in canonical order to stay deadlock-free
+    int contended = lockManager.lockPair(accountFromId, lockedToId);
+    try {
+      locked = System.nanoTime();
+      if (!stripedReceiver && accountTo != null && (contended & AccountLockManager.SECOND_CONTENDED) != 0) {
+        hotAccounts.recordContention(accountTo);
+      }
       Account accountFrom = accountsRepository.getAccount(accountFromId);
-      if (accountFrom == null) {
-      //  throw new AccountNotFoundException("Account not found: " + accountFromId);
+      if (accountFrom == null || accountTo == null) {
+        metrics.recordAccountNotFound();
+        throw new AccountNotFoundException(accountFrom == null ? accountFromId : accountToId);
+      }
+      currencyFrom = accountFrom.getCurrency();
+      // The sender is locked, so no other debit can move its version before this one
+      if (expectedFromVersion != ANY_VERSION && accountFrom.snapshot().getVersion() != expectedFromVersion) {
+        throw versionConflict(accountFromId, expectedFromVersion);
+      }
+
+      // Priced before anything changes, so a missing rate leaves both balances alone
+      creditedMinorUnits = creditFor(accountFrom, accountTo, amountMinorUnits);
+
+      // Debit only if the sender has enough balance, then credit the receiver
+      if (!accountFrom.tryDebit(amountMinorUnits)) {
+        metrics.recordInsufficientBalance();
+        throw insufficientBalance();
       }
+      try {
+        journalPosition = creditedMinorUnits == amountMinorUnits
+                ? accountsRepository.recordTransfer(accountFromId, accountToId, amountMinorUnits)
+                : accountsRepository.recordBalanceChanges(new String[] {accountFromId, accountToId},
+                        new long[] {-amountMinorUnits, creditedMinorUnits}, 2);
+      } catch (RuntimeException e) {
+        accountFrom.credit(amountMinorUnits);
+        throw e;
+      }
+      // Into the receiver's stripes if it is hot, journaled first so a debit folding them never
+      // precedes the record of the credit
+      accountTo.creditStriped(creditedMinorUnits);
+      publishChange(accountFrom, -amountMinorUnits);
+      publishChange(accountTo, creditedMinorUnits);
+
+      // The repository hands out the stored instances, so the updates above are already visible
+      // to every reader; re-creating them would only fail with a duplicate id.
+    } finally {
+      lockManager.unlockPair(accountFromId, lockedToId);
+    }
+    // Outside the locks: the ledger takes none of its own, and a statement lists transfers in the
+    // order they were recorded rather than strictly the order they changed the balance
+    ledger.append(accountFromId, accountToId, amountMinorUnits, creditedMinorUnits);
+    accountsRepository.awaitDurable(journalPosition);
+
+    notifyTransfer(accountFromId, accountToId, amountMinorUnits, currencyFrom, creditedMinorUnits,
+            accountTo.getCurrency());
+    metrics.recordTransfer(started, locked);
+  }
+
+  @Override
+  // Validate every leg first, then lock the whole account set once in canonical order so the debit
+  // and all credits are applied together or not at all
+  public void transferMultiLeg(String accountFromId, List<TransferLeg> legs) {
+    if (legs == null || legs.isEmpty()) {
+      throw new IllegalArgumentException("At least one leg must be provided");
+    }
+    int count = legs.size();
+    String[] accountIds = new String[count + 1];
+    long[] deltas = new long[count + 1];
+    accountIds[0] = accountFromId;
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      TransferLeg leg = legs.get(i);
+      String problem = leg == null ? "Leg must be provided"
+              : validate(new TransferRequest(accountFromId, leg.getToAccountId(), leg.getAmount()));
+      if (problem != null) {
+        throw new IllegalArgumentException("Leg " + i + ": " + problem);
+      }
+      accountIds[i + 1] = leg.getToAccountId();
+      deltas[i + 1] = Account.toMinorUnits(leg.getAmount());
+      total = Math.addExact(total, deltas[i + 1]);
+    }
+    deltas[0] = -total;
+    acquireRate(accountFromId);
 
-      Account accountTo = accountsRepository.getAccount(accountToId);
-      if (accountTo == null) {
-       // throw new AccountNotFoundException("Account not found: " + accountToId);
+    long started = System.nanoTime();
+    long locked = started;
+    long journalPosition = 0;
+    // What each receiver is credited, in its own currency; the same array unless a leg converts
+    long[] credits = deltas;
+    String[] currencies = new String[count + 1];
+    if (partitionedRepository != null) {
+      if (!partitionedRepository.transfer(accountFromId, Arrays.copyOfRange(accountIds, 1, count + 1),
+              Arrays.copyOfRange(deltas, 1, count + 1))) {
+        metrics.recordInsufficientBalance();
+        throw insufficientBalance();
+      }
+      for (int i = 1; i <= count; i++) {
+        ledger.append(accountFromId, accountIds[i], deltas[i]);
+      }
+      // The repository refuses legs between currencies
+      Arrays.fill(currencies, currencyOf(accountFromId));
+      publishChange(accountFromId, -total);
+      for (int i = 1; i <= count; i++) {
+        publishChange(accountIds[i], deltas[i]);
+      }
+    } else {
+      try (AccountLockManager.Locked ignored = lockManager.lockAll(new LinkedHashSet<>(Arrays.asList(accountIds)))) {
+        locked = System.nanoTime();
+        Account[] accounts = new Account[count + 1];
+        for (int i = 0; i <= count; i++) {
+          accounts[i] = accountsRepository.getAccount(accountIds[i]);
+          if (accounts[i] == null) {
+            metrics.recordAccountNotFound();
+            throw new AccountNotFoundException(accountIds[i]);
+          }
+          currencies[i] = accounts[i].getCurrency();
+        }
+        for (int i = 1; i <= count; i++) {
+          long credited = creditFor(accounts[0], accounts[i], deltas[i]);
+          if (credited != deltas[i]) {
+            if (credits == deltas) {
+              credits = deltas.clone();
+            }
+            credits[i] = credited;
+          }
+        }
+        if (!accounts[0].tryDebit(total)) {
+          metrics.recordInsufficientBalance();
+          throw insufficientBalance();
+        }
+        try {
+          journalPosition = accountsRepository.recordBalanceChanges(accountIds, credits, count + 1);
+        } catch (RuntimeException e) {
+          accounts[0].credit(total);
+          throw e;
+        }
+        publishChange(accounts[0], -total);
+        for (int i = 1; i <= count; i++) {
+          accounts[i].credit(credits[i]);
+          publishChange(accounts[i], credits[i]);
+        }
+      }
+      for (int i = 1; i <= count; i++) {
+        ledger.append(accountFromId, accountIds[i], deltas[i], credits[i]);
       }
+      accountsRepository.awaitDurable(journalPosition);
+    }
+
+    for (int i = 1; i <= count; i++) {
+      notifyTransfer(accountFromId, accountIds[i], deltas[i], currencies[0], credits[i], currencies[i]);
+    }
+    if (partitionedRepository != null) {
+      metrics.recordUnlockedTransfer(started);
+    } else {
+      metrics.recordTransfer(started, locked);
+    }
+  }
 
-      // Ensure the sender has enough balance
-      if (accountFrom.getBalance().compareTo(amount) < 0) {
-        throw new DuplicateAccountIdException.InsufficientBalanceException("Insufficient balance");
+  // A new instance each time: suppression cannot be turned off for it, so a shared one thrown through
+  // a try-with-resources would keep every exception suppressed there. Stackless, it is cheap to make.
+  private static InsufficientBalanceException insufficientBalance() {
+    return new InsufficientBalanceException("Insufficient balance");
+  }
+
+  private void acquireRate(String accountFromId) {
+    if (!rateLimiter.isEnabled()) {
+      return;
+    }
+    // Only accounts that exist get a bucket, or made-up ids would grow the limiter without bound
+    if (accountsRepository.getAccount(accountFromId) == null) {
+      metrics.recordAccountNotFound();
+      throw new AccountNotFoundException(accountFromId);
+    }
+    if (!rateLimiter.tryAcquire(accountFromId)) {
+      metrics.recordRateLimited();
+      throw RATE_LIMITED;
+    }
+  }
+
+  private static VersionConflictException versionConflict(String accountId, long expectedVersion) {
+    return new VersionConflictException("Account " + accountId + " has changed since version " + expectedVersion);
+  }
+
+  // Amount the receiver is credited for a debit of amountMinorUnits, converted into its currency
+  private long creditFor(Account accountFrom, Account accountTo, long amountMinorUnits) {
+    if (accountFrom.getCurrency().equals(accountTo.getCurrency())) {
+      return amountMinorUnits;
+    }
+    long credited = exchangeRates.convert(amountMinorUnits, accountFrom.getCurrency(), accountTo.getCurrency());
+    if (credited <= 0) {
+      throw new IllegalArgumentException("Amount is too small to convert");
+    }
+    return credited;
+  }
+
+  // Called with the account locked, so its changes reach the feed in the order they were applied
+  private void publishChange(Account account, long changeMinorUnits) {
+    balanceIndex.markChanged(account.getAccountId());
+    if (changeFeed.isEnabled()) {
+      appendToFeed(account, changeMinorUnits);
+    }
+  }
+
+  // For repositories that own their balances: nothing is locked here, the balance is read afterwards
+  private void publishChange(String accountId, long changeMinorUnits) {
+    balanceIndex.markChanged(accountId);
+    if (changeFeed.isEnabled()) {
+      Account account = accountsRepository.getAccount(accountId);
+      if (account != null) {
+        appendToFeed(account, changeMinorUnits);
       }
+    }
+  }
 
-      // Perform the transfer
-      accountFrom.setBalance(accountFrom.getBalance().subtract(amount));
-      accountTo.setBalance(accountTo.getBalance().add(amount));
+  private void appendToFeed(Account account, long changeMinorUnits) {
+    AccountSnapshot snapshot = account.snapshot();
+    changeFeed.balanceChanged(account.getAccountId(), changeMinorUnits, snapshot.getBalanceMinorUnits(),
+            snapshot.getVersion());
+  }
 
-      // Save updated accounts
+  // Notify both account holders, each of the amount in their own currency; this only enqueues,
+  // delivery happens on the dispatcher threads
+  private void notifyTransfer(String accountFromId, String accountToId, long debitedMinorUnits,
+                              String debitedCurrency, long creditedMinorUnits, String creditedCurrency) {
+    notificationDispatcher.enqueueTransfer(accountFromId, accountToId, debitedMinorUnits, debitedCurrency,
+            creditedMinorUnits, creditedCurrency);
+  }
+
+  // For repositories that own their balances, which only move money within one currency
+  private String currencyOf(String accountId) {
+    Account account = accountsRepository.getAccount(accountId);
+    return account != null ? account.getCurrency() : Account.DEFAULT_CURRENCY;
+  }
+
+
+  @Override
+  // Settle a batch of transfers in chunks of consecutive items: the accounts of a chunk are locked
+  // once, its items are checked in order against running balances, and only the net change per
+  // account is applied. A chunk involves at most MAX_SETTLEMENT_ACCOUNTS accounts, so a large batch
+  // never holds more than that many stripes and single transfers keep moving between its chunks.
+  public List<TransferResult> transferBatch(List<TransferRequest> transfers) {
+    long started = System.nanoTime();
+    TransferResult[] results = new TransferResult[transfers.size()];
+    long[] amounts = new long[transfers.size()];
+    for (int i = 0; i < transfers.size(); i++) {
+      TransferRequest transfer = transfers.get(i);
+      String problem = validate(transfer);
+      if (problem == null) {
+        try {
+          amounts[i] = Account.toMinorUnits(transfer.getAmount());
+        } catch (IllegalArgumentException e) {
+          problem = e.getMessage();
+        }
+      }
+      // An unknown source is rejected as such once the batch is settled, without taking a bucket
+      if (problem == null && rateLimiter.isEnabled()
+              && accountsRepository.getAccount(transfer.getFromAccountId()) != null
+              && !rateLimiter.tryAcquire(transfer.getFromAccountId())) {
+        metrics.recordRateLimited();
+        problem = RATE_LIMITED.getMessage();
+      }
+      if (problem != null) {
+        results[i] = TransferResult.rejected(i, problem);
+      }
+    }
+
+    if (partitionedRepository != null) {
+      transferEach(transfers, amounts, results);
+      metrics.recordTransferBatch(started);
+      return Arrays.asList(results);
+    }
+
+    long journalPosition = 0;
+    // Amounts credited in the receiver's currency
+    long[] credits = amounts.clone();
+    // Every account settled against, for the currencies the notifications are sent in
+    Map<String, Account> accounts = new HashMap<>();
+    Set<String> chunkAccountIds = new LinkedHashSet<>();
+    int chunkStart = 0;
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i] != null) {
+        continue;
+      }
+      TransferRequest transfer = transfers.get(i);
+      int added = (chunkAccountIds.contains(transfer.getFromAccountId()) ? 0 : 1)
+              + (chunkAccountIds.contains(transfer.getToAccountId()) ? 0 : 1);
+      if (chunkAccountIds.size() + added > MAX_SETTLEMENT_ACCOUNTS) {
+        journalPosition = Math.max(journalPosition,
+                settle(transfers, chunkStart, i, chunkAccountIds, amounts, credits, results, accounts));
+        chunkAccountIds.clear();
+        chunkStart = i;
+      }
+      chunkAccountIds.add(transfer.getFromAccountId());
+      chunkAccountIds.add(transfer.getToAccountId());
+    }
+    if (!chunkAccountIds.isEmpty()) {
+      journalPosition = Math.max(journalPosition, settle(transfers, chunkStart, transfers.size(), chunkAccountIds,
+              amounts, credits, results, accounts));
+    }
+    for (int i = 0; i < results.length; i++) {
+      if (results[i].getStatus() == TransferResult.Status.SUCCEEDED) {
+        ledger.append(transfers.get(i).getFromAccountId(), transfers.get(i).getToAccountId(), amounts[i],
+                credits[i]);
+      }
+    }
+    accountsRepository.awaitDurable(journalPosition);
+
+    for (int i = 0; i < results.length; i++) {
+      if (results[i].getStatus() == TransferResult.Status.SUCCEEDED) {
+        TransferRequest transfer = transfers.get(i);
+        notifyTransfer(transfer.getFromAccountId(), transfer.getToAccountId(), amounts[i],
+                accounts.get(transfer.getFromAccountId()).getCurrency(), credits[i],
+                accounts.get(transfer.getToAccountId()).getCurrency());
+      }
+    }
+    metrics.recordTransferBatch(started);
+    return Arrays.asList(results);
+  }
+
+  // Settles the items from start to end not rejected yet, with the accounts they involve locked
+  private long settle(List<TransferRequest> transfers, int start, int end, Set<String> accountIds, long[] amounts,
+                      long[] credits, TransferResult[] results, Map<String, Account> accounts) {
+    try (AccountLockManager.Locked ignored = lockManager.lockAll(accountIds)) {
+      Map<String, Position> positions = new HashMap<>();
+      for (String accountId : accountIds) {
+        Account account = accountsRepository.getAccount(accountId);
+        if (account != null) {
+          positions.put(accountId, new Position(account));
+          accounts.put(accountId, account);
+        }
+      }
+
+      for (int i = start; i < end; i++) {
+        if (results[i] != null) {
+          continue;
+        }
+        TransferRequest transfer = transfers.get(i);
+        Position from = positions.get(transfer.getFromAccountId());
+        Position to = positions.get(transfer.getToAccountId());
+        if (from == null || to == null) {
+          String missing = from == null ? transfer.getFromAccountId() : transfer.getToAccountId();
+          metrics.recordAccountNotFound();
+          results[i] = TransferResult.rejected(i, "Account not found: " + missing);
+        } else if (from.balance < amounts[i]) {
+          metrics.recordInsufficientBalance();
+          results[i] = TransferResult.rejected(i, "Insufficient balance");
+        } else {
+          try {
+            credits[i] = creditFor(from.account, to.account, amounts[i]);
+          } catch (RuntimeException e) {
+            results[i] = TransferResult.rejected(i, e.getMessage());
+            continue;
+          }
+          from.balance -= amounts[i];
+          to.balance += credits[i];
+          results[i] = TransferResult.succeeded(i);
+        }
+      }
+
+      // Applied before it is journaled, so a settlement that fails leaves no record to replay
+      applyNetChanges(positions.values());
+      long journalPosition;
       try {
-        accountsRepository.createAccount(accountFrom);  // Update the sender account
-        accountsRepository.createAccount(accountTo);    // Update the receiver account
-      } catch (DuplicateAccountIdException e) {
-        // In the case of an error with saving accounts, handle appropriately
-        throw new RuntimeException("Error updating accounts during transfer", e);
+        journalPosition = recordNetChanges(positions.values());
+      } catch (RuntimeException e) {
+        revertNetChanges(positions.values());
+        throw e;
+      }
+      for (Position position : positions.values()) {
+        if (position.balance != position.initialBalance) {
+          publishChange(position.account, position.balance - position.initialBalance);
+        }
       }
+      return journalPosition;
+    }
+  }
 
-      // Send notifications to both account holders
-      notificationService.sendNotification(accountFromId, "Transferred " + amount + " to account " + accountToId);
-      notificationService.sendNotification(accountToId, "Received " + amount + " from account " + accountFromId);
+  // A partitioned repository settles across shard owners one transfer at a time, there is no
+  // lock over all accounts of the batch to net changes under
+  private void transferEach(List<TransferRequest> transfers, long[] amounts, TransferResult[] results) {
+    for (int i = 0; i < transfers.size(); i++) {
+      if (results[i] != null) {
+        continue;
+      }
+      TransferRequest transfer = transfers.get(i);
+      boolean applied;
+      try {
+        applied = partitionedRepository.transfer(transfer.getFromAccountId(), transfer.getToAccountId(), amounts[i]);
+      } catch (AccountNotFoundException e) {
+        metrics.recordAccountNotFound();
+        results[i] = TransferResult.rejected(i, e.getMessage());
+        continue;
+      } catch (IllegalArgumentException e) {
+        results[i] = TransferResult.rejected(i, e.getMessage());
+        continue;
+      }
+      if (applied) {
+        ledger.append(transfer.getFromAccountId(), transfer.getToAccountId(), amounts[i]);
+        publishChange(transfer.getFromAccountId(), -amounts[i]);
+        publishChange(transfer.getToAccountId(), amounts[i]);
+        results[i] = TransferResult.succeeded(i);
+        String currency = currencyOf(transfer.getFromAccountId());
+        notifyTransfer(transfer.getFromAccountId(), transfer.getToAccountId(), amounts[i], currency, amounts[i],
+                currency);
+      } else {
+        metrics.recordInsufficientBalance();
+        results[i] = TransferResult.rejected(i, "Insufficient balance");
+      }
     }
   }
 
+  private static String validate(TransferRequest transfer) {
+    if (transfer == null) {
+      return "Transfer must be provided";
+    }
+    if (transfer.getFromAccountId() == null || transfer.getToAccountId() == null) {
+      return "Both account ids must be provided";
+    }
+    if (transfer.getFromAccountId().equals(transfer.getToAccountId())) {
+      return "Source and target accounts must differ";
+    }
+    if (transfer.getAmount() == null || transfer.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+      return "Amount must be positive";
+    }
+    return null;
+  }
+
+  private long recordNetChanges(Collection<Position> positions) {
+    String[] accountIds = new String[positions.size()];
+    long[] deltas = new long[positions.size()];
+    int count = 0;
+    for (Position position : positions) {
+      long delta = position.balance - position.initialBalance;
+      if (delta != 0) {
+        accountIds[count] = position.account.getAccountId();
+        deltas[count++] = delta;
+      }
+    }
+    return count == 0 ? 0 : accountsRepository.recordBalanceChanges(accountIds, deltas, count);
+  }
+
+  // Debits go first so a failure can be undone before any account has been credited
+  private static void applyNetChanges(Iterable<Position> positions) {
+    List<Position> debited = new ArrayList<>();
+    for (Position position : positions) {
+      long delta = position.balance - position.initialBalance;
+      if (delta < 0) {
+        if (!position.account.tryDebit(-delta)) {
+          for (Position undo : debited) {
+            undo.account.credit(undo.initialBalance - undo.balance);
+          }
+          throw new IllegalStateException("Balance of account " + position.account.getAccountId()
+                  + " changed while it was locked for settlement");
+        }
+        debited.add(position);
+      }
+    }
+    for (Position position : positions) {
+      long delta = position.balance - position.initialBalance;
+      if (delta > 0) {
+        position.account.credit(delta);
+      }
+    }
+  }
+
+  // Only called with the accounts still locked, so every credit applied is there to debit back
+  private static void revertNetChanges(Iterable<Position> positions) {
+    for (Position position : positions) {
+      long delta = position.balance - position.initialBalance;
+      if (delta > 0) {
+        position.account.tryDebit(delta);
+      } else if (delta < 0) {
+        position.account.credit(-delta);
+      }
+    }
+  }
+
+  /**
+   * Running balance of one account while a batch is being settled.
+   */
+  private static final class Position {
+
+    private final Account account;
+
+    private final long initialBalance;
+
+    private long balance;
+
+    private Position(Account account) {
+      this.account = account;
+      this.initialBalance = account.getBalanceMinorUnits();
+      this.balance = initialBalance;
+    }
+  }
 
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
-   accountsRepository.createAccount(account);
+   long started = System.nanoTime();
+   if (!changeFeed.isEnabled()) {
+     accountsRepository.createAccount(account);
+   } else {
+     // Locked so that no transfer into the new account reaches the feed before its creation
+     lockManager.lockPair(account.getAccountId(), account.getAccountId());
+     try {
+       accountsRepository.createAccount(account);
+       AccountSnapshot snapshot = account.snapshot();
+       changeFeed.accountCreated(account.getAccountId(), snapshot.getBalanceMinorUnits(), snapshot.getVersion());
+     } finally {
+       lockManager.unlockPair(account.getAccountId(), account.getAccountId());
+     }
+   }
+   balanceIndex.refresh(account.getAccountId());
+   metrics.recordCreateAccount(started);
   }
 
   @Override
   public Account getAccount(String accountId) {
-      return accountsRepository.getAccount(accountId);
+      long started = System.nanoTime();
+      Account account = accountsRepository.getAccount(accountId);
+      metrics.recordGetAccount(started);
+      return account;
 
   }
 
+  @Override
+  public AccountSnapshot getAccountSnapshot(String accountId) {
+    long started = System.nanoTime();
+    Account account = accountsRepository.getAccount(accountId);
+    AccountSnapshot snapshot = account == null ? null : account.snapshot();
+    metrics.recordGetAccount(started);
+    return snapshot;
+  }
+
+  @Override
+  public List<AccountSnapshot> getAccountSnapshots(List<String> accountIds) {
+    if (accountIds.size() > MAX_BATCH_GET) {
+      throw new IllegalArgumentException("At most " + MAX_BATCH_GET + " accounts can be read at once");
+    }
+    long started = System.nanoTime();
+    List<Account> accounts = accountsRepository.getAccounts(accountIds);
+    List<AccountSnapshot> snapshots = new ArrayList<>(accounts.size());
+    for (Account account : accounts) {
+      snapshots.add(account == null ? null : account.snapshot());
+    }
+    metrics.recordGetAccount(started);
+    return snapshots;
+  }
+
+  @Override
+  public List<AccountSnapshot> findByBalance(BigDecimal minBalance, BigDecimal maxBalance, int limit,
+                                             boolean descending) {
+    if (!balanceIndex.isEnabled()) {
+      throw new IllegalStateException("The balance index is disabled");
+    }
+    long min = minBalance == null ? Long.MIN_VALUE : Account.toMinorUnits(minBalance);
+    long max = maxBalance == null ? Long.MAX_VALUE : Account.toMinorUnits(maxBalance);
+    int wanted = Math.max(1, Math.min(limit, MAX_BATCH_GET));
+    List<AccountSnapshot> found = new ArrayList<>(Math.min(wanted, 64));
+    Iterator<String> accountIds = balanceIndex.range(min, max, descending);
+    while (found.size() < wanted && accountIds.hasNext()) {
+      String accountId = accountIds.next();
+      Account account = accountsRepository.getAccount(accountId);
+      if (account == null) {
+        // Removed behind the index's back, such as by clearing the repository
+        balanceIndex.refresh(accountId);
+        continue;
+      }
+      // The index trails a concurrent change by a moment, the snapshot is authoritative
+      AccountSnapshot snapshot = account.snapshot();
+      if (snapshot.getBalanceMinorUnits() >= min && snapshot.getBalanceMinorUnits() <= max) {
+        found.add(snapshot);
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public TransactionPage getTransactions(String accountId, Long cursor, int limit) {
+    if (accountsRepository.getAccount(accountId) == null) {
+      return null;
+    }
+    return ledger.read(accountId, cursor, Math.max(1, Math.min(limit, MAX_TRANSACTIONS_PAGE)));
+  }
+
 
 }
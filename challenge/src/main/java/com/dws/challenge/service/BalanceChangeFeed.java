@@ -0,0 +1,152 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.exception.SequenceExpiredException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Change-data-capture feed of account balances. Every account creation and balance change made
+ * through {@link AccountsServiceImpl} is appended to a bounded ring under a global sequence
+ * number; subscribers each read from their own {@link Cursor} and never hold up the writers,
+ * which only claim a sequence and store one entry. A cursor the ring laps has missed changes and
+ * is reported as such, its subscriber has to resume from {@link #getOldestSequence()} or re-read
+ * balances. Bulk imports go straight to the repository and are not in the feed.
+ *
+ * <p>Changes to an account are appended while it is locked, so they appear in the order they
+ * were applied. The exceptions are credits to hot accounts, which commute and are taken without
+ * the lock, and repositories that own their balances, whose changes are appended after the fact
+ * with the balance as read then.
+ */
+@Component
+public class BalanceChangeFeed {
+
+  private final AtomicReferenceArray<BalanceChange> ring;
+
+  private final int mask;
+
+  private final AtomicLong nextSequence = new AtomicLong();
+
+  /**
+   * @param capacity changes retained for subscribers to catch up on, rounded up to a power of
+   *                 two; 0 disables the feed
+   */
+  public BalanceChangeFeed(@Value("${challenge.change-feed.capacity:65536}") int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative");
+    }
+    int size = 0;
+    if (capacity > 0) {
+      size = Integer.highestOneBit(capacity - 1) << 1;
+      if (size <= 0) {
+        size = 1;
+      }
+    }
+    this.ring = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  public static BalanceChangeFeed disabled() {
+    return new BalanceChangeFeed(0);
+  }
+
+  public boolean isEnabled() {
+    return ring.length() > 0;
+  }
+
+  public int getCapacity() {
+    return ring.length();
+  }
+
+  public void accountCreated(String accountId, long balanceMinorUnits, long version) {
+    append(BalanceChange.Type.ACCOUNT_CREATED, accountId, balanceMinorUnits, 0, version);
+  }
+
+  public void balanceChanged(String accountId, long changeMinorUnits, long balanceMinorUnits, long version) {
+    append(BalanceChange.Type.BALANCE_CHANGED, accountId, balanceMinorUnits, changeMinorUnits, version);
+  }
+
+  /**
+   * Sequence number the next change will get.
+   */
+  public long getNextSequence() {
+    return nextSequence.get();
+  }
+
+  /**
+   * Oldest sequence number still held, or {@link #getNextSequence()} if none is.
+   */
+  public long getOldestSequence() {
+    return Math.max(0, nextSequence.get() - ring.length());
+  }
+
+  /**
+   * A cursor starting at {@code fromSequence}, which must be between
+   * {@link #getOldestSequence()} and {@link #getNextSequence()}.
+   *
+   * @throws SequenceExpiredException if the feed does not hold {@code fromSequence}
+   */
+  public Cursor cursor(long fromSequence) {
+    long next = getNextSequence();
+    long oldest = getOldestSequence();
+    if (fromSequence < oldest || fromSequence > next) {
+      throw new SequenceExpiredException("Sequence " + fromSequence + " is not available, the feed holds "
+              + oldest + " to " + next);
+    }
+    return new Cursor(fromSequence);
+  }
+
+  private void append(BalanceChange.Type type, String accountId, long balanceMinorUnits, long changeMinorUnits,
+                      long version) {
+    if (mask < 0) {
+      return;
+    }
+    long sequence = nextSequence.getAndIncrement();
+    // Readers check the sequence inside the entry, so the store needs no stronger ordering
+    ring.lazySet((int) sequence & mask, new BalanceChange(sequence, type, accountId, balanceMinorUnits,
+            changeMinorUnits, version));
+  }
+
+  /**
+   * One subscriber's position in the feed. Not thread-safe, each subscriber reads on one thread.
+   */
+  public final class Cursor {
+
+    private long next;
+
+    private Cursor(long next) {
+      this.next = next;
+    }
+
+    public long getNextSequence() {
+      return next;
+    }
+
+    /**
+     * Adds up to {@code max} changes in sequence order from the cursor on, stopping early at the
+     * first one not yet appended.
+     *
+     * @return {@code false} if the ring has lapped the cursor: changes were lost and the cursor is
+     * of no further use
+     */
+    public boolean poll(List<BalanceChange> into, int max) {
+      for (int i = 0; i < max; i++) {
+        BalanceChange change = ring.get((int) next & mask);
+        if (change == null || change.getSequence() < next) {
+          // Claimed by a writer that has not stored it yet, or not claimed at all
+          return next >= getOldestSequence();
+        }
+        if (change.getSequence() > next) {
+          return false;
+        }
+        into.add(change);
+        next++;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Secondary index of accounts ordered by balance, for range and top-N queries without a scan of
+ * the repository. Entries are (balance, accountId) pairs in a skip list, with the entry of each
+ * account kept in a map so that it can be replaced when the balance moves.
+ *
+ * <p>Transfers only {@link #markChanged mark} the accounts they touch, which for an account
+ * already marked is a lookup that neither locks nor allocates. A background thread re-indexes the
+ * marked accounts every {@code refresh-interval}, at most {@link #MAX_REFRESH_BATCH} per run, so
+ * neither transfers nor queries ever wait on it, and a hot account paid into many times within an
+ * interval is re-indexed once. Until then a query answers from the entries as they are.
+ *
+ * <p>{@link #refresh} reads the balance from the repository inside the account's map entry, so
+ * refreshes of one account are serialized and the last one always leaves its current balance,
+ * whatever order concurrent changes were applied in. Queries can still see an account at a
+ * balance it just left; {@link AccountsServiceImpl} checks every hit against the account itself.
+ * Each indexed account costs roughly 150 bytes of heap.
+ */
+@Component
+@Slf4j
+public class BalanceIndex {
+
+  // Bounds one refresher run, so a burst of changes is worked off over several intervals
+  public static final int MAX_REFRESH_BATCH = 10_000;
+
+  private final AccountsRepository accountsRepository;
+
+  private final boolean enabled;
+
+  private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+  private final ConcurrentHashMap<String, Entry> byAccount = new ConcurrentHashMap<>();
+
+  // Accounts whose balance moved since their entry was last refreshed
+  private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+  private final ScheduledExecutorService refresher;
+
+  @Autowired
+  public BalanceIndex(AccountsRepository accountsRepository,
+                      @Value("${challenge.balance-index.enabled:true}") boolean enabled,
+                      @Value("${challenge.balance-index.refresh-interval:50ms}") Duration refreshInterval) {
+    this.accountsRepository = accountsRepository;
+    this.enabled = enabled;
+    if (!enabled) {
+      this.refresher = null;
+      return;
+    }
+    this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "balance-index-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalMillis = Math.max(1, refreshInterval.toMillis());
+    refresher.scheduleWithFixedDelay(this::refreshMarked, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  public static BalanceIndex disabled() {
+    return new BalanceIndex(null, false, Duration.ZERO);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getSize() {
+    return byAccount.size();
+  }
+
+  /**
+   * Notes that the balance of the account moved; its entry is refreshed by the next refresher run.
+   */
+  public void markChanged(String accountId) {
+    if (enabled) {
+      changed.add(accountId);
+    }
+  }
+
+  /**
+   * Re-reads the balance of the account and moves its entry accordingly; an account that no
+   * longer exists is dropped from the index.
+   */
+  public void refresh(String accountId) {
+    if (!enabled) {
+      return;
+    }
+    byAccount.compute(accountId, (id, previous) -> {
+      Account account = accountsRepository.getAccount(id);
+      if (account == null) {
+        if (previous != null) {
+          entries.remove(previous);
+        }
+        return null;
+      }
+      long balance = account.snapshot().getBalanceMinorUnits();
+      if (previous != null) {
+        if (previous.balanceMinorUnits == balance) {
+          return previous;
+        }
+        entries.remove(previous);
+      }
+      Entry entry = new Entry(balance, id);
+      entries.add(entry);
+      return entry;
+    });
+  }
+
+  public void clear() {
+    changed.clear();
+    byAccount.clear();
+    entries.clear();
+  }
+
+  /**
+   * Re-indexes up to {@link #MAX_REFRESH_BATCH} marked accounts now instead of at the next
+   * interval.
+   *
+   * @return how many accounts were re-indexed
+   */
+  public int refreshMarked() {
+    int refreshed = 0;
+    try {
+      // Unmarked before the refresh reads the balance, so a change racing it marks the account again
+      Iterator<String> iterator = changed.iterator();
+      while (refreshed < MAX_REFRESH_BATCH && iterator.hasNext()) {
+        String accountId = iterator.next();
+        iterator.remove();
+        refresh(accountId);
+        refreshed++;
+      }
+    } catch (RuntimeException e) {
+      // Thrown out of a scheduled run it would cancel every later one
+      log.error("Failed to refresh the balance index", e);
+    }
+    return refreshed;
+  }
+
+  /**
+   * Ids of accounts with a balance between the two bounds, both inclusive, in balance order and
+   * then by id, as of the refresher's last run. Iterates lazily, the caller stops when it has
+   * enough.
+   */
+  public Iterator<String> range(long minBalanceMinorUnits, long maxBalanceMinorUnits, boolean descending) {
+    if (!enabled || minBalanceMinorUnits > maxBalanceMinorUnits) {
+      return Collections.emptyIterator();
+    }
+    // The empty id sorts before every other, so it bounds all entries of a balance from below
+    Entry from = new Entry(minBalanceMinorUnits, "");
+    NavigableSet<Entry> range = maxBalanceMinorUnits == Long.MAX_VALUE ? entries.tailSet(from, true)
+            : entries.subSet(from, true, new Entry(maxBalanceMinorUnits + 1, ""), false);
+    Iterator<Entry> iterator = descending ? range.descendingIterator() : range.iterator();
+    return new Iterator<String>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public String next() {
+        return iterator.next().accountId;
+      }
+    };
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+  }
+
+  private static final class Entry implements Comparable<Entry> {
+
+    private final long balanceMinorUnits;
+
+    private final String accountId;
+
+    private Entry(long balanceMinorUnits, String accountId) {
+      this.balanceMinorUnits = balanceMinorUnits;
+      this.accountId = accountId;
+    }
+
+    @Override
+    public int compareTo(Entry other) {
+      int byBalance = Long.compare(balanceMinorUnits, other.balanceMinorUnits);
+      return byBalance != 0 ? byBalance : accountId.compareTo(other.accountId);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Entry && compareTo((Entry) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(balanceMinorUnits) * 31 + accountId.hashCode();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.ExchangeRateUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exchange rates for transfers between currencies. The current {@link ExchangeRates} sit behind
+ * one volatile reference that a background thread replaces every {@code refresh-interval}, so a
+ * conversion is a plain read: no lock, no call to the {@link ExchangeRateProvider}. When refreshes
+ * keep failing, the last rates are used until they are older than {@code max-age}, after which
+ * cross-currency transfers are refused rather than priced on stale rates.
+ */
+@Component
+@Slf4j
+public class ExchangeRateCache {
+
+  private final ExchangeRateProvider provider;
+
+  private final long maxAgeMillis;
+
+  private final ScheduledExecutorService refresher;
+
+  private volatile ExchangeRates rates;
+
+  @Autowired
+  public ExchangeRateCache(ExchangeRateProvider provider,
+                           @Value("${challenge.fx.refresh-interval:60s}") Duration refreshInterval,
+                           @Value("${challenge.fx.max-age:10m}") Duration maxAge) {
+    this.provider = provider;
+    this.maxAgeMillis = maxAge.toMillis();
+    refresh();
+    this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "exchange-rate-refresher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalMillis = refreshInterval.toMillis();
+    refresher.scheduleWithFixedDelay(this::refresh, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private ExchangeRateCache() {
+    this.provider = null;
+    this.maxAgeMillis = 0;
+    this.refresher = null;
+  }
+
+  /**
+   * A cache without rates, for single-currency setups: every cross-currency transfer is refused.
+   */
+  public static ExchangeRateCache unavailable() {
+    return new ExchangeRateCache();
+  }
+
+  /**
+   * Converts an amount in minor units between two currencies.
+   *
+   * @throws ExchangeRateUnavailableException if there is no rate for the pair or the rates are
+   *                                          older than {@code max-age}
+   */
+  public long convert(long amountMinorUnits, String fromCurrency, String toCurrency) {
+    ExchangeRates current = rates;
+    if (current == null) {
+      throw new ExchangeRateUnavailableException("No exchange rates available");
+    }
+    if (System.currentTimeMillis() - current.getFetchedAtMillis() > maxAgeMillis) {
+      throw new ExchangeRateUnavailableException("Exchange rates are out of date");
+    }
+    return current.convert(amountMinorUnits, fromCurrency, toCurrency);
+  }
+
+  /**
+   * The rates in use, or {@code null} if none could be fetched yet.
+   */
+  public ExchangeRates getRates() {
+    return rates;
+  }
+
+  /**
+   * Fetches rates now instead of at the next interval; on failure the current rates stay.
+   *
+   * @return {@code false} if the provider failed
+   */
+  public boolean refresh() {
+    if (provider == null) {
+      return false;
+    }
+    try {
+      rates = provider.fetchRates();
+      return true;
+    } catch (Exception e) {
+      ExchangeRates current = rates;
+      if (current == null) {
+        log.error("Failed to fetch exchange rates", e);
+      } else {
+        log.error("Failed to refresh exchange rates, keeping those from {}",
+                Instant.ofEpochMilli(current.getFetchedAtMillis()), e);
+      }
+      return false;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (refresher != null) {
+      refresher.shutdownNow();
+    }
+  }
+}
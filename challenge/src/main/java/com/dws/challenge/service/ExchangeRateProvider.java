@@ -0,0 +1,13 @@
+package com.dws.challenge.service;
+
+import java.io.IOException;
+
+/**
+ * Source of exchange rates, such as a market data service. Only {@link ExchangeRateCache} calls
+ * it, from a background thread, so it may be slow or remote; transfers never wait for it. Declare
+ * another implementation as a {@code @Primary} bean to replace {@link FileExchangeRateProvider}.
+ */
+public interface ExchangeRateProvider {
+
+  ExchangeRates fetchRates() throws IOException;
+}
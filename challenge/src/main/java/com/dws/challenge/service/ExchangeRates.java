@@ -0,0 +1,86 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.exception.ConvertedAmountOutOfRangeException;
+import com.dws.challenge.exception.ExchangeRateUnavailableException;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable set of exchange rates taken at one time. Rates are quoted against a base currency and
+ * every cross rate is worked out once here, so a conversion is one lookup and one multiplication.
+ */
+public final class ExchangeRates {
+
+  private final String baseCurrency;
+
+  private final long fetchedAtMillis;
+
+  private final Map<String, Map<String, BigDecimal>> crossRates;
+
+  /**
+   * @param ratesPerBase units of each currency one unit of {@code baseCurrency} buys; the base
+   *                     currency itself may be left out
+   */
+  public ExchangeRates(String baseCurrency, Map<String, BigDecimal> ratesPerBase, long fetchedAtMillis) {
+    Map<String, BigDecimal> rates = new HashMap<>(ratesPerBase);
+    rates.put(baseCurrency, BigDecimal.ONE);
+    for (Map.Entry<String, BigDecimal> rate : rates.entrySet()) {
+      if (rate.getValue().signum() <= 0) {
+        throw new IllegalArgumentException("Rate of " + rate.getKey() + " must be positive");
+      }
+    }
+    Map<String, Map<String, BigDecimal>> crossRates = new HashMap<>();
+    for (Map.Entry<String, BigDecimal> from : rates.entrySet()) {
+      Map<String, BigDecimal> fromRates = new HashMap<>();
+      for (Map.Entry<String, BigDecimal> to : rates.entrySet()) {
+        fromRates.put(to.getKey(), to.getValue().divide(from.getValue(), MathContext.DECIMAL64));
+      }
+      crossRates.put(from.getKey(), Collections.unmodifiableMap(fromRates));
+    }
+    this.baseCurrency = baseCurrency;
+    this.fetchedAtMillis = fetchedAtMillis;
+    this.crossRates = Collections.unmodifiableMap(crossRates);
+  }
+
+  public String getBaseCurrency() {
+    return baseCurrency;
+  }
+
+  public long getFetchedAtMillis() {
+    return fetchedAtMillis;
+  }
+
+  /**
+   * Units of {@code toCurrency} one unit of {@code fromCurrency} buys, or {@code null} if either
+   * currency has no rate.
+   */
+  public BigDecimal rate(String fromCurrency, String toCurrency) {
+    Map<String, BigDecimal> fromRates = crossRates.get(fromCurrency);
+    return fromRates == null ? null : fromRates.get(toCurrency);
+  }
+
+  /**
+   * Converts an amount in minor units, rounding half to even.
+   *
+   * @throws ExchangeRateUnavailableException if either currency has no rate
+   * @throws ConvertedAmountOutOfRangeException if the converted amount does not fit in a long
+   */
+  public long convert(long amountMinorUnits, String fromCurrency, String toCurrency) {
+    BigDecimal rate = rate(fromCurrency, toCurrency);
+    if (rate == null) {
+      throw new ExchangeRateUnavailableException("No exchange rate from " + fromCurrency + " to " + toCurrency);
+    }
+    try {
+      return BigDecimal.valueOf(amountMinorUnits).multiply(rate).setScale(0, RoundingMode.HALF_EVEN)
+              .longValueExact();
+    } catch (ArithmeticException e) {
+      throw new ConvertedAmountOutOfRangeException("Amount is too large to convert from " + fromCurrency
+              + " to " + toCurrency);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.dws.challenge.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Reads rates from a properties file: {@code base=EUR} and one {@code USD=1.0842} line per
+ * currency, in units per one unit of the base. The file is read again at every refresh, so rates
+ * can be updated in place. Without a configured file the bundled {@code fx-rates.properties} is
+ * used.
+ */
+@Component
+public class FileExchangeRateProvider implements ExchangeRateProvider {
+
+  static final String BUNDLED_RATES = "/fx-rates.properties";
+
+  private static final String BASE = "base";
+
+  // Null for the bundled rates
+  private final Path file;
+
+  @Autowired
+  public FileExchangeRateProvider(@Value("${challenge.fx.rates-file:}") String file) {
+    this(file.isEmpty() ? null : Paths.get(file));
+  }
+
+  public FileExchangeRateProvider(Path file) {
+    this.file = file;
+  }
+
+  @Override
+  public ExchangeRates fetchRates() throws IOException {
+    Properties properties = new Properties();
+    try (InputStream in = file != null ? Files.newInputStream(file)
+            : FileExchangeRateProvider.class.getResourceAsStream(BUNDLED_RATES)) {
+      if (in == null) {
+        throw new IOException("Missing " + BUNDLED_RATES);
+      }
+      properties.load(in);
+    }
+    String base = properties.getProperty(BASE);
+    if (base == null) {
+      throw new IOException("No base currency in " + (file != null ? file : BUNDLED_RATES));
+    }
+    Map<String, BigDecimal> rates = new HashMap<>();
+    for (String currency : properties.stringPropertyNames()) {
+      if (!currency.equals(BASE)) {
+        try {
+          rates.put(currency, new BigDecimal(properties.getProperty(currency).trim()));
+        } catch (NumberFormatException e) {
+          throw new IOException("Invalid rate for " + currency + ": " + properties.getProperty(currency), e);
+        }
+      }
+    }
+    return new ExchangeRates(base.trim(), rates, System.currentTimeMillis());
+  }
+}
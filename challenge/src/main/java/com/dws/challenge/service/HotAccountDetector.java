@@ -0,0 +1,102 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spots accounts that transfers queue up on. Each time a transfer has to wait for the lock of
+ * its receiving account, that counts against the account; an account waited on
+ * {@code contention-threshold} times within one {@code window} has its credits striped
+ * ({@link Account#stripeCredits}), after which transfers into it no longer lock it at all.
+ * Striping is kept for the lifetime of the account.
+ */
+@Component
+public class HotAccountDetector {
+
+  // Past this many tracked accounts, expired windows are swept on the next contention
+  private static final int SWEEP_THRESHOLD = 10_000;
+
+  private final int threshold;
+
+  private final long windowNanos;
+
+  private final int stripes;
+
+  private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+  private final AtomicInteger hotAccounts = new AtomicInteger();
+
+  /**
+   * @param threshold waits within one window that make an account hot, 0 to disable detection
+   * @param stripes   credit stripes of a hot account, 0 for one per available processor
+   */
+  public HotAccountDetector(@Value("${challenge.hot-accounts.contention-threshold:64}") int threshold,
+                            @Value("${challenge.hot-accounts.window:1s}") Duration window,
+                            @Value("${challenge.hot-accounts.stripes:0}") int stripes) {
+    this.threshold = threshold;
+    this.windowNanos = window.toNanos();
+    this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+  }
+
+  public static HotAccountDetector disabled() {
+    return new HotAccountDetector(0, Duration.ofSeconds(1), 1);
+  }
+
+  /**
+   * Counts one wait for the lock of the account.
+   */
+  public void recordContention(Account account) {
+    if (threshold <= 0 || account.isCreditStriped()) {
+      return;
+    }
+    long now = System.nanoTime();
+    Window window = windows.get(account.getAccountId());
+    if (window == null) {
+      if (windows.size() >= SWEEP_THRESHOLD) {
+        windows.values().removeIf(stale -> stale.expired(now, windowNanos));
+      }
+      window = windows.computeIfAbsent(account.getAccountId(), id -> new Window(now));
+    }
+    if (window.record(now, windowNanos) >= threshold) {
+      account.stripeCredits(stripes);
+      windows.remove(account.getAccountId());
+      hotAccounts.incrementAndGet();
+    }
+  }
+
+  public int getHotAccountCount() {
+    return hotAccounts.get();
+  }
+
+  /**
+   * Waits counted for one account since its window started.
+   */
+  private static final class Window {
+
+    private long startedNanos;
+
+    private int count;
+
+    private Window(long startedNanos) {
+      this.startedNanos = startedNanos;
+    }
+
+    private synchronized int record(long now, long windowNanos) {
+      if (now - startedNanos > windowNanos) {
+        startedNanos = now;
+        count = 0;
+      }
+      return ++count;
+    }
+
+    private synchronized boolean expired(long now, long windowNanos) {
+      return now - startedNanos > windowNanos;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.dws.challenge.service;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution recorded into an HdrHistogram {@link Recorder}: a wait-free write of a
+ * few atomic increments per sample, far cheaper than a Micrometer timer with a histogram. The
+ * registry sees a count/total function timer plus percentile gauges; the gauges cover the
+ * samples since the previous refresh, which happens at most once per second when read.
+ */
+final class LatencyHistogram {
+
+  private static final long REFRESH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+  // A fixed range keeps the recorder on a non-resizing atomic histogram, samples above it are clamped
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final Recorder recorder = new Recorder(1, HIGHEST_TRACKABLE_NANOS, 2);
+
+  private final Histogram total = new Histogram(1, HIGHEST_TRACKABLE_NANOS, 2);
+
+  private Histogram interval;
+
+  private long refreshedAtNanos = System.nanoTime() - REFRESH_INTERVAL_NANOS;
+
+  void record(long latencyNanos) {
+    recorder.recordValue(Math.min(Math.max(1, latencyNanos), HIGHEST_TRACKABLE_NANOS));
+  }
+
+  void register(MeterRegistry registry, String name, String description) {
+    FunctionTimer.builder(name, this, LatencyHistogram::count, LatencyHistogram::totalNanos, TimeUnit.NANOSECONDS)
+            .description(description)
+            .register(registry);
+    for (double percentile : PERCENTILES) {
+      Gauge.builder(name + ".percentile", this, histogram -> histogram.percentileSeconds(percentile))
+              .description(description)
+              .tag("phi", String.valueOf(percentile))
+              .baseUnit("seconds")
+              .register(registry);
+    }
+    Gauge.builder(name + ".max", this, LatencyHistogram::maxSeconds)
+            .description(description)
+            .baseUnit("seconds")
+            .register(registry);
+  }
+
+  private synchronized Histogram refresh() {
+    long now = System.nanoTime();
+    if (interval == null || now - refreshedAtNanos >= REFRESH_INTERVAL_NANOS) {
+      interval = recorder.getIntervalHistogram(interval);
+      total.add(interval);
+      refreshedAtNanos = now;
+    }
+    return interval;
+  }
+
+  private long count() {
+    refresh();
+    synchronized (this) {
+      return total.getTotalCount();
+    }
+  }
+
+  private double totalNanos() {
+    refresh();
+    synchronized (this) {
+      return total.getMean() * total.getTotalCount();
+    }
+  }
+
+  private double percentileSeconds(double percentile) {
+    synchronized (this) {
+      return refresh().getValueAtPercentile(percentile * 100) / 1e9;
+    }
+  }
+
+  private double maxSeconds() {
+    synchronized (this) {
+      return refresh().getMaxValue() / 1e9;
+    }
+  }
+}
@@ -0,0 +1,330 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes notifications off the transfer path. Callers only enqueue into a bounded queue;
+ * a pool of workers drains it in batches, coalesces the messages of each batch per account
+ * and hands them to the {@link NotificationService} in one call per account.
+ */
+@Component
+@Slf4j
+public class NotificationDispatcher {
+
+  /**
+   * What {@link #enqueue} does when the queue is full.
+   */
+  public enum OverflowPolicy {
+    /** Wait for space, pushing back on the caller until the dispatcher shuts down. */
+    BLOCK,
+    /** Discard the notification being enqueued. */
+    DROP_NEWEST,
+    /** Discard the oldest queued notification to make room. */
+    DROP_OLDEST
+  }
+
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  private static final long MINOR_UNITS = BigDecimal.ONE.movePointRight(Account.SCALE).longValueExact();
+
+  private final NotificationService notificationService;
+
+  private final BlockingQueue<Notification> queue;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final int batchSize;
+
+  private final ExecutorService workers;
+
+  private volatile boolean running = true;
+
+  private final AtomicLong enqueued = new AtomicLong();
+
+  private final AtomicLong dispatched = new AtomicLong();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+  private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+  public NotificationDispatcher(NotificationService notificationService,
+                                @Value("${challenge.notifications.queue-capacity:10000}") int queueCapacity,
+                                @Value("${challenge.notifications.workers:2}") int workerCount,
+                                @Value("${challenge.notifications.batch-size:256}") int batchSize,
+                                @Value("${challenge.notifications.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy) {
+    if (queueCapacity <= 0 || workerCount <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("Queue capacity, worker count and batch size must be positive");
+    }
+    this.notificationService = notificationService;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.overflowPolicy = overflowPolicy;
+    this.batchSize = batchSize;
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+      Thread thread = new Thread(runnable, "notification-dispatcher-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int i = 0; i < workerCount; i++) {
+      workers.execute(this::dispatchLoop);
+    }
+  }
+
+  /**
+   * Queues a notification for the owner of the account.
+   *
+   * @return {@code false} if the notification was dropped by the overflow policy
+   */
+  public boolean enqueue(String accountId, String message) {
+    return offer(new Notification(accountId, message, null, 0, null, 0, null, System.nanoTime()));
+  }
+
+  /**
+   * Queues the notifications of both account holders about a transfer: the sender is told what
+   * was debited and the receiver what was credited, each in the currency of their account. Only
+   * the parts are queued; the text is rendered by the workers, off the transfer path.
+   *
+   * @return {@code false} if the notifications were dropped by the overflow policy
+   */
+  public boolean enqueueTransfer(String accountFromId, String accountToId, long debitedMinorUnits,
+                                 String debitedCurrency, long creditedMinorUnits, String creditedCurrency) {
+    return offer(new Notification(accountFromId, null, accountToId, debitedMinorUnits, debitedCurrency,
+            creditedMinorUnits, creditedCurrency, System.nanoTime()));
+  }
+
+  private boolean offer(Notification notification) {
+    boolean accepted;
+    switch (overflowPolicy) {
+      case BLOCK:
+        accepted = offerWhileRunning(notification);
+        break;
+      case DROP_OLDEST:
+        while (!queue.offer(notification)) {
+          Notification oldest = queue.poll();
+          if (oldest != null) {
+            dropped.addAndGet(oldest.count());
+          }
+        }
+        accepted = true;
+        break;
+      default:
+        accepted = queue.offer(notification);
+        break;
+    }
+    if (accepted) {
+      enqueued.addAndGet(notification.count());
+    } else {
+      dropped.addAndGet(notification.count());
+    }
+    return accepted;
+  }
+
+  // Waits for space in slices, so callers parked on a full queue are let go once the workers
+  // stop draining it rather than hanging on to the account locks they hold
+  private boolean offerWhileRunning(Notification notification) {
+    try {
+      while (running) {
+        if (queue.offer(notification, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    log.warn("Dropped a notification for owner of {}, the dispatcher is shut down", notification.accountId);
+    return false;
+  }
+
+  private void dispatchLoop() {
+    List<Notification> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        Notification first = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        dispatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void dispatch(List<Notification> batch) {
+    Map<String, StringBuilder> perAccount = new LinkedHashMap<>();
+    long now = System.nanoTime();
+    int count = 0;
+    for (Notification notification : batch) {
+      if (notification.message != null) {
+        line(perAccount, notification.accountId).append(notification.message);
+      } else {
+        appendAmount(line(perAccount, notification.accountId).append("Transferred "), notification.amountMinorUnits)
+                .append(' ').append(notification.currency)
+                .append(" to account ").append(notification.counterpartyAccountId);
+        appendAmount(line(perAccount, notification.counterpartyAccountId).append("Received "),
+                notification.counterpartyAmountMinorUnits).append(' ').append(notification.counterpartyCurrency)
+                .append(" from account ").append(notification.accountId);
+      }
+      recordLatency(now - notification.enqueuedAtNanos, notification.count());
+      count += notification.count();
+    }
+    for (Map.Entry<String, StringBuilder> entry : perAccount.entrySet()) {
+      try {
+        notificationService.sendNotification(entry.getKey(), entry.getValue().toString());
+      } catch (RuntimeException e) {
+        failed.incrementAndGet();
+        log.error("Failed to send notification to owner of {}", entry.getKey(), e);
+      }
+    }
+    dispatched.addAndGet(count);
+  }
+
+  // The account's text so far, ready for one more message
+  private static StringBuilder line(Map<String, StringBuilder> perAccount, String accountId) {
+    StringBuilder text = perAccount.get(accountId);
+    if (text == null) {
+      text = new StringBuilder(64);
+      perAccount.put(accountId, text);
+    } else {
+      text.append('\n');
+    }
+    return text;
+  }
+
+  // Renders a non-negative amount as Account.fromMinorUnits would print it, without the BigDecimal
+  private static StringBuilder appendAmount(StringBuilder text, long minorUnits) {
+    text.append(minorUnits / MINOR_UNITS).append('.');
+    long fraction = minorUnits % MINOR_UNITS;
+    for (long digit = MINOR_UNITS / 10; digit > 0; digit /= 10) {
+      text.append((char) ('0' + fraction / digit % 10));
+    }
+    return text;
+  }
+
+  private void recordLatency(long latencyNanos, int notifications) {
+    totalLatencyNanos.addAndGet(latencyNanos * notifications);
+    long max;
+    do {
+      max = maxLatencyNanos.get();
+    } while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos));
+  }
+
+  /**
+   * Stops accepting work once the queue is drained and waits briefly for the workers.
+   */
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    workers.shutdown();
+    try {
+      if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+        log.warn("Notification dispatcher stopped with {} notifications still queued", queue.size());
+        workers.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      workers.shutdownNow();
+    }
+  }
+
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  public long getEnqueuedCount() {
+    return enqueued.get();
+  }
+
+  public long getDispatchedCount() {
+    return dispatched.get();
+  }
+
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  /**
+   * Total time dispatched notifications spent queued, in nanoseconds.
+   */
+  public long getTotalLatencyNanos() {
+    return totalLatencyNanos.get();
+  }
+
+  public long getMaxLatencyNanos() {
+    return maxLatencyNanos.get();
+  }
+
+  /**
+   * Either a ready message for one account, or the parts of a transfer that notify both the
+   * sender ({@code accountId}) and the receiver ({@code counterpartyAccountId}).
+   */
+  private static final class Notification {
+
+    private final String accountId;
+
+    private final String message;
+
+    private final String counterpartyAccountId;
+
+    // Debited from the account, in its currency
+    private final long amountMinorUnits;
+
+    private final String currency;
+
+    // Credited to the counterparty, in its currency
+    private final long counterpartyAmountMinorUnits;
+
+    private final String counterpartyCurrency;
+
+    private final long enqueuedAtNanos;
+
+    private Notification(String accountId, String message, String counterpartyAccountId, long amountMinorUnits,
+                         String currency, long counterpartyAmountMinorUnits, String counterpartyCurrency,
+                         long enqueuedAtNanos) {
+      this.accountId = accountId;
+      this.message = message;
+      this.counterpartyAccountId = counterpartyAccountId;
+      this.amountMinorUnits = amountMinorUnits;
+      this.currency = currency;
+      this.counterpartyAmountMinorUnits = counterpartyAmountMinorUnits;
+      this.counterpartyCurrency = counterpartyCurrency;
+      this.enqueuedAtNanos = enqueuedAtNanos;
+    }
+
+    private int count() {
+      return message != null ? 1 : 2;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package com.dws.challenge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: level 0 has one slot per tick, every level above has slots as wide
+ * as a whole turn of the level below. A value goes into the lowest level whose turn reaches its
+ * deadline and moves down a level each time the wheel reaches its slot, so adding is O(1) and
+ * advancing is O(1) per tick plus the values that come due, however many are pending.
+ *
+ * <p>Ticks are counted from the epoch, so deadlines are stable across restarts. Not thread-safe.
+ */
+public final class TimingWheel<T> {
+
+  static final int SLOT_BITS = 6;
+
+  static final int SLOTS = 1 << SLOT_BITS;
+
+  private static final int MASK = SLOTS - 1;
+
+  private final long tickMillis;
+
+  private final int levels;
+
+  private final List<List<Node<T>>> slots;
+
+  private long currentTick;
+
+  private int size;
+
+  /**
+   * @param levels number of wheels, each multiplying the span by {@value #SLOTS}: 6 levels of
+   *               100 ms ticks span over 200 years
+   */
+  public TimingWheel(long tickMillis, int levels, long nowMillis) {
+    if (tickMillis <= 0) {
+      throw new IllegalArgumentException("Tick must be positive");
+    }
+    if (levels < 1 || levels * SLOT_BITS > 60) {
+      throw new IllegalArgumentException("Levels must be between 1 and " + 60 / SLOT_BITS);
+    }
+    this.tickMillis = tickMillis;
+    this.levels = levels;
+    this.slots = new ArrayList<>(levels * SLOTS);
+    for (int i = 0; i < levels * SLOTS; i++) {
+      slots.add(null);
+    }
+    this.currentTick = Math.floorDiv(nowMillis, tickMillis);
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /**
+   * Adds {@code value} to come due at the first tick at or after {@code deadlineMillis}, or at
+   * the next tick if that has passed.
+   *
+   * @throws IllegalArgumentException if the deadline is beyond the span of the wheel
+   */
+  public void add(T value, long deadlineMillis) {
+    long deadline = Math.max(-Math.floorDiv(-deadlineMillis, tickMillis), currentTick + 1);
+    if (deadline - currentTick >= 1L << (SLOT_BITS * levels)) {
+      throw new IllegalArgumentException("Deadline " + deadlineMillis + " is too far in the future");
+    }
+    place(new Node<>(value, deadline));
+    size++;
+  }
+
+  /**
+   * Moves the wheel forward to {@code nowMillis}, adding every value that came due on the way to
+   * {@code due}, earliest first.
+   */
+  public void advance(long nowMillis, List<T> due) {
+    long target = Math.floorDiv(nowMillis, tickMillis);
+    if (size == 0) {
+      currentTick = Math.max(currentTick, target);
+      return;
+    }
+    while (currentTick < target && size > 0) {
+      currentTick++;
+      // A slot of a higher level is due when every level below it completes a turn; its values
+      // are spread over the levels below, those due right now landing in the current slot
+      for (int level = levels - 1; level > 0; level--) {
+        if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+          List<Node<T>> bucket = slots.get(index(level, currentTick));
+          if (bucket != null && !bucket.isEmpty()) {
+            List<Node<T>> cascading = new ArrayList<>(bucket);
+            bucket.clear();
+            for (Node<T> node : cascading) {
+              place(node);
+            }
+          }
+        }
+      }
+      List<Node<T>> bucket = slots.get(index(0, currentTick));
+      if (bucket != null && !bucket.isEmpty()) {
+        for (Node<T> node : bucket) {
+          due.add(node.value);
+        }
+        size -= bucket.size();
+        bucket.clear();
+      }
+    }
+    currentTick = Math.max(currentTick, target);
+  }
+
+  private void place(Node<T> node) {
+    long delta = node.deadline - currentTick;
+    int level = 0;
+    while (level < levels - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+      level++;
+    }
+    int index = index(level, node.deadline);
+    List<Node<T>> bucket = slots.get(index);
+    if (bucket == null) {
+      bucket = new ArrayList<>();
+      slots.set(index, bucket);
+    }
+    bucket.add(node);
+  }
+
+  private static int index(int level, long tick) {
+    return level * SLOTS + ((int) (tick >>> (SLOT_BITS * level)) & MASK);
+  }
+
+  private static final class Node<T> {
+
+    private final T value;
+
+    private final long deadline;
+
+    private Node(T value, long deadline) {
+      this.value = value;
+      this.deadline = deadline;
+    }
+  }
+}
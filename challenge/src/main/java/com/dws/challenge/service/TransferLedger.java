@@ -0,0 +1,240 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.domain.TransactionPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Append-only record of the most recent applied transfers. Entries are stored column-wise in
+ * fixed-size chunks of primitive arrays, so an entry costs 48 bytes instead of an object graph.
+ * Each entry also holds the position of the previous entry of both its accounts, chaining every
+ * account's entries newest to oldest from the head its index keeps. Reading a statement follows
+ * that chain and never scans the global ledger.
+ *
+ * <p>Appends take no lock: a position comes from one counter and an account's head is swapped
+ * atomically, so appends of unrelated transfers never wait on each other and callers append after
+ * releasing their account locks. A reader that reaches an entry whose link is still being written
+ * waits for it; everything else an append writes is published by the head swap.
+ *
+ * <p>The ledger keeps at least the newest {@code capacity} entries, rounded up to whole chunks:
+ * the oldest chunk is dropped as a new one is needed and statements end where they were trimmed.
+ */
+@Component
+public class TransferLedger {
+
+  private static final int CHUNK_BITS = 12;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private static final long NONE = -1;
+
+  // Link of an entry whose append has not finished yet
+  private static final long PENDING = Long.MIN_VALUE;
+
+  private final Map<String, AccountIndex> indexes = new ConcurrentHashMap<>();
+
+  private final AtomicLong size = new AtomicLong();
+
+  // Ring of the retained chunks; a slot holds a newer chunk once the one a position needs is trimmed
+  private final AtomicReferenceArray<Chunk> chunks;
+
+  private final int chunkSlots;
+
+  public TransferLedger() {
+    this(1 << 20);
+  }
+
+  @Autowired
+  public TransferLedger(@Value("${challenge.ledger.capacity:1048576}") int capacity) {
+    // One more than capacity needs, for the chunk being filled
+    this.chunkSlots = Math.max(1, (capacity + CHUNK_MASK) >>> CHUNK_BITS) + 1;
+    this.chunks = new AtomicReferenceArray<>(chunkSlots);
+  }
+
+  /**
+   * Records that {@code amountMinorUnits} moved between the accounts.
+   *
+   * @return id of the new entry
+   */
+  public long append(String accountFromId, String accountToId, long amountMinorUnits) {
+    return append(accountFromId, accountToId, amountMinorUnits, amountMinorUnits);
+  }
+
+  /**
+   * Records a transfer that debited {@code debitedMinorUnits} from the source account and credited
+   * {@code creditedMinorUnits} to the target account, each in its own currency.
+   *
+   * @return id of the new entry
+   */
+  public long append(String accountFromId, String accountToId, long debitedMinorUnits, long creditedMinorUnits) {
+    AccountIndex from = index(accountFromId);
+    AccountIndex to = index(accountToId);
+    long position = size.getAndIncrement();
+    Chunk chunk = chunkFor(position);
+    int offset = (int) (position & CHUNK_MASK);
+    chunk.timestamps[offset] = System.currentTimeMillis();
+    chunk.debited[offset] = debitedMinorUnits;
+    chunk.credited[offset] = creditedMinorUnits;
+    chunk.fromAccounts[offset] = from;
+    chunk.toAccounts[offset] = to;
+    // The swaps publish the columns above; the links follow right behind
+    chunk.previousFrom.set(offset, from.head.getAndSet(position));
+    chunk.previousTo.set(offset, to.head.getAndSet(position));
+    return position;
+  }
+
+  /**
+   * Up to {@code limit} entries of the account older than the entry {@code before}, newest first.
+   *
+   * @param before id of the last entry of the previous page, {@code null} to start with the newest
+   * @throws IllegalArgumentException if {@code before} is not an entry of the account
+   */
+  public TransactionPage read(String accountId, Long before, int limit) {
+    AccountIndex index = indexes.get(accountId);
+    if (index == null) {
+      return new TransactionPage(new ArrayList<>(), null);
+    }
+    long position = index.head.get();
+    if (before != null) {
+      if (before < 0 || before >= size.get()) {
+        throw new IllegalArgumentException("Invalid cursor " + before);
+      }
+      Chunk chunk = retained(before);
+      if (chunk == null) {
+        // Trimmed since the previous page was read
+        return new TransactionPage(new ArrayList<>(), null);
+      }
+      int offset = (int) (before & CHUNK_MASK);
+      if (chunk.fromAccounts[offset] != index && chunk.toAccounts[offset] != index) {
+        throw new IllegalArgumentException("Invalid cursor " + before);
+      }
+      position = previous(chunk, offset, index);
+    }
+
+    List<Transaction> transactions = new ArrayList<>(Math.min(limit, 64));
+    long last = NONE;
+    while (position != NONE && transactions.size() < limit) {
+      Chunk chunk = retained(position);
+      if (chunk == null) {
+        position = NONE;
+        break;
+      }
+      int offset = (int) (position & CHUNK_MASK);
+      boolean outgoing = chunk.fromAccounts[offset] == index;
+      long amount = outgoing ? -chunk.debited[offset] : chunk.credited[offset];
+      AccountIndex counterparty = outgoing ? chunk.toAccounts[offset] : chunk.fromAccounts[offset];
+      transactions.add(new Transaction(position, Instant.ofEpochMilli(chunk.timestamps[offset]),
+              counterparty.accountId, Account.fromMinorUnits(amount)));
+      last = position;
+      position = previous(chunk, offset, index);
+    }
+    return new TransactionPage(transactions, position != NONE ? Long.valueOf(last) : null);
+  }
+
+  private AccountIndex index(String accountId) {
+    AccountIndex index = indexes.get(accountId);
+    if (index == null) {
+      index = indexes.computeIfAbsent(accountId, AccountIndex::new);
+    }
+    return index;
+  }
+
+  // The chunk holding position, allocated by whichever append gets there first
+  private Chunk chunkFor(long position) {
+    long number = position >>> CHUNK_BITS;
+    int slot = (int) (number % chunkSlots);
+    while (true) {
+      Chunk chunk = chunks.get(slot);
+      if (chunk != null && chunk.number >= number) {
+        // Only an append stalled for a whole ring of chunks finds a newer one, its entry is lost to trimming
+        return chunk.number == number ? chunk : new Chunk(number);
+      }
+      Chunk allocated = new Chunk(number);
+      if (chunks.compareAndSet(slot, chunk, allocated)) {
+        return allocated;
+      }
+    }
+  }
+
+  // The chunk holding position, or null if it has been trimmed
+  private Chunk retained(long position) {
+    long number = position >>> CHUNK_BITS;
+    Chunk chunk = chunks.get((int) (number % chunkSlots));
+    return chunk != null && chunk.number == number ? chunk : null;
+  }
+
+  // The entry before the given one in the chain of the account
+  private static long previous(Chunk chunk, int offset, AccountIndex index) {
+    AtomicLongArray links = chunk.fromAccounts[offset] == index ? chunk.previousFrom : chunk.previousTo;
+    long previous = links.get(offset);
+    while (previous == PENDING) {
+      Thread.yield();
+      previous = links.get(offset);
+    }
+    return previous;
+  }
+
+  /**
+   * Columns of {@link #CHUNK_SIZE} consecutive entries.
+   */
+  private static final class Chunk {
+
+    private final long number;
+
+    private final long[] timestamps = new long[CHUNK_SIZE];
+
+    private final long[] debited = new long[CHUNK_SIZE];
+
+    // Equal to debited unless the transfer converted between currencies
+    private final long[] credited = new long[CHUNK_SIZE];
+
+    private final AccountIndex[] fromAccounts = new AccountIndex[CHUNK_SIZE];
+
+    private final AccountIndex[] toAccounts = new AccountIndex[CHUNK_SIZE];
+
+    // Previous entry of the source and of the target account
+    private final AtomicLongArray previousFrom = pending();
+
+    private final AtomicLongArray previousTo = pending();
+
+    private Chunk(long number) {
+      this.number = number;
+    }
+
+    private static AtomicLongArray pending() {
+      AtomicLongArray links = new AtomicLongArray(CHUNK_SIZE);
+      for (int i = 0; i < CHUNK_SIZE; i++) {
+        links.lazySet(i, PENDING);
+      }
+      return links;
+    }
+  }
+
+  /**
+   * An account and the position of its newest entry.
+   */
+  private static final class AccountIndex {
+
+    private final String accountId;
+
+    private final AtomicLong head = new AtomicLong(NONE);
+
+    private AccountIndex(String accountId) {
+      this.accountId = accountId;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.dws.challenge.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per source account: each account may start {@code transfers-per-second} transfers
+ * on average, in bursts of up to {@code burst}. Keeps one busy source from taking the locks,
+ * ledger and CPU that every other account's transfers need.
+ *
+ * <p>Each bucket is a single theoretical arrival time (the generic cell rate algorithm): taking a
+ * token pushes it one interval further, and a token is available while it is less than a burst
+ * ahead of now. That makes a check one compare-and-set, with nothing allocated once the account
+ * has its bucket.
+ *
+ * <p>A bucket whose theoretical arrival time has passed is full again and no different from a new
+ * one, so whenever the number of buckets has doubled those are dropped; callers only ask for
+ * accounts that exist. A check racing the drop of its bucket may let one extra burst through.
+ */
+@Component
+public class TransferRateLimiter {
+
+  private final long intervalNanos;
+
+  private final long toleranceNanos;
+
+  private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+  private static final int MIN_SWEEP_SIZE = 1024;
+
+  // Bucket count at which idle ones are next dropped
+  private final AtomicInteger sweepAt = new AtomicInteger(MIN_SWEEP_SIZE);
+
+  /**
+   * @param transfersPerSecond sustained rate per source account, 0 to disable limiting
+   * @param burst              transfers allowed back to back, 0 for one second's worth
+   */
+  public TransferRateLimiter(@Value("${challenge.rate-limit.transfers-per-second:0}") double transfersPerSecond,
+                             @Value("${challenge.rate-limit.burst:0}") int burst) {
+    if (transfersPerSecond < 0 || burst < 0) {
+      throw new IllegalArgumentException("Rate and burst must not be negative");
+    }
+    this.intervalNanos = transfersPerSecond > 0 ? Math.max(1, (long) (1_000_000_000 / transfersPerSecond)) : 0;
+    int tokens = burst > 0 ? burst : (int) Math.max(1, Math.ceil(transfersPerSecond));
+    this.toleranceNanos = intervalNanos * (tokens - 1);
+  }
+
+  public static TransferRateLimiter disabled() {
+    return new TransferRateLimiter(0, 0);
+  }
+
+  public boolean isEnabled() {
+    return intervalNanos != 0;
+  }
+
+  /**
+   * Takes a token from the account's bucket.
+   *
+   * @return {@code false} if the bucket is empty
+   */
+  public boolean tryAcquire(String accountId) {
+    if (intervalNanos == 0) {
+      return true;
+    }
+    long now = System.nanoTime();
+    AtomicLong bucket = buckets.get(accountId);
+    if (bucket == null) {
+      bucket = buckets.computeIfAbsent(accountId, id -> new AtomicLong(Long.MIN_VALUE));
+      int size = buckets.size();
+      int threshold = sweepAt.get();
+      if (size >= threshold && sweepAt.compareAndSet(threshold, Integer.MAX_VALUE)) {
+        sweepAt.set(Math.max(MIN_SWEEP_SIZE, sweep(now) * 2));
+      }
+    }
+    while (true) {
+      long arrival = bucket.get();
+      long due = arrival == Long.MIN_VALUE || arrival - now < 0 ? now : arrival;
+      if (due - now > toleranceNanos) {
+        return false;
+      }
+      if (bucket.compareAndSet(arrival, due + intervalNanos)) {
+        return true;
+      }
+    }
+  }
+
+  public int getBucketCount() {
+    return buckets.size();
+  }
+
+  // Drops buckets that have refilled, returns how many are left
+  private int sweep(long now) {
+    for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+      long arrival = entry.getValue().get();
+      if (arrival != Long.MIN_VALUE && arrival - now < 0) {
+        buckets.remove(entry.getKey(), entry.getValue());
+      }
+    }
+    return buckets.size();
+  }
+}
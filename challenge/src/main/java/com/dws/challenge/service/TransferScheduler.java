@@ -0,0 +1,369 @@
+package com.dws.challenge.service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.repository.journal.ScheduledTransferLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs transfers at a later time, such as standing orders. Pending transfers sit in a
+ * {@link TimingWheel} advanced by one ticker thread, which hands those that come due to a
+ * dedicated pool in batches of {@code batch-size}; each batch is settled with one
+ * {@link AccountsServiceImpl#transferBatch} call. A random delay of up to {@code jitter} is added
+ * when a transfer is scheduled, so orders everyone places for the top of the hour are spread out
+ * instead of arriving in one burst. A transfer never runs before its time.
+ *
+ * <p>With a {@code directory} configured, every transfer is written to a
+ * {@link ScheduledTransferLog} before it is acknowledged and survives a restart; those that came
+ * due while the service was down run on the first tick. A batch is claimed in the log, and the
+ * claim synced, before it runs, and marked done once it settled. So a transfer runs at most once:
+ * one that was running when the service stopped may or may not have settled, and rather than
+ * running again it is logged and listed by {@link #getInDoubtTransfers()} for reconciliation
+ * against the account statements. Without a directory, pending transfers are lost on restart.
+ */
+@Component
+@Slf4j
+public class TransferScheduler {
+
+  // With 100 ms ticks, thousands of years ahead
+  private static final int WHEEL_LEVELS = 7;
+
+  private final AccountsServiceImpl accountsService;
+
+  // Null when scheduled transfers are kept in memory only
+  private final ScheduledTransferLog transferLog;
+
+  private final TimingWheel<ScheduledTransfer> wheel;
+
+  // Guarded by this, like everything below it
+  private final Map<Long, ScheduledTransfer> pending = new HashMap<>();
+
+  private final Map<Long, ScheduledTransfer> executing = new HashMap<>();
+
+  private long nextId;
+
+  // Running when the service last stopped, recovered from the log and never run again
+  private final List<ScheduledTransfer> inDoubt;
+
+  private final long jitterMillis;
+
+  private final int batchSize;
+
+  private final ExecutorService executor;
+
+  private final AtomicLong succeeded = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  private final Thread ticker;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public TransferScheduler(AccountsServiceImpl accountsService,
+                           @Value("${challenge.scheduled-transfers.directory:}") String directory,
+                           @Value("${challenge.scheduled-transfers.tick:100ms}") Duration tick,
+                           @Value("${challenge.scheduled-transfers.jitter:0s}") Duration jitter,
+                           @Value("${challenge.scheduled-transfers.batch-size:512}") int batchSize,
+                           @Value("${challenge.scheduled-transfers.workers:1}") int workers) throws IOException {
+    this(accountsService, directory.isEmpty() ? null : Paths.get(directory), tick, jitter, batchSize, workers);
+  }
+
+  /**
+   * @param directory where to keep the log of scheduled transfers, {@code null} to keep them in
+   *                  memory only
+   */
+  public TransferScheduler(AccountsServiceImpl accountsService, Path directory, Duration tick, Duration jitter,
+                           int batchSize, int workers) throws IOException {
+    if (batchSize < 1 || workers < 1) {
+      throw new IllegalArgumentException("Batch size and workers must be positive");
+    }
+    this.accountsService = accountsService;
+    this.jitterMillis = jitter.toMillis();
+    this.batchSize = batchSize;
+    this.wheel = new TimingWheel<>(tick.toMillis(), WHEEL_LEVELS, System.currentTimeMillis());
+    this.transferLog = directory == null ? null : new ScheduledTransferLog(directory);
+    if (transferLog != null) {
+      for (ScheduledTransfer transfer : transferLog.getPending()) {
+        pending.put(transfer.getId(), transfer);
+        wheel.add(transfer, transfer.getExecuteAtMillis());
+      }
+      // Also above transfers that already ran, so a stale id never names a newer transfer
+      nextId = transferLog.getNextId();
+      log.info("Recovered {} scheduled transfers from {}", pending.size(), directory);
+      this.inDoubt = Collections.unmodifiableList(transferLog.getInDoubt());
+      forgetInDoubt();
+    } else {
+      this.inDoubt = Collections.emptyList();
+    }
+
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+      Thread thread = new Thread(runnable, "scheduled-transfers-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.ticker = new Thread(this::tickLoop, "transfer-scheduler");
+    this.ticker.setDaemon(true);
+    this.ticker.start();
+  }
+
+  /**
+   * Schedules {@code amount} to move at {@code executeAt}, plus the configured jitter; a time
+   * already passed runs on the next tick. Returns once the transfer is durable.
+   */
+  public ScheduledTransfer schedule(String accountFromId, String accountToId, BigDecimal amount, Instant executeAt) {
+    if (amount.signum() <= 0) {
+      throw new IllegalArgumentException("Amount must be positive");
+    }
+    long amountMinorUnits = Account.toMinorUnits(amount);
+    if (accountFromId.equals(accountToId)) {
+      throw new IllegalArgumentException("Source and target accounts must differ");
+    }
+    for (String accountId : new String[] {accountFromId, accountToId}) {
+      if (accountsService.getAccountSnapshot(accountId) == null) {
+        throw new AccountNotFoundException(accountId);
+      }
+    }
+    long executeAtMillis = executeAt.toEpochMilli();
+    if (jitterMillis > 0) {
+      executeAtMillis += ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+    }
+
+    ScheduledTransfer transfer;
+    synchronized (this) {
+      transfer = new ScheduledTransfer(nextId++, accountFromId, accountToId, amountMinorUnits, executeAtMillis);
+      if (transferLog != null) {
+        transferLog.appendScheduled(transfer);
+      }
+    }
+    // Published only once durable, so a transfer the client saw fail never runs
+    try {
+      if (transferLog != null) {
+        transferLog.sync();
+      }
+      synchronized (this) {
+        wheel.add(transfer, executeAtMillis);
+        pending.put(transfer.getId(), transfer);
+      }
+    } catch (RuntimeException e) {
+      if (transferLog != null) {
+        synchronized (this) {
+          transferLog.appendRemoved(new long[] {transfer.getId()}, 1);
+        }
+      }
+      throw e;
+    }
+    return transfer;
+  }
+
+  /**
+   * Pending or executing transfer with this id, or {@code null} once it has run or was cancelled.
+   */
+  public synchronized ScheduledTransfer getScheduledTransfer(long id) {
+    ScheduledTransfer transfer = pending.get(id);
+    return transfer != null ? transfer : executing.get(id);
+  }
+
+  /**
+   * @return {@code false} if the transfer is not pending any more
+   */
+  public boolean cancel(long id) {
+    synchronized (this) {
+      // Its wheel entry stays and is skipped when it comes due
+      if (pending.remove(id) == null) {
+        return false;
+      }
+      if (transferLog != null) {
+        transferLog.appendRemoved(new long[] {id}, 1);
+      }
+    }
+    if (transferLog != null) {
+      transferLog.sync();
+    }
+    return true;
+  }
+
+  /**
+   * Transfers that were running when the service last stopped. Each may or may not have settled;
+   * none is run again, so they are left to be reconciled against the account statements.
+   */
+  public List<ScheduledTransfer> getInDoubtTransfers() {
+    return inDoubt;
+  }
+
+  public synchronized int getPendingCount() {
+    return pending.size();
+  }
+
+  public long getSucceededCount() {
+    return succeeded.get();
+  }
+
+  public long getFailedCount() {
+    return failed.get();
+  }
+
+  @PreDestroy
+  public void shutdown() throws IOException, InterruptedException {
+    running = false;
+    ticker.interrupt();
+    ticker.join();
+    executor.shutdown();
+    executor.awaitTermination(30, TimeUnit.SECONDS);
+    if (transferLog != null) {
+      synchronized (this) {
+        transferLog.close();
+      }
+    }
+  }
+
+  private void tickLoop() {
+    long tickNanos = TimeUnit.MILLISECONDS.toNanos(wheel.getTickMillis());
+    List<ScheduledTransfer> fired = new ArrayList<>();
+    while (running) {
+      LockSupport.parkNanos(tickNanos);
+      List<ScheduledTransfer> due = new ArrayList<>();
+      synchronized (this) {
+        fired.clear();
+        wheel.advance(System.currentTimeMillis(), fired);
+        for (ScheduledTransfer transfer : fired) {
+          if (pending.remove(transfer.getId()) != null) {
+            executing.put(transfer.getId(), transfer);
+            due.add(transfer);
+          }
+        }
+      }
+      for (int i = 0; i < due.size(); i += batchSize) {
+        List<ScheduledTransfer> batch = due.subList(i, Math.min(i + batchSize, due.size()));
+        try {
+          executor.execute(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+          // Shutting down: back to pending, they are still in the log and run after a restart
+          requeue(batch);
+        }
+      }
+    }
+  }
+
+  private synchronized void requeue(List<ScheduledTransfer> batch) {
+    for (ScheduledTransfer transfer : batch) {
+      if (executing.remove(transfer.getId()) != null) {
+        pending.put(transfer.getId(), transfer);
+        wheel.add(transfer, transfer.getExecuteAtMillis());
+      }
+    }
+  }
+
+  // Reported once, then removed from the log so that they are not reported on every restart
+  private void forgetInDoubt() {
+    if (inDoubt.isEmpty()) {
+      return;
+    }
+    long[] ids = new long[inDoubt.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ScheduledTransfer transfer = inDoubt.get(i);
+      ids[i] = transfer.getId();
+      log.warn("Scheduled transfer {} of {} from {} to {} was running when the service stopped and is not run "
+                      + "again; reconcile it against the account statements", transfer.getId(), transfer.getAmount(),
+              transfer.getFromAccountId(), transfer.getToAccountId());
+    }
+    transferLog.appendRemoved(ids, ids.length);
+    transferLog.sync();
+  }
+
+  private void execute(List<ScheduledTransfer> batch) {
+    long[] ids = new long[batch.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = batch.get(i).getId();
+    }
+    if (transferLog != null) {
+      // Durable before anything moves, so a crash from here on cannot run the batch a second time
+      try {
+        synchronized (this) {
+          transferLog.appendClaimed(ids, ids.length);
+        }
+        transferLog.sync();
+      } catch (RuntimeException e) {
+        log.error("Failed to claim a batch of {} scheduled transfers, retrying on a later tick", batch.size(), e);
+        requeue(batch);
+        return;
+      }
+    }
+
+    List<TransferRequest> requests = new ArrayList<>(batch.size());
+    for (ScheduledTransfer transfer : batch) {
+      requests.add(new TransferRequest(transfer.getFromAccountId(), transfer.getToAccountId(),
+              transfer.getAmount()));
+    }
+    int failures = 0;
+    try {
+      for (TransferResult result : accountsService.transferBatch(requests)) {
+        if (result.getStatus() != TransferResult.Status.SUCCEEDED) {
+          failures++;
+          ScheduledTransfer transfer = batch.get(result.getIndex());
+          log.warn("Scheduled transfer {} from {} to {} failed: {}", transfer.getId(),
+                  transfer.getFromAccountId(), transfer.getToAccountId(), result.getMessage());
+        }
+      }
+    } catch (RuntimeException e) {
+      failures = batch.size();
+      log.error("Batch of {} scheduled transfers failed", batch.size(), e);
+    }
+    succeeded.addAndGet(batch.size() - failures);
+    failed.addAndGet(failures);
+
+    synchronized (this) {
+      for (long id : ids) {
+        executing.remove(id);
+      }
+      if (transferLog != null) {
+        transferLog.appendRemoved(ids, ids.length);
+        compactIfNeeded();
+      }
+    }
+    if (transferLog != null) {
+      transferLog.sync();
+    }
+  }
+
+  // Called holding this, so the log is rewritten from a consistent set of pending transfers
+  private void compactIfNeeded() {
+    if (!transferLog.needsCompaction(pending.size() + executing.size())) {
+      return;
+    }
+    try {
+      // Executing transfers are written claimed, a crash before they are removed must not rerun them
+      transferLog.compact(pending.values(), executing.values());
+    } catch (IOException e) {
+      log.error("Failed to compact the scheduled transfer log", e);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ImportResult;
+import com.dws.challenge.service.AccountImporter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Bulk account creation. The request body is streamed straight into the importer and never
+ * buffered; rows that fail are reported in the result instead of failing the request.
+ */
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class AccountImportController {
+
+  static final String CSV_VALUE = "text/csv";
+
+  private final AccountImporter accountImporter;
+
+  private final Path importDirectory;
+
+  @Autowired
+  public AccountImportController(AccountImporter accountImporter,
+                                 @Value("${challenge.import.directory:}") String importDirectory) {
+    this.accountImporter = accountImporter;
+    this.importDirectory = importDirectory.isEmpty() ? null : Paths.get(importDirectory);
+  }
+
+  @PostMapping(path = "/accounts:import", consumes = CSV_VALUE)
+  public ImportResult importCsv(InputStream body) throws IOException {
+    return imported(accountImporter.importStream(body, AccountImporter.Format.CSV));
+  }
+
+  @PostMapping(path = "/accounts:import", consumes = AccountsController.NDJSON_VALUE)
+  public ImportResult importNdjson(InputStream body) throws IOException {
+    return imported(accountImporter.importStream(body, AccountImporter.Format.NDJSON));
+  }
+
+  // Imports a .csv or .ndjson file already on the server, only from the configured directory
+  @PostMapping(path = "/accounts:import", params = "file")
+  public ResponseEntity<ImportResult> importFile(@RequestParam String file) throws IOException {
+    Path path = importDirectory == null ? null : AccountImporter.resolveWithin(importDirectory, file);
+    if (path == null) {
+      return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+    }
+    if (!Files.isRegularFile(path)) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    AccountImporter.Format format = file.endsWith(".ndjson") || file.endsWith(".jsonl")
+            ? AccountImporter.Format.NDJSON : AccountImporter.Format.CSV;
+    return new ResponseEntity<>(imported(accountImporter.importFile(path, format)), HttpStatus.OK);
+  }
+
+  private static ImportResult imported(ImportResult result) {
+    log.info("Imported {} accounts, rejected {} rows", result.getImported(), result.getRejected());
+    return result;
+  }
+}
@@ -0,0 +1,75 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.domain.BatchGetRequest;
+import com.dws.challenge.domain.BatchGetResult;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.BalanceIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads of many accounts per request, for back office pages: a batch read by id, and a search
+ * by balance range answered from the {@link BalanceIndex}.
+ */
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class AccountQueryController {
+
+  private final AccountsServiceImpl accountsService;
+
+  private final BalanceIndex balanceIndex;
+
+  @Autowired
+  public AccountQueryController(AccountsServiceImpl accountsService, BalanceIndex balanceIndex) {
+    this.accountsService = accountsService;
+    this.balanceIndex = balanceIndex;
+  }
+
+  @PostMapping(path = "/accounts:batchGet", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public BatchGetResult batchGet(@RequestBody @Valid BatchGetRequest request) {
+    List<String> accountIds = request.getAccountIds();
+    List<AccountSnapshot> snapshots = accountsService.getAccountSnapshots(accountIds);
+    List<AccountSnapshot> accounts = new ArrayList<>(snapshots.size());
+    List<String> missing = new ArrayList<>();
+    for (int i = 0; i < snapshots.size(); i++) {
+      if (snapshots.get(i) == null) {
+        missing.add(accountIds.get(i));
+      } else {
+        accounts.add(snapshots.get(i));
+      }
+    }
+    return new BatchGetResult(accounts, missing);
+  }
+
+  // Lowest balances first, or the top N with order=desc; both bounds are inclusive and optional
+  @GetMapping(path = "/accounts:search")
+  public ResponseEntity<List<AccountSnapshot>> search(@RequestParam(required = false) BigDecimal minBalance,
+                                                      @RequestParam(required = false) BigDecimal maxBalance,
+                                                      @RequestParam(defaultValue = "asc") String order,
+                                                      @RequestParam(defaultValue = "50") int limit) {
+    if (!balanceIndex.isEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    if (!order.equals("asc") && !order.equals("desc")) {
+      throw new IllegalArgumentException("Order must be asc or desc");
+    }
+    return new ResponseEntity<>(accountsService.findByBalance(minBalance, maxBalance, limit, order.equals("desc")),
+            HttpStatus.OK);
+  }
+}
@@ -1,72 +1,185 @@
 package com.dws.challenge.web;
 
 import com.dws.challenge.domain.Account;
-import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.domain.MultiLegTransferRequest;
+import com.dws.challenge.domain.TransactionPage;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.VersionConflictException;
 import com.dws.challenge.service.AccountsServiceImpl;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  static final String NDJSON_VALUE = "application/x-ndjson";
+
+  private static final long ANY_VERSION = -1;
+
   @Autowired
   private AccountsServiceImpl accountsService;
 
 
+  private final ObjectReader transferReader;
+
+  private final IdempotencyCache idempotencyCache;
+
+  // Versions start over when the accounts are rebuilt on startup, so tags also name the process
+  private final String etagPrefix = Long.toString(System.currentTimeMillis(), 36) + "-";
+
   @Autowired
-  public AccountsController(AccountsServiceImpl accountsService) {
+  public AccountsController(AccountsServiceImpl accountsService, ObjectMapper objectMapper,
+                            IdempotencyCache idempotencyCache) {
     this.accountsService = accountsService;
+    this.transferReader = objectMapper.readerFor(TransferRequest.class);
+    this.idempotencyCache = idempotencyCache;
   }
 
+  // A duplicate id is answered with 409 by ApiExceptionHandler
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
   public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
     log.info("Creating account {}", account);
-  //added log
-    try {
     this.accountsService.createAccount(account);
-      log.info("Account created successfully with id {}", account.getAccountId());
-      //this
-      return new ResponseEntity<>(HttpStatus.CREATED);
-    } catch (DuplicateAccountIdException daie) {
-      log.error("Duplicate account id attempt: {}", account.getAccountId(), daie);
-
-      return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
-    }
-
-    //return new ResponseEntity<>(HttpStatus.CREATED);
+    log.info("Account created successfully with id {}", account.getAccountId());
+    return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  // Served from the account's immutable snapshot, a read never waits for a transfer. The ETag
+  // names the snapshot's version, to send back in If-Match for a conditional transfer
   @GetMapping(path = "/{accountId}")
-  public Account getAccount(@PathVariable String accountId) {
+  public ResponseEntity<AccountSnapshot> getAccount(@PathVariable String accountId,
+                                                    @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                    String ifNoneMatch) {
 
     log.info("Retrieving account for id {}", accountId);
-    //added below
-    Account account = accountsService.getAccount(accountId);
+    AccountSnapshot account = accountsService.getAccountSnapshot(accountId);
 
     if (account == null) {
       log.warn("Account not found for id {}", accountId);
-     // return new ResponseEntity<>(HttpStatus.NOT_FOUND);  // HTTP 404 - Not Found
+      throw new AccountNotFoundException(accountId);
     }
-   // return new ResponseEntity<>(account, HttpStatus.OK);  // HTTP 200 - OK
-    return this.accountsService.getAccount(accountId);
+    String etag = etag(account);
+    if (etag.equals(ifNoneMatch)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+    return ResponseEntity.ok().eTag(etag).body(account);
+  }
+
+  // Statement of an account, newest first; follow nextCursor for older pages
+  @GetMapping(path = "/{accountId}/transactions")
+  public ResponseEntity<TransactionPage> getTransactions(@PathVariable String accountId,
+                                                         @RequestParam(required = false) Long cursor,
+                                                         @RequestParam(defaultValue = "50") int limit) {
+    TransactionPage page = accountsService.getTransactions(accountId, cursor, limit);
+    if (page == null) {
+      throw new AccountNotFoundException(accountId);
+    }
+    return new ResponseEntity<>(page, HttpStatus.OK);
   }
   //new
 // Transfer money between two accounts
+  // A retry carrying the same Idempotency-Key gets the original outcome without transferring again;
+  // with If-Match the transfer only goes ahead while the source account is at that version
   @PostMapping("/transfer")
   public void transferMoney(@RequestParam String fromAccountId,
                             @RequestParam String toAccountId,
-                            @RequestParam BigDecimal amount) {
-    this.accountsService.transfer(fromAccountId, toAccountId, amount);
+                            @RequestParam BigDecimal amount,
+                            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+    if (amount.signum() <= 0) {
+      throw new IllegalArgumentException("Amount must be positive");
+    }
+    // Converted once here, the service then works on primitives only
+    long amountMinorUnits = Account.toMinorUnits(amount);
+    long expectedVersion = ifMatch == null ? ANY_VERSION : expectedVersion(fromAccountId, ifMatch);
+    if (idempotencyKey == null) {
+      transfer(fromAccountId, toAccountId, amountMinorUnits, expectedVersion);
+      return;
+    }
+    String fingerprint = fromAccountId + '\n' + toAccountId + '\n' + amountMinorUnits + '\n' + expectedVersion;
+    this.idempotencyCache.execute(idempotencyKey, fingerprint, () -> {
+      transfer(fromAccountId, toAccountId, amountMinorUnits, expectedVersion);
+      return null;
+    });
   }
-}
 
+  private void transfer(String fromAccountId, String toAccountId, long amountMinorUnits, long expectedVersion) {
+    if (expectedVersion == ANY_VERSION) {
+      this.accountsService.transfer(fromAccountId, toAccountId, amountMinorUnits);
+    } else {
+      this.accountsService.transfer(fromAccountId, toAccountId, amountMinorUnits, expectedVersion);
+    }
+  }
+
+  // Striped credits into a hot account move its balance without a new version until they are
+  // folded, so the tag names both
+  private String etag(AccountSnapshot account) {
+    return '"' + etagPrefix + account.getVersion() + '.' + account.getBalanceMinorUnits() + '"';
+  }
+
+  // The version an If-Match header asks for, or ANY_VERSION for "*". A tag from before a restart
+  // or a weak one can never match. Only the version is compared: credits that reached the source
+  // of a conditional transfer since it was read only add to what it can debit
+  private long expectedVersion(String accountId, String ifMatch) {
+    String tag = ifMatch.trim();
+    if (tag.equals("*")) {
+      return ANY_VERSION;
+    }
+    String prefix = '"' + etagPrefix;
+    if (!tag.startsWith(prefix) || !tag.endsWith("\"")) {
+      throw new VersionConflictException("Account " + accountId + " has changed since " + tag);
+    }
+    int separator = tag.indexOf('.', prefix.length());
+    try {
+      return Long.parseLong(tag.substring(prefix.length(), separator < 0 ? tag.length() - 1 : separator));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed If-Match " + tag);
+    }
+  }
+
+  // One debit funding several credits, such as a payment and its fees, applied all-or-nothing
+  @PostMapping(path = "/transfers:multiLeg", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public void transferMultiLeg(@RequestBody MultiLegTransferRequest request) {
+    this.accountsService.transferMultiLeg(request.getFromAccountId(), request.getLegs());
+  }
+
+  // Settle many transfers in one request, results are reported per item in request order
+  @PostMapping(path = "/transfers:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public List<TransferResult> transferBatch(@RequestBody List<TransferRequest> transfers) {
+    log.info("Settling batch of {} transfers", transfers.size());
+    return this.accountsService.transferBatch(transfers);
+  }
 
+  // Same as above for newline-delimited JSON, read incrementally from the request body
+  @PostMapping(path = "/transfers:batch", consumes = NDJSON_VALUE)
+  public List<TransferResult> transferBatchNdjson(InputStream body) throws IOException {
+    List<TransferRequest> transfers = new ArrayList<>();
+    try (MappingIterator<TransferRequest> iterator = transferReader.readValues(body)) {
+      while (iterator.hasNextValue()) {
+        transfers.add(iterator.nextValue());
+      }
+    }
+    log.info("Settling NDJSON batch of {} transfers", transfers.size());
+    return this.accountsService.transferBatch(transfers);
+  }
+}
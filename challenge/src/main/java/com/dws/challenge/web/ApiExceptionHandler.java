@@ -0,0 +1,125 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ApiError;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.ConvertedAmountOutOfRangeException;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.ExchangeRateUnavailableException;
+import com.dws.challenge.exception.IdempotencyKeyInUseException;
+import com.dws.challenge.exception.IdempotencyKeyMismatchException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.SequenceExpiredException;
+import com.dws.challenge.exception.TransferRateLimitedException;
+import com.dws.challenge.exception.UnsupportedTransferException;
+import com.dws.challenge.exception.VersionConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.validation.BindException;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MissingRequestHeaderException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+/**
+ * Maps rejections to typed responses with an {@link ApiError} body: 400 for malformed or invalid
+ * requests, 404 for unknown accounts, 409 for conflicting state, 412 for conditional requests
+ * made against an account version that has since changed, 422 for transfers the balance or an
+ * earlier idempotent request rules out, 410 for change feed positions no longer held, 429 for
+ * rate limiting, 501 for transfers the configured repository cannot carry out and 503 when no
+ * usable exchange rate prices a transfer between currencies. The exceptions behind the frequent
+ * ones carry no stack trace, so a flood of rejections costs little more than successes. Anything
+ * else is a fault and left to Spring's default 500 handling.
+ */
+@RestControllerAdvice
+@Slf4j
+public class ApiExceptionHandler {
+
+  @ExceptionHandler(AccountNotFoundException.class)
+  public ResponseEntity<ApiError> accountNotFound(AccountNotFoundException e) {
+    return reject(HttpStatus.NOT_FOUND, "ACCOUNT_NOT_FOUND", e.getMessage());
+  }
+
+  @ExceptionHandler(InsufficientBalanceException.class)
+  public ResponseEntity<ApiError> insufficientBalance(InsufficientBalanceException e) {
+    return reject(HttpStatus.UNPROCESSABLE_ENTITY, "INSUFFICIENT_BALANCE", e.getMessage());
+  }
+
+  @ExceptionHandler(DuplicateAccountIdException.class)
+  public ResponseEntity<ApiError> duplicateAccount(DuplicateAccountIdException e) {
+    return reject(HttpStatus.CONFLICT, "DUPLICATE_ACCOUNT", e.getMessage());
+  }
+
+  @ExceptionHandler(IdempotencyKeyInUseException.class)
+  public ResponseEntity<ApiError> idempotencyKeyInUse(IdempotencyKeyInUseException e) {
+    return reject(HttpStatus.CONFLICT, "IDEMPOTENCY_KEY_IN_USE", e.getMessage());
+  }
+
+  @ExceptionHandler(IdempotencyKeyMismatchException.class)
+  public ResponseEntity<ApiError> idempotencyKeyMismatch(IdempotencyKeyMismatchException e) {
+    return reject(HttpStatus.UNPROCESSABLE_ENTITY, "IDEMPOTENCY_KEY_MISMATCH", e.getMessage());
+  }
+
+  @ExceptionHandler(VersionConflictException.class)
+  public ResponseEntity<ApiError> versionConflict(VersionConflictException e) {
+    return reject(HttpStatus.PRECONDITION_FAILED, "VERSION_CONFLICT", e.getMessage());
+  }
+
+  @ExceptionHandler(SequenceExpiredException.class)
+  public ResponseEntity<ApiError> sequenceExpired(SequenceExpiredException e) {
+    return reject(HttpStatus.GONE, "SEQUENCE_EXPIRED", e.getMessage());
+  }
+
+  @ExceptionHandler(TransferRateLimitedException.class)
+  public ResponseEntity<ApiError> rateLimited(TransferRateLimitedException e) {
+    return reject(HttpStatus.TOO_MANY_REQUESTS, "RATE_LIMITED", e.getMessage());
+  }
+
+  @ExceptionHandler(ExchangeRateUnavailableException.class)
+  public ResponseEntity<ApiError> exchangeRateUnavailable(ExchangeRateUnavailableException e) {
+    return reject(HttpStatus.SERVICE_UNAVAILABLE, "EXCHANGE_RATE_UNAVAILABLE", e.getMessage());
+  }
+
+  @ExceptionHandler(UnsupportedTransferException.class)
+  public ResponseEntity<ApiError> unsupportedTransfer(UnsupportedTransferException e) {
+    return reject(HttpStatus.NOT_IMPLEMENTED, "UNSUPPORTED_TRANSFER", e.getMessage());
+  }
+
+  @ExceptionHandler(ConvertedAmountOutOfRangeException.class)
+  public ResponseEntity<ApiError> convertedAmountOutOfRange(ConvertedAmountOutOfRangeException e) {
+    return reject(HttpStatus.BAD_REQUEST, "AMOUNT_OUT_OF_RANGE", e.getMessage());
+  }
+
+  @ExceptionHandler(IllegalArgumentException.class)
+  public ResponseEntity<ApiError> invalidArgument(IllegalArgumentException e) {
+    return reject(HttpStatus.BAD_REQUEST, "INVALID_REQUEST", e.getMessage());
+  }
+
+  // Bean validation of a request body or of bound parameters; MethodArgumentNotValidException is one
+  @ExceptionHandler(BindException.class)
+  public ResponseEntity<ApiError> invalidBody(BindException e) {
+    FieldError field = e.getFieldError();
+    String message = field == null ? "Request is invalid"
+            : field.getField() + ": " + field.getDefaultMessage();
+    return reject(HttpStatus.BAD_REQUEST, "INVALID_REQUEST", message);
+  }
+
+  @ExceptionHandler({MissingServletRequestParameterException.class, MissingRequestHeaderException.class,
+          MethodArgumentTypeMismatchException.class})
+  public ResponseEntity<ApiError> invalidParameter(Exception e) {
+    return reject(HttpStatus.BAD_REQUEST, "INVALID_REQUEST", e.getMessage());
+  }
+
+  @ExceptionHandler(HttpMessageNotReadableException.class)
+  public ResponseEntity<ApiError> unreadableBody(HttpMessageNotReadableException e) {
+    log.debug("Unreadable request body", e);
+    return reject(HttpStatus.BAD_REQUEST, "MALFORMED_REQUEST", "Request body is missing or malformed");
+  }
+
+  private static ResponseEntity<ApiError> reject(HttpStatus status, String error, String message) {
+    return new ResponseEntity<>(new ApiError(error, message), status);
+  }
+}
@@ -0,0 +1,47 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in async execution of the transfer endpoints, see {@link TransferOffloadFilter}. Enabled
+ * with {@code challenge.web.execution-mode=async}; the default {@code servlet} mode runs every
+ * request on the connector thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "challenge.web.execution-mode", havingValue = "async")
+public class AsyncExecutionConfiguration {
+
+  @Bean
+  public FilterRegistrationBean<TransferOffloadFilter> transferOffloadFilter(
+          @Value("${challenge.web.async.threads:64}") int threads,
+          @Value("${challenge.web.async.queue-capacity:1024}") int queueCapacity,
+          @Value("${challenge.web.async.timeout:30s}") Duration timeout) {
+    // Not a bean of its own, an Executor bean would replace Spring's default task executor
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+              Thread thread = new Thread(runnable, "transfer-request-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+    FilterRegistrationBean<TransferOffloadFilter> registration = new FilterRegistrationBean<>(
+            new TransferOffloadFilter(executor, timeout.toMillis()));
+    registration.addUrlPatterns("/v1/accounts/transfer", "/v1/accounts/transfers:batch");
+    registration.setAsyncSupported(true);
+    // Last, so the filters before it still run on the connector thread
+    registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+    return registration;
+  }
+}
@@ -0,0 +1,144 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.service.BalanceChangeFeed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams the {@link BalanceChangeFeed} as Server-Sent Events, one event per change with the
+ * sequence number as its id, so consumers no longer need to poll balances. A stream starts at
+ * the live end, at {@code fromSequence}, or after the {@code Last-Event-ID} an SSE client sends
+ * when it reconnects. Every subscriber has its own thread that waits for changes and writes them
+ * out; a subscriber too slow to keep up is lapped by the feed and gets a final {@code lapped}
+ * event before the stream is closed. Transfers never wait for subscribers.
+ */
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class ChangeFeedController {
+
+  static final int BATCH = 256;
+
+  private static final long KEEP_ALIVE_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+  private final BalanceChangeFeed changeFeed;
+
+  private final long timeoutMillis;
+
+  private final long pollIntervalNanos;
+
+  private final ThreadPoolExecutor subscribers;
+
+  @Autowired
+  public ChangeFeedController(BalanceChangeFeed changeFeed,
+                              @Value("${challenge.change-feed.max-subscribers:64}") int maxSubscribers,
+                              @Value("${challenge.change-feed.timeout:30m}") Duration timeout,
+                              @Value("${challenge.change-feed.poll-interval:10ms}") Duration pollInterval) {
+    this.changeFeed = changeFeed;
+    this.timeoutMillis = timeout.toMillis();
+    this.pollIntervalNanos = pollInterval.toNanos();
+    AtomicInteger threadNumber = new AtomicInteger();
+    // No queue: a subscriber beyond the limit is turned away instead of waiting for a thread
+    this.subscribers = new ThreadPoolExecutor(0, maxSubscribers, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "change-feed-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  @GetMapping(path = "/accounts:changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamChanges(@RequestParam(required = false) Long fromSequence,
+                                                  @RequestHeader(name = "Last-Event-ID", required = false)
+                                                          Long lastEventId) {
+    if (!changeFeed.isEnabled()) {
+      return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+    long start = fromSequence != null ? fromSequence
+            : lastEventId != null ? lastEventId + 1 : changeFeed.getNextSequence();
+    BalanceChangeFeed.Cursor cursor = changeFeed.cursor(start);
+
+    SseEmitter emitter = new SseEmitter(timeoutMillis);
+    AtomicBoolean open = new AtomicBoolean(true);
+    emitter.onCompletion(() -> open.set(false));
+    emitter.onTimeout(() -> open.set(false));
+    emitter.onError(e -> open.set(false));
+    try {
+      subscribers.execute(() -> stream(cursor, emitter, open));
+    } catch (RejectedExecutionException e) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").build();
+    }
+    log.info("Change feed subscriber started at sequence {}", start);
+    return ResponseEntity.ok(emitter);
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.getActiveCount();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    subscribers.shutdownNow();
+  }
+
+  private void stream(BalanceChangeFeed.Cursor cursor, SseEmitter emitter, AtomicBoolean open) {
+    List<BalanceChange> batch = new ArrayList<>(BATCH);
+    long lastSent = System.nanoTime();
+    try {
+      while (open.get() && !Thread.currentThread().isInterrupted()) {
+        batch.clear();
+        if (!cursor.poll(batch, BATCH)) {
+          log.warn("Change feed subscriber lapped at sequence {}, disconnecting", cursor.getNextSequence());
+          emitter.send(SseEmitter.event().name("lapped").data("Changes from sequence " + cursor.getNextSequence()
+                  + " were overwritten, resume from " + changeFeed.getOldestSequence()));
+          emitter.complete();
+          return;
+        }
+        if (batch.isEmpty()) {
+          // Writing something now and then is the only way to notice a client that went away
+          if (System.nanoTime() - lastSent > KEEP_ALIVE_NANOS) {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+            lastSent = System.nanoTime();
+          }
+          LockSupport.parkNanos(pollIntervalNanos);
+          continue;
+        }
+        for (BalanceChange change : batch) {
+          emitter.send(SseEmitter.event().id(Long.toString(change.getSequence())).name(change.getType().name())
+                  .data(change, MediaType.APPLICATION_JSON));
+        }
+        lastSent = System.nanoTime();
+      }
+    } catch (IOException | IllegalStateException e) {
+      // The client disconnected or the stream timed out
+      log.debug("Change feed subscriber closed at sequence {}", cursor.getNextSequence(), e);
+    } catch (RuntimeException e) {
+      log.error("Change feed subscriber failed at sequence {}", cursor.getNextSequence(), e);
+      emitter.completeWithError(e);
+    }
+  }
+}
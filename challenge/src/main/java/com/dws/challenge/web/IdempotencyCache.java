@@ -0,0 +1,197 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.IdempotencyKeyInUseException;
+import com.dws.challenge.exception.IdempotencyKeyMismatchException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.VersionConflictException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Outcomes of requests carrying an {@code Idempotency-Key}, so that a retried request gets the
+ * original result instead of running again. Keys are spread over independently locked segments,
+ * each bounded to its share of {@code maxKeys}; finished entries leave in insertion order once
+ * they expire or their segment is full, which keeps memory flat however many keys arrive. An entry
+ * whose request is still running is never evicted, or a retry would run it a second time.
+ *
+ * <p>Only final outcomes are kept: a result, or a rejection the same request would get again such
+ * as an insufficient balance or a failed validation. A transient failure (rate limited, no
+ * exchange rate, an I/O error), a transfer this deployment does not support or anything
+ * unexpected forgets the key, so the client's retry runs the request again.
+ */
+@Component
+public class IdempotencyCache {
+
+  private static final int SEGMENTS = 64;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  private final long ttlNanos;
+
+  @Autowired
+  public IdempotencyCache(@Value("${challenge.idempotency.max-keys:100000}") int maxKeys,
+                          @Value("${challenge.idempotency.ttl:24h}") Duration ttl) {
+    if (maxKeys < SEGMENTS) {
+      throw new IllegalArgumentException("At least " + SEGMENTS + " keys must be retained");
+    }
+    this.ttlNanos = ttl.toNanos();
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(maxKeys / SEGMENTS);
+    }
+  }
+
+  /**
+   * Runs {@code action} the first time {@code key} is seen and replays its result, or a copy of
+   * its exception if that is final, for every later request with the same key and fingerprint.
+   *
+   * @param fingerprint canonical form of the request parameters the key was issued for
+   * @throws IdempotencyKeyMismatchException if the key was used with a different fingerprint
+   * @throws IdempotencyKeyInUseException    if the first request with the key has not finished
+   */
+  public <T> T execute(String key, String fingerprint, Supplier<T> action) {
+    Segment segment = segments[(key.hashCode() ^ (key.hashCode() >>> 16)) & (SEGMENTS - 1)];
+    long now = System.nanoTime();
+    Entry entry;
+    boolean first = false;
+    synchronized (segment) {
+      segment.expire(now, ttlNanos);
+      entry = segment.entries.get(key);
+      if (entry == null) {
+        entry = new Entry(fingerprint, now);
+        segment.entries.put(key, entry);
+        first = true;
+      }
+    }
+
+    if (!first) {
+      if (!entry.fingerprint.equals(fingerprint)) {
+        throw new IdempotencyKeyMismatchException("Idempotency-Key " + key + " was already used for a different request");
+      }
+      return entry.replay(key);
+    }
+    boolean kept = false;
+    try {
+      T result = action.get();
+      entry.complete(result, null);
+      kept = true;
+      return result;
+    } catch (RuntimeException e) {
+      if (isFinal(e)) {
+        entry.complete(null, e);
+        kept = true;
+      }
+      throw e;
+    } finally {
+      if (!kept) {
+        synchronized (segment) {
+          segment.entries.remove(key, entry);
+        }
+      }
+    }
+  }
+
+  // Rejections of the request itself rather than of the moment it arrived at. What this
+  // deployment cannot do (UnsupportedTransferException) is not among them, nor is any
+  // IllegalStateException; a plain IllegalArgumentException is a request that failed validation
+  private static boolean isFinal(RuntimeException e) {
+    return e instanceof InsufficientBalanceException || e instanceof AccountNotFoundException
+            || e instanceof VersionConflictException || e instanceof IllegalArgumentException;
+  }
+
+  // Each replay throws its own instance, so concurrent replayers never share one exception and
+  // whatever one of them attaches to it as it propagates
+  private static RuntimeException copyOf(RuntimeException failure) {
+    if (failure instanceof InsufficientBalanceException) {
+      return new InsufficientBalanceException(failure.getMessage());
+    }
+    if (failure instanceof AccountNotFoundException) {
+      return new AccountNotFoundException(((AccountNotFoundException) failure).getAccountId());
+    }
+    if (failure instanceof VersionConflictException) {
+      return new VersionConflictException(failure.getMessage());
+    }
+    return new IllegalArgumentException(failure.getMessage());
+  }
+
+  private static final class Segment {
+
+    private final LinkedHashMap<String, Entry> entries;
+
+    private Segment(int capacity) {
+      this.entries = new LinkedHashMap<String, Entry>(capacity * 4 / 3 + 1) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+          if (size() <= capacity) {
+            return false;
+          }
+          // The oldest finished entry; while every one is running the segment briefly holds more
+          Iterator<Entry> iterator = values().iterator();
+          while (iterator.hasNext()) {
+            if (iterator.next().done) {
+              iterator.remove();
+              break;
+            }
+          }
+          return false;
+        }
+      };
+    }
+
+    // Entries share one TTL, so insertion order is also expiry order; running ones are skipped
+    private void expire(long now, long ttlNanos) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (now - entry.createdAtNanos <= ttlNanos) {
+          break;
+        }
+        if (entry.done) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private final String fingerprint;
+
+    private final long createdAtNanos;
+
+    private volatile boolean done;
+
+    private Object result;
+
+    private RuntimeException failure;
+
+    private Entry(String fingerprint, long createdAtNanos) {
+      this.fingerprint = fingerprint;
+      this.createdAtNanos = createdAtNanos;
+    }
+
+    private void complete(Object result, RuntimeException failure) {
+      this.result = result;
+      this.failure = failure;
+      this.done = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T replay(String key) {
+      if (!done) {
+        throw new IdempotencyKeyInUseException("A request with Idempotency-Key " + key + " is still in progress");
+      }
+      if (failure != null) {
+        throw copyOf(failure);
+      }
+      return (T) result;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.dws.challenge.web;
+
+import com.dws.challenge.domain.ScheduleTransferRequest;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.service.TransferScheduler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+
+/**
+ * Transfers that run at a given time instead of right away, see {@link TransferScheduler}. A
+ * scheduled transfer can be read and cancelled until it runs; its outcome then shows up in the
+ * statements of both accounts.
+ */
+@RestController
+@RequestMapping("/v1/accounts")
+@Slf4j
+public class ScheduledTransferController {
+
+  private final TransferScheduler transferScheduler;
+
+  @Autowired
+  public ScheduledTransferController(TransferScheduler transferScheduler) {
+    this.transferScheduler = transferScheduler;
+  }
+
+  @PostMapping(path = "/transfers:schedule", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<ScheduledTransfer> schedule(@RequestBody @Valid ScheduleTransferRequest request) {
+    ScheduledTransfer transfer = transferScheduler.schedule(request.getFromAccountId(), request.getToAccountId(),
+            request.getAmount(), request.getExecuteAt());
+    log.info("Scheduled transfer {} for {}", transfer.getId(), transfer.getExecuteAt());
+    return new ResponseEntity<>(transfer, HttpStatus.CREATED);
+  }
+
+  @GetMapping(path = "/scheduledTransfers/{id}")
+  public ResponseEntity<ScheduledTransfer> getScheduledTransfer(@PathVariable long id) {
+    ScheduledTransfer transfer = transferScheduler.getScheduledTransfer(id);
+    return transfer == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : new ResponseEntity<>(transfer, HttpStatus.OK);
+  }
+
+  @DeleteMapping(path = "/scheduledTransfers/{id}")
+  public ResponseEntity<Void> cancel(@PathVariable long id) {
+    return new ResponseEntity<>(transferScheduler.cancel(id) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+  }
+}
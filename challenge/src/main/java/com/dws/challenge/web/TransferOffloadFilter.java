@@ -0,0 +1,131 @@
+package com.dws.challenge.web;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the rest of the filter chain for matching requests on a dedicated executor in servlet
+ * async mode. The connector thread returns to its pool as soon as the request is handed off, so
+ * requests blocked on transfer locks or journal syncs pin executor threads instead of the
+ * threads that serve everything else, such as balance reads. When the executor is saturated the
+ * request is shed with 503 instead of queueing at the connector, as is a request still running
+ * when the async timeout fires.
+ */
+@Slf4j
+public class TransferOffloadFilter extends OncePerRequestFilter {
+
+  private final ExecutorService executor;
+
+  private final long timeoutMillis;
+
+  public TransferOffloadFilter(ExecutorService executor, long timeoutMillis) {
+    this.executor = executor;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !"POST".equals(request.getMethod());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) {
+    AsyncContext async = request.startAsync(request, response);
+    async.setTimeout(timeoutMillis);
+    // Whichever of the worker and the timeout gets here first writes the outcome and completes
+    AtomicBoolean finished = new AtomicBoolean();
+    async.addListener(new TimeoutListener(response, finished));
+    try {
+      executor.execute(() -> {
+        if (finished.get()) {
+          // Timed out while queued, the client already has its 503
+          return;
+        }
+        try {
+          chain.doFilter(request, response);
+        } catch (Exception e) {
+          if (finished.get()) {
+            log.debug("Offloaded request {} failed after timing out", request.getRequestURI(), e);
+          } else {
+            log.error("Offloaded request {} failed", request.getRequestURI(), e);
+            sendError(response, HttpStatus.INTERNAL_SERVER_ERROR);
+          }
+        } finally {
+          if (finished.compareAndSet(false, true)) {
+            async.complete();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      finished.set(true);
+      response.setHeader("Retry-After", "1");
+      sendError(response, HttpStatus.SERVICE_UNAVAILABLE);
+      async.complete();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    executor.shutdown();
+  }
+
+  /**
+   * Answers 503 for a request still running on the executor when the async timeout fires, so the
+   * container does not complete it with an empty response while the worker keeps writing.
+   */
+  private static final class TimeoutListener implements AsyncListener {
+
+    private final HttpServletResponse response;
+
+    private final AtomicBoolean finished;
+
+    private TimeoutListener(HttpServletResponse response, AtomicBoolean finished) {
+      this.response = response;
+      this.finished = finished;
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      if (finished.compareAndSet(false, true)) {
+        response.setHeader("Retry-After", "1");
+        sendError(response, HttpStatus.SERVICE_UNAVAILABLE);
+        event.getAsyncContext().complete();
+      }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+  }
+
+  private static void sendError(HttpServletResponse response, HttpStatus status) {
+    if (response.isCommitted()) {
+      return;
+    }
+    try {
+      response.sendError(status.value());
+    } catch (IOException e) {
+      log.debug("Could not send {} to the client", status, e);
+    }
+  }
+}
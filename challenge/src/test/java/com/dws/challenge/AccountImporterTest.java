@@ -0,0 +1,131 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ImportResult;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountImporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AccountImporterTest {
+
+  private final AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+
+  private final AccountImporter importer = new AccountImporter(repository, new ObjectMapper(), 4);
+
+  @AfterEach
+  void tearDown() {
+    importer.shutdown();
+  }
+
+  @Test
+  void importsCsvAndReportsBadRowsByLine() throws IOException {
+    repository.createAccount(new Account("Id-existing", BigDecimal.ONE));
+
+    ImportResult result = importer.importStream(stream("accountId,balance\n"
+            + "Id-1,100.50\n"
+            + "\n"
+            + "Id-2,-1\n"
+            + "Id-existing,5\n"
+            + "Id-3,1.001\n"
+            + ",7\n"
+            + "Id-1,3\n"
+            + "Id-4,abc\n"), AccountImporter.Format.CSV);
+
+    assertThat(result.getImported()).isEqualTo(1);
+    assertThat(result.getRejected()).isEqualTo(6);
+    assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(4L, 5L, 6L, 7L, 8L, 9L);
+    assertThat(result.getErrors().get(1).getMessage()).isEqualTo("Account id Id-existing already exists!");
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100.50");
+    assertThat(repository.getAccount("Id-existing").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  void importsNdjsonAndSkipsMalformedLines() throws IOException {
+    ImportResult result = importer.importStream(stream("{\"accountId\":\"Id-1\",\"balance\":10}\n"
+            + "{\"accountId\":\"Id-2\",\n"
+            + "{\"accountId\":\"Id-3\"}\n"
+            + "{\"accountId\":\"Id-4\",\"balance\":\"2.50\"}\n"), AccountImporter.Format.NDJSON);
+
+    assertThat(result.getImported()).isEqualTo(2);
+    assertThat(result.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(2L, 3L);
+    assertThat(repository.getAccount("Id-4").getBalance()).isEqualByComparingTo("2.50");
+  }
+
+  @Test
+  void importsOptionalCurrency() throws IOException {
+    ImportResult csv = importer.importStream(stream("accountId,balance,currency\n"
+            + "Id-1,10,USD\n"
+            + "Id-2,10\n"
+            + "Id-3,10,usd\n"
+            + "Id-4,10,USD,extra\n"), AccountImporter.Format.CSV);
+    ImportResult ndjson = importer.importStream(stream("{\"accountId\":\"Id-5\",\"balance\":1,\"currency\":\"GBP\"}\n"),
+            AccountImporter.Format.NDJSON);
+
+    assertThat(csv.getImported()).isEqualTo(2);
+    assertThat(csv.getErrors()).extracting(ImportResult.RowError::getLine).containsExactly(4L, 5L);
+    assertThat(ndjson.getImported()).isEqualTo(1);
+    assertThat(repository.getAccount("Id-1").getCurrency()).isEqualTo("USD");
+    assertThat(repository.getAccount("Id-2").getCurrency()).isEqualTo(Account.DEFAULT_CURRENCY);
+    assertThat(repository.getAccount("Id-5").getCurrency()).isEqualTo("GBP");
+  }
+
+  @Test
+  void streamsLargeInputAcrossChunks() throws IOException {
+    int rows = 200_000;
+    // Generated on the fly, the importer never sees the whole payload at once
+    Enumeration<InputStream> lines = new Enumeration<InputStream>() {
+      private int next;
+
+      @Override
+      public boolean hasMoreElements() {
+        return next < rows;
+      }
+
+      @Override
+      public InputStream nextElement() {
+        int row = next++;
+        // Every 1000th row repeats an earlier id
+        String id = row % 1000 == 999 ? "Id-" + (row - 1) : "Id-" + row;
+        return stream(id + "," + row + "\n");
+      }
+    };
+
+    ImportResult result = importer.importStream(new SequenceInputStream(lines), AccountImporter.Format.CSV);
+
+    assertThat(result.getImported()).isEqualTo(rows - rows / 1000);
+    assertThat(result.getRejected()).isEqualTo(rows / 1000);
+    assertThat(repository.getAccount("Id-199998").getBalance()).isEqualByComparingTo("199998");
+  }
+
+  @Test
+  void resolvesFilesOnlyInsideTheImportDirectory(@TempDir Path directory) throws IOException {
+    Files.write(directory.resolve("partner.csv"), "Id-1,1\n".getBytes(StandardCharsets.UTF_8));
+
+    assertThat(AccountImporter.resolveWithin(directory, "partner.csv")).isEqualTo(
+            directory.resolve("partner.csv").toAbsolutePath().normalize());
+    assertThat(AccountImporter.resolveWithin(directory, "../partner.csv")).isNull();
+    assertThat(AccountImporter.resolveWithin(directory, Paths.get("/etc/passwd").toString())).isNull();
+    assertThat(importer.importFile(directory.resolve("partner.csv"), AccountImporter.Format.CSV).getImported())
+            .isEqualTo(1);
+  }
+
+  private static InputStream stream(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,60 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import org.junit.jupiter.api.Test;
+
+class AccountSnapshotTest {
+
+  @Test
+  void snapshotIsUnaffectedByLaterChanges() {
+    Account account = new Account("Id-1", new BigDecimal("10.00"));
+    AccountSnapshot before = account.snapshot();
+
+    assertThat(account.tryDebit(400)).isTrue();
+    account.credit(50);
+    assertThat(account.tryDebit(10_000)).isFalse();
+
+    assertThat(before.getBalance()).isEqualByComparingTo("10.00");
+    assertThat(before.getVersion()).isZero();
+    assertThat(account.snapshot().getBalance()).isEqualByComparingTo("6.50");
+    assertThat(account.snapshot().getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  void concurrentReadersSeeBalanceAndVersionOfTheSameChange() throws Exception {
+    Account account = new Account("Id-1", BigDecimal.ZERO);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    Future<?> writer = executor.submit(() -> {
+      for (int i = 0; i < 200_000; i++) {
+        account.credit(1);
+      }
+    });
+    // Each credit adds one minor unit and one version, so the two must always match
+    Runnable reader = () -> {
+      long lastVersion = -1;
+      while (!writer.isDone()) {
+        AccountSnapshot snapshot = account.snapshot();
+        assertThat(snapshot.getBalanceMinorUnits()).isEqualTo(snapshot.getVersion());
+        assertThat(snapshot.getVersion()).isGreaterThanOrEqualTo(lastVersion);
+        lastVersion = snapshot.getVersion();
+      }
+    };
+    Future<?> first = executor.submit(reader);
+    Future<?> second = executor.submit(reader);
+    writer.get(1, TimeUnit.MINUTES);
+    first.get(1, TimeUnit.MINUTES);
+    second.get(1, TimeUnit.MINUTES);
+    executor.shutdown();
+
+    assertThat(account.snapshot().getVersion()).isEqualTo(200_000);
+  }
+}
@@ -0,0 +1,127 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import com.dws.challenge.repository.PartitionedAccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Heap footprint and GC pauses of the in-memory map against the off-heap table at the same
+ * account count. Opt-in, as it needs a large heap and as much direct memory:
+ * {@code mvn test -Dtest=AccountStoreFootprintBenchmarkTest -Dbenchmarks=true
+ * -DargLine="-Xmx8g -XX:MaxDirectMemorySize=8g"} and {@code -Dbenchmark.accounts=10000000,50000000}
+ * to pick the sizes, {@code -Dbenchmark.stores=offheap} to skip the map where it cannot fit.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class AccountStoreFootprintBenchmarkTest {
+
+  private static final int CHUNK = 65_536;
+
+  private static final int TRANSFERS = 5_000_000;
+
+  @Test
+  void heapFootprintAndGcPauses() {
+    for (String size : System.getProperty("benchmark.accounts", "1000000,10000000").split(",")) {
+      int accounts = Integer.parseInt(size.trim());
+      for (String store : System.getProperty("benchmark.stores", "memory,offheap").split(",")) {
+        measure(store.trim(), accounts);
+      }
+    }
+  }
+
+  private static void measure(String store, int accounts) {
+    long heapBefore = heapUsedAfterGc();
+    long directBefore = directUsed();
+    AccountsRepository repository = "offheap".equals(store)
+            ? new OffHeapAccountsRepository(accounts, 24) : new AccountsRepositoryInMemory(accounts);
+    long started = System.nanoTime();
+    List<Account> chunk = new ArrayList<>(CHUNK);
+    for (int i = 0; i < accounts; i++) {
+      chunk.add(new Account("Id-" + i, new BigDecimal(1000)));
+      if (chunk.size() == CHUNK || i == accounts - 1) {
+        assertThat(repository.createAccounts(chunk)).isEmpty();
+        chunk.clear();
+      }
+    }
+    long loadMillis = (System.nanoTime() - started) / 1_000_000;
+    long heapBytes = heapUsedAfterGc() - heapBefore;
+    long directBytes = directUsed() - directBefore;
+
+    // Transfers create short-lived garbage, so young collections run with the accounts live
+    long gcCountBefore = gcCount();
+    long gcMillisBefore = gcMillis();
+    started = System.nanoTime();
+    SplittableRandom random = new SplittableRandom(42);
+    for (int i = 0; i < TRANSFERS; i++) {
+      String from = "Id-" + random.nextInt(accounts);
+      String to = "Id-" + random.nextInt(accounts);
+      if (repository instanceof PartitionedAccountsRepository) {
+        ((PartitionedAccountsRepository) repository).transfer(from, to, 1);
+      } else {
+        Account accountFrom = repository.getAccount(from);
+        if (accountFrom.tryDebit(1)) {
+          repository.getAccount(to).credit(1);
+        }
+      }
+    }
+    long transferMillis = (System.nanoTime() - started) / 1_000_000;
+    long gcCount = gcCount() - gcCountBefore;
+    long gcMillis = gcMillis() - gcMillisBefore;
+
+    started = System.nanoTime();
+    System.gc();
+    long fullGcMillis = (System.nanoTime() - started) / 1_000_000;
+    assertThat(repository.getAccount("Id-" + (accounts - 1))).isNotNull();
+
+    log.info("store={} accounts={} heapMb={} directMb={} loadMs={} transfers={} transferMs={} gcCount={} gcMs={} "
+            + "fullGcMs={}", store, accounts, heapBytes >> 20, directBytes >> 20, loadMillis, TRANSFERS,
+            transferMillis, gcCount, gcMillis, fullGcMillis);
+    repository.clearAccounts();
+  }
+
+  private static long heapUsedAfterGc() {
+    System.gc();
+    System.gc();
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long directUsed() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(pool.getName())) {
+        return pool.getMemoryUsed();
+      }
+    }
+    return 0;
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += gc.getCollectionCount();
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += gc.getCollectionTime();
+    }
+    return millis;
+  }
+}
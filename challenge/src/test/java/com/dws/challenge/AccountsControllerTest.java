@@ -1,13 +1,12 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -17,6 +16,8 @@ import com.dws.challenge.domain.Account;
 import com.dws.challenge.repository.AccountsRepository;
 import com.dws.challenge.service.AccountService;
 import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.BalanceChangeFeed;
+import com.jayway.jsonpath.JsonPath;
 import lombok.Getter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,6 +28,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @ExtendWith(SpringExtension.class)
@@ -42,6 +44,9 @@ class AccountsControllerTest {
   @Autowired
   private AccountsRepository accountsRepository;
 
+  @Autowired
+  private BalanceChangeFeed changeFeed;
+
   @Autowired
   private WebApplicationContext webApplicationContext;
 
@@ -69,7 +74,8 @@ class AccountsControllerTest {
             .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
 
     this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
-            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isBadRequest());
+            .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isConflict())
+            .andExpect(jsonPath("$.error").value("DUPLICATE_ACCOUNT"));
   }
 
   @Test
@@ -110,7 +116,28 @@ class AccountsControllerTest {
     this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
             .andExpect(status().isOk())
             .andExpect(
-                    content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+                    content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
+  }
+
+  @Test
+  void createAccountInCurrencyAndTransferAcrossCurrencies() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-usd\",\"balance\":0,\"currency\":\"USD\"}"))
+            .andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-bad\",\"balance\":0,\"currency\":\"usd\"}"))
+            .andExpect(status().isBadRequest());
+    this.accountsService.createAccount(new Account("Id-eur", new BigDecimal("100")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers:multiLeg").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"fromAccountId\":\"Id-eur\",\"legs\":[{\"toAccountId\":\"Id-usd\",\"amount\":10}]}"))
+            .andExpect(status().isOk());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-usd"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.currency").value("USD"))
+            .andExpect(jsonPath("$.balance").value(10.85));
+    assertThat(accountsService.getAccount("Id-eur").getBalance()).isEqualByComparingTo("90");
   }
 
   //Adding NEW code
@@ -140,23 +167,25 @@ class AccountsControllerTest {
   }
 
 
-  private String accountFromId = "account1";
-  private String accountToId = "account2";
+  private final String accountFromId = "account1";
+  private final String accountToId = "account2";
 
-  @BeforeEach
-  void setUp() {
-    // Set up accounts for testing
-    Account accountFrom = new Account(accountFromId, BigDecimal.valueOf(1000));
-    Account accountTo = new Account(accountToId, BigDecimal.valueOf(500));
+  private void createTransferAccounts() {
+    // Set up accounts for testing, after prepareMockMvc has cleared the repository
+    accountsService.createAccount(new Account(accountFromId, BigDecimal.valueOf(1000)));
+    accountsService.createAccount(new Account(accountToId, BigDecimal.valueOf(500)));
+  }
 
-    // Save mock accounts using accounts service (if needed for integration test)
-    accountsService.createAccount(accountFrom);
-    accountsService.createAccount(accountTo);
+  private void assertBalancesUnchanged() {
+    assertThat(accountsService.getAccount(accountFromId).getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountsService.getAccount(accountToId).getBalance()).isEqualByComparingTo("500");
   }
 
 
   @Test
   void transferMoney_Success() throws Exception {
+    createTransferAccounts();
+
     // Arrange: Mock the money transfer service
     BigDecimal transferAmount = BigDecimal.valueOf(200);
 
@@ -168,10 +197,7 @@ class AccountsControllerTest {
                     .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk());
 
-    // Verify: Check if the service method was called
-    verify(accountsService).transfer(accountFromId, accountToId, transferAmount);
-
-    // Optionally, verify account balances after the transfer
+    // Verify: Check the account balances after the transfer
     Account fromAccount = accountsService.getAccount(accountFromId);
     Account toAccount = accountsService.getAccount(accountToId);
 
@@ -181,6 +207,8 @@ class AccountsControllerTest {
 
   @Test
   void transferMoney_InsufficientFunds() throws Exception {
+    createTransferAccounts();
+
     // Arrange: Try transferring more than available balance
     BigDecimal transferAmount = BigDecimal.valueOf(1500); // exceeds balance
 
@@ -190,14 +218,16 @@ class AccountsControllerTest {
                     .param("toAccountId", accountToId)
                     .param("amount", transferAmount.toString())
                     .contentType(MediaType.APPLICATION_JSON))
-            .andExpect(status().isBadRequest());  // Expecting a failure due to insufficient funds
+            .andExpect(status().isUnprocessableEntity());  // Expecting a failure due to insufficient funds
 
-    // Verify: Ensure that transfer was not attempted
-    verify(accountsService, never()).transfer(anyString(), anyString(), any(BigDecimal.class));
+    // Verify: Ensure that no money moved
+    assertBalancesUnchanged();
   }
 
   @Test
   void transferMoney_InvalidAmount() throws Exception {
+    createTransferAccounts();
+
     // Arrange: Invalid negative amount for transfer
     BigDecimal transferAmount = BigDecimal.valueOf(-100);
 
@@ -209,12 +239,14 @@ class AccountsControllerTest {
                     .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isBadRequest());  // Expecting a failure due to invalid amount
 
-    // Verify: Ensure that transfer was not attempted
-    verify(accountsService, never()).transfer(anyString(), anyString(), any(BigDecimal.class));
+    // Verify: Ensure that no money moved
+    assertBalancesUnchanged();
   }
 
   @Test
   void transferMoney_AccountNotFound() throws Exception {
+    createTransferAccounts();
+
     // Arrange: Non-existing account ID
     String nonExistentAccountId = "nonexistent-account";
     BigDecimal transferAmount = BigDecimal.valueOf(100);
@@ -227,12 +259,14 @@ class AccountsControllerTest {
                     .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());  // Expecting 404 due to non-existing account
 
-    // Verify: Ensure that transfer was not attempted
-    verify(accountsService, never()).transfer(anyString(), anyString(), any(BigDecimal.class));
+    // Verify: Ensure that no money moved
+    assertBalancesUnchanged();
   }
 
   @Test
   void transferMoney_SameAccount() throws Exception {
+    createTransferAccounts();
+
     // Arrange: Same account for both 'from' and 'to'
     BigDecimal transferAmount = BigDecimal.valueOf(100);
 
@@ -244,8 +278,341 @@ class AccountsControllerTest {
                     .contentType(MediaType.APPLICATION_JSON))
             .andExpect(status().isBadRequest());  // Expecting failure as transfer to same account is not valid
 
-    // Verify: Ensure that transfer was not attempted
-    verify(accountsService, never()).transfer(anyString(), anyString(), any(BigDecimal.class));
+    // Verify: Ensure that no money moved
+    assertBalancesUnchanged();
   }
-}
 
+  @Test
+  void transferBatch_reportsPerItemResultsAndNetsBalances() throws Exception {
+    this.accountsService.createAccount(new Account("Id-batch-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-batch-2", new BigDecimal("50")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers:batch").contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"fromAccountId\":\"Id-batch-1\",\"toAccountId\":\"Id-batch-2\",\"amount\":80},"
+                    + "{\"fromAccountId\":\"Id-batch-2\",\"toAccountId\":\"Id-batch-1\",\"amount\":120.5},"
+                    + "{\"fromAccountId\":\"Id-batch-1\",\"toAccountId\":\"Id-batch-2\",\"amount\":500},"
+                    + "{\"fromAccountId\":\"Id-batch-1\",\"toAccountId\":\"Id-missing\",\"amount\":1}]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("SUCCEEDED"))
+            .andExpect(jsonPath("$[1].status").value("SUCCEEDED"))
+            .andExpect(jsonPath("$[2].status").value("REJECTED"))
+            .andExpect(jsonPath("$[2].message").value("Insufficient balance"))
+            .andExpect(jsonPath("$[3].message").value("Account not found: Id-missing"));
+
+    assertThat(accountsService.getAccount("Id-batch-1").getBalance()).isEqualByComparingTo("140.5");
+    assertThat(accountsService.getAccount("Id-batch-2").getBalance()).isEqualByComparingTo("9.5");
+  }
+
+  @Test
+  void transferMultiLeg_appliesEveryLeg() throws Exception {
+    this.accountsService.createAccount(new Account("Id-multi-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-multi-2", new BigDecimal("0")));
+    this.accountsService.createAccount(new Account("Id-multi-3", new BigDecimal("0")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers:multiLeg").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"fromAccountId\":\"Id-multi-1\",\"legs\":["
+                    + "{\"toAccountId\":\"Id-multi-2\",\"amount\":95},"
+                    + "{\"toAccountId\":\"Id-multi-3\",\"amount\":2.5}]}"))
+            .andExpect(status().isOk());
+
+    assertThat(accountsService.getAccount("Id-multi-1").getBalance()).isEqualByComparingTo("2.5");
+    assertThat(accountsService.getAccount("Id-multi-2").getBalance()).isEqualByComparingTo("95");
+    assertThat(accountsService.getAccount("Id-multi-3").getBalance()).isEqualByComparingTo("2.5");
+  }
+
+  @Test
+  void transferBatch_acceptsNdjson() throws Exception {
+    this.accountsService.createAccount(new Account("Id-ndjson-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-ndjson-2", new BigDecimal("0")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers:batch").contentType("application/x-ndjson")
+            .content("{\"fromAccountId\":\"Id-ndjson-1\",\"toAccountId\":\"Id-ndjson-2\",\"amount\":10}\n"
+                    + "{\"fromAccountId\":\"Id-ndjson-1\",\"toAccountId\":\"Id-ndjson-2\",\"amount\":-1}\n"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("SUCCEEDED"))
+            .andExpect(jsonPath("$[1].message").value("Amount must be positive"));
+
+    assertThat(accountsService.getAccount("Id-ndjson-2").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void rejectedTransfersAreCountedInMetrics() throws Exception {
+    this.accountsService.createAccount(new Account("Id-metrics-1", new BigDecimal("1")));
+    this.accountsService.createAccount(new Account("Id-metrics-2", new BigDecimal("0")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfers:batch").contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"fromAccountId\":\"Id-metrics-1\",\"toAccountId\":\"Id-metrics-2\",\"amount\":5}]"))
+            .andExpect(status().isOk());
+
+    this.mockMvc.perform(get("/actuator/metrics/challenge.transfer.rejected").param("tag", "reason:insufficient_balance"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.measurements[0].value").value(org.hamcrest.Matchers.greaterThanOrEqualTo(1.0)));
+  }
+
+  @Test
+  void transferMoney_retryWithIdempotencyKeyTransfersOnce() throws Exception {
+    this.accountsService.createAccount(new Account("Id-idem-1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("Id-idem-2", new BigDecimal("500")));
+
+    for (int i = 0; i < 2; i++) {
+      mockMvc.perform(post("/v1/accounts/transfer")
+                      .header("Idempotency-Key", "retry-once")
+                      .param("fromAccountId", "Id-idem-1")
+                      .param("toAccountId", "Id-idem-2")
+                      .param("amount", "100"))
+              .andExpect(status().isOk());
+    }
+
+    assertThat(accountsService.getAccount("Id-idem-1").getBalance()).isEqualByComparingTo("900");
+    assertThat(accountsService.getAccount("Id-idem-2").getBalance()).isEqualByComparingTo("600");
+  }
+
+  @Test
+  void getAccount_notModifiedUntilTheVersionInIfNoneMatchMovesOn() throws Exception {
+    this.accountsService.createAccount(new Account("Id-etag", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-etag-2", new BigDecimal("100")));
+    String etag = this.mockMvc.perform(get("/v1/accounts/Id-etag"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+    assertThat(etag).isNotNull();
+    this.mockMvc.perform(get("/v1/accounts/Id-etag").header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+
+    this.accountsService.transfer("Id-etag", "Id-etag-2", new BigDecimal("1"));
+
+    String moved = this.mockMvc.perform(get("/v1/accounts/Id-etag").header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.balance").value(99))
+            .andReturn().getResponse().getHeader("ETag");
+    assertThat(moved).isNotEqualTo(etag);
+    mockMvc.perform(post("/v1/accounts/transfer")
+                    .header("If-Match", "\"other-0\"")
+                    .param("fromAccountId", "Id-etag")
+                    .param("toAccountId", "Id-etag-2")
+                    .param("amount", "1"))
+            .andExpect(status().isPreconditionFailed())
+            .andExpect(jsonPath("$.error").value("VERSION_CONFLICT"));
+  }
+
+  @Test
+  void getAccount_etagChangesWithStripedCredits() throws Exception {
+    this.accountsService.createAccount(new Account("Id-hot", new BigDecimal("100")));
+    Account account = accountsRepository.getAccount("Id-hot");
+    account.stripeCredits(4);
+    String etag = this.mockMvc.perform(get("/v1/accounts/Id-hot"))
+            .andReturn().getResponse().getHeader("ETag");
+
+    account.creditStriped(100);
+
+    String credited = this.mockMvc.perform(get("/v1/accounts/Id-hot").header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.balance").value(101))
+            .andReturn().getResponse().getHeader("ETag");
+    assertThat(credited).isNotEqualTo(etag);
+    this.mockMvc.perform(get("/v1/accounts/Id-hot").header("If-None-Match", credited))
+            .andExpect(status().isNotModified());
+  }
+
+  @Test
+  void transferMoney_withIfMatchFailsOnceTheSourceChanged() throws Exception {
+    this.accountsService.createAccount(new Account("Id-cond-1", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("Id-cond-2", new BigDecimal("500")));
+    String etag = this.mockMvc.perform(get("/v1/accounts/Id-cond-1"))
+            .andReturn().getResponse().getHeader("ETag");
+
+    for (int i = 0; i < 2; i++) {
+      mockMvc.perform(post("/v1/accounts/transfer")
+                      .header("If-Match", etag)
+                      .param("fromAccountId", "Id-cond-1")
+                      .param("toAccountId", "Id-cond-2")
+                      .param("amount", "100"))
+              .andExpect(i == 0 ? status().isOk() : status().isPreconditionFailed());
+    }
+
+    assertThat(accountsService.getAccount("Id-cond-1").getBalance()).isEqualByComparingTo("900");
+    assertThat(accountsService.getAccount("Id-cond-2").getBalance()).isEqualByComparingTo("600");
+  }
+
+  @Test
+  void transferMoney_idempotencyKeyReusedForDifferentRequest() throws Exception {
+    this.accountsService.createAccount(new Account("Id-idem-3", new BigDecimal("1000")));
+    this.accountsService.createAccount(new Account("Id-idem-4", new BigDecimal("500")));
+
+    mockMvc.perform(post("/v1/accounts/transfer")
+                    .header("Idempotency-Key", "reused")
+                    .param("fromAccountId", "Id-idem-3")
+                    .param("toAccountId", "Id-idem-4")
+                    .param("amount", "100"))
+            .andExpect(status().isOk());
+
+    mockMvc.perform(post("/v1/accounts/transfer")
+                    .header("Idempotency-Key", "reused")
+                    .param("fromAccountId", "Id-idem-3")
+                    .param("toAccountId", "Id-idem-4")
+                    .param("amount", "200"))
+            .andExpect(status().isUnprocessableEntity());
+
+    assertThat(accountsService.getAccount("Id-idem-3").getBalance()).isEqualByComparingTo("900");
+  }
+
+  @Test
+  void getTransactions_pagesThroughStatementNewestFirst() throws Exception {
+    this.accountsService.createAccount(new Account("Id-ledger-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-ledger-2", new BigDecimal("0")));
+    this.accountsService.transfer("Id-ledger-1", "Id-ledger-2", new BigDecimal("10"));
+    this.accountsService.transfer("Id-ledger-2", "Id-ledger-1", new BigDecimal("4"));
+    this.accountsService.transfer("Id-ledger-1", "Id-ledger-2", new BigDecimal("1.50"));
+
+    String first = this.mockMvc.perform(get("/v1/accounts/Id-ledger-1/transactions").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.transactions.length()").value(2))
+            .andExpect(jsonPath("$.transactions[0].amount").value(-1.5))
+            .andExpect(jsonPath("$.transactions[1].amount").value(4))
+            .andExpect(jsonPath("$.transactions[1].counterpartyAccountId").value("Id-ledger-2"))
+            .andReturn().getResponse().getContentAsString();
+    Number cursor = JsonPath.read(first, "$.nextCursor");
+
+    this.mockMvc.perform(get("/v1/accounts/Id-ledger-1/transactions").param("cursor", cursor.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.transactions.length()").value(1))
+            .andExpect(jsonPath("$.transactions[0].amount").value(-10))
+            .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  void getTransactions_unknownAccount() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts/Id-ledger-missing/transactions"))
+            .andExpect(status().isNotFound());
+  }
+
+  @Test
+  void rejectedTransfersAnswerWithTypedErrors() throws Exception {
+    this.accountsService.createAccount(new Account("Id-error-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-error-2", new BigDecimal("0")));
+
+    this.mockMvc.perform(post("/v1/accounts/transfer").param("fromAccountId", "Id-error-1")
+                    .param("toAccountId", "Id-error-missing").param("amount", "1"))
+            .andExpect(status().isNotFound())
+            .andExpect(jsonPath("$.error").value("ACCOUNT_NOT_FOUND"))
+            .andExpect(jsonPath("$.message").value("Account not found: Id-error-missing"));
+    this.mockMvc.perform(post("/v1/accounts/transfer").param("fromAccountId", "Id-error-1")
+                    .param("toAccountId", "Id-error-2").param("amount", "10.01"))
+            .andExpect(status().isUnprocessableEntity())
+            .andExpect(jsonPath("$.error").value("INSUFFICIENT_BALANCE"));
+    this.mockMvc.perform(post("/v1/accounts/transfer").param("fromAccountId", "Id-error-1")
+                    .param("toAccountId", "Id-error-1").param("amount", "1"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Source and target accounts must differ"));
+    this.mockMvc.perform(post("/v1/accounts/transfer").param("fromAccountId", "Id-error-1")
+                    .param("toAccountId", "Id-error-2").param("amount", "ten"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.error").value("INVALID_REQUEST"));
+    this.mockMvc.perform(get("/v1/accounts/Id-error-missing"))
+            .andExpect(status().isNotFound())
+            .andExpect(jsonPath("$.error").value("ACCOUNT_NOT_FOUND"));
+
+    assertThat(accountsService.getAccount("Id-error-1").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void importAccounts_streamsCsvBody() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts:import").contentType("text/csv")
+            .content("accountId,balance\nId-import-1,10\nId-import-2,-5\n"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(1))
+            .andExpect(jsonPath("$.rejected").value(1))
+            .andExpect(jsonPath("$.errors[0].line").value(3));
+
+    assertThat(accountsService.getAccount("Id-import-1").getBalance()).isEqualByComparingTo("10");
+  }
+
+  @Test
+  void importAccounts_fileImportDisabledWithoutDirectory() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts:import").param("file", "accounts.csv"))
+            .andExpect(status().isForbidden());
+  }
+
+  @Test
+  void changeFeedStreamsTransfersAsServerSentEvents() throws Exception {
+    long from = this.changeFeed.getNextSequence();
+    this.accountsService.createAccount(new Account("Id-feed-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-feed-2", new BigDecimal("0")));
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts:changes").param("fromSequence", Long.toString(from)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    this.mockMvc.perform(post("/v1/accounts/transfer").param("fromAccountId", "Id-feed-1")
+            .param("toAccountId", "Id-feed-2").param("amount", "2.5"))
+            .andExpect(status().isOk());
+
+    String expected = "id:" + (from + 3) + "\nevent:BALANCE_CHANGED\ndata:{\"sequence\":" + (from + 3)
+            + ",\"type\":\"BALANCE_CHANGED\",\"accountId\":\"Id-feed-2\",\"balance\":2.50,\"change\":2.50";
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (!result.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    String events = result.getResponse().getContentAsString();
+    assertThat(events).contains("id:" + from + "\nevent:ACCOUNT_CREATED\n");
+    assertThat(events).contains(expected);
+  }
+
+  @Test
+  void changeFeedRefusesSequenceItNoLongerHolds() throws Exception {
+    this.mockMvc.perform(get("/v1/accounts:changes")
+                    .param("fromSequence", Long.toString(this.changeFeed.getNextSequence() + 1)))
+            .andExpect(status().isGone())
+            .andExpect(jsonPath("$.error").value("SEQUENCE_EXPIRED"));
+  }
+
+  @Test
+  void batchGetAndSearchByBalance() throws Exception {
+    this.accountsService.createAccount(new Account("Id-query-1", new BigDecimal("5")));
+    this.accountsService.createAccount(new Account("Id-query-2", new BigDecimal("50")));
+    this.accountsService.createAccount(new Account("Id-query-3", new BigDecimal("500")));
+
+    this.mockMvc.perform(post("/v1/accounts:batchGet").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"accountIds\":[\"Id-query-3\",\"Id-query-missing\",\"Id-query-1\"]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.accounts[0].accountId").value("Id-query-3"))
+            .andExpect(jsonPath("$.accounts[1].balance").value(5))
+            .andExpect(jsonPath("$.missing[0]").value("Id-query-missing"));
+
+    this.mockMvc.perform(get("/v1/accounts:search").param("maxBalance", "50"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].accountId").value("Id-query-1"));
+    this.mockMvc.perform(get("/v1/accounts:search").param("order", "desc").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].accountId").value("Id-query-3"));
+    this.mockMvc.perform(get("/v1/accounts:search").param("order", "sideways"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void scheduleReadAndCancelTransfer() throws Exception {
+    this.accountsService.createAccount(new Account("Id-schedule-1", new BigDecimal("10")));
+    this.accountsService.createAccount(new Account("Id-schedule-2", new BigDecimal("0")));
+
+    MvcResult result = this.mockMvc.perform(post("/v1/accounts/transfers:schedule")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"fromAccountId\":\"Id-schedule-1\",\"toAccountId\":\"Id-schedule-2\","
+                            + "\"amount\":2.5,\"executeAt\":\"2999-01-01T09:00:00Z\"}"))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.amount").value(2.5))
+            .andReturn();
+    long id = ((Number) JsonPath.read(result.getResponse().getContentAsString(), "$.id")).longValue();
+
+    this.mockMvc.perform(get("/v1/accounts/scheduledTransfers/" + id))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.fromAccountId").value("Id-schedule-1"));
+    this.mockMvc.perform(delete("/v1/accounts/scheduledTransfers/" + id))
+            .andExpect(status().isNoContent());
+    this.mockMvc.perform(get("/v1/accounts/scheduledTransfers/" + id))
+            .andExpect(status().isNotFound());
+    this.mockMvc.perform(post("/v1/accounts/transfers:schedule").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"fromAccountId\":\"Id-schedule-1\",\"toAccountId\":\"Id-schedule-2\","
+                            + "\"amount\":2.5}"))
+            .andExpect(status().isBadRequest());
+  }
+}
@@ -7,18 +7,29 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
 import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
 import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 @ExtendWith(SpringExtension.class)
@@ -34,7 +45,7 @@ class AccountsServiceTest {
 
   // Newly Added
 
-  @Autowired
+  @MockBean
   private NotificationService notificationService;
 
 
@@ -58,11 +69,12 @@ class AccountsServiceTest {
 
   @Test
   void addAccount() {
-    Account account = new Account("Id-123");
+    // Id-123 is already created by setUp
+    Account account = new Account("Id-789");
     account.setBalance(new BigDecimal(1000));
     this.accountsService.createAccount(account);
 
-    assertThat(this.accountsService.getAccount("Id-123")).isEqualTo(account);
+    assertThat(this.accountsService.getAccount("Id-789")).isEqualTo(account);
   }
 
   @Test
@@ -151,13 +163,66 @@ class AccountsServiceTest {
     assertThat(exception.getMessage()).isEqualTo("Amount must be positive");
   }
 
+  @Test
+  void transferBatch_settlesInChunksAgainstRunningBalances() {
+    // A chain through more accounts than one chunk locks; each item spends what the one before credited
+    int accounts = 150;
+    List<TransferRequest> transfers = new ArrayList<>();
+    accountsService.createAccount(new Account("Id-chain-0", new BigDecimal("100")));
+    for (int i = 1; i <= accounts; i++) {
+      accountsService.createAccount(new Account("Id-chain-" + i, BigDecimal.ZERO));
+      transfers.add(new TransferRequest("Id-chain-" + (i - 1), "Id-chain-" + i, new BigDecimal("100")));
+    }
+    transfers.add(new TransferRequest("Id-chain-0", "Id-chain-1", BigDecimal.ONE));
+
+    List<TransferResult> results = accountsService.transferBatch(transfers);
 
+    for (int i = 0; i < accounts; i++) {
+      assertThat(results.get(i).getStatus()).isEqualTo(TransferResult.Status.SUCCEEDED);
+      assertThat(accountsService.getAccount("Id-chain-" + i).getBalance()).isEqualByComparingTo("0");
+    }
+    assertThat(results.get(accounts).getMessage()).isEqualTo("Insufficient balance");
+    assertThat(accountsService.getAccount("Id-chain-" + accounts).getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  void transferBatch_journalsNothingWhenSettlementFails() {
+    List<String> journaled = new ArrayList<>();
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory() {
+      @Override
+      public long recordBalanceChanges(String[] accountIds, long[] deltasMinorUnits, int count) {
+        journaled.addAll(Arrays.asList(accountIds).subList(0, count));
+        return 0;
+      }
+    };
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notificationService, 16, 1, 16,
+            NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+    AccountsServiceImpl service = new AccountsServiceImpl(repository, dispatcher, new AccountLockManager(64),
+            TransferMetrics.disabled(), new TransferLedger());
+    try {
+      service.createAccount(new Account("Id-from", new BigDecimal("100")) {
+        @Override
+        public boolean tryDebit(long amountMinorUnits) {
+          return false;
+        }
+      });
+      service.createAccount(new Account("Id-to", BigDecimal.ZERO));
+
+      assertThrows(IllegalStateException.class, () -> service.transferBatch(
+              List.of(new TransferRequest("Id-from", "Id-to", BigDecimal.TEN))));
+
+      // Replaying the journal must not move money the accounts never saw move
+      assertThat(journaled).isEmpty();
+      assertThat(service.getAccount("Id-to").getBalance()).isEqualByComparingTo("0");
+    } finally {
+      dispatcher.shutdown();
+    }
+  }
 
 @Test
 void testTransferMoney() {
-  Account account1 = new Account("Id-123", new BigDecimal("1000"));
+  // Id-123 is already created by setUp, with a balance of 1000
   Account account2 = new Account("Id-124", new BigDecimal("500"));
-  accountsService.createAccount(account1);
   accountsService.createAccount(account2);
 
   // Mock NotificationService
@@ -173,8 +238,8 @@ void testTransferMoney() {
   assertThat(accountFrom.getBalance()).isEqualByComparingTo("900");
   assertThat(accountTo.getBalance()).isEqualByComparingTo("600");
 
-  // Verify that notifications were sent
-  verify(notificationService, times(2)).sendNotification(anyString(), anyString());
+  // Verify that notifications were sent, they are delivered asynchronously
+  verify(notificationService, timeout(1000).times(2)).sendNotification(anyString(), anyString());
 }
 }
 
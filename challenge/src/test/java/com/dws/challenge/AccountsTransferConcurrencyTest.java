@@ -0,0 +1,179 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AccountsTransferConcurrencyTest {
+
+  private static final int ACCOUNTS = 16;
+
+  private static final int THREADS = 8;
+
+  private static final int TRANSFERS_PER_THREAD = 20_000;
+
+  private AccountsServiceImpl accountsService;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  @BeforeEach
+  void setUp() {
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    // Few stripes on purpose so that unrelated accounts also collide on locks
+    accountsService = new AccountsServiceImpl(new AccountsRepositoryInMemory(),
+            notificationDispatcher, new AccountLockManager(4), TransferMetrics.disabled(), new TransferLedger());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void concurrentTransfers_conserveTotalBalance() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      long seed = t;
+      futures.add(executor.submit(() -> {
+        Random random = new Random(seed);
+        start.await();
+        for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = random.nextInt(ACCOUNTS);
+          if (from == to) {
+            continue;
+          }
+          try {
+            accountsService.transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50)));
+          } catch (InsufficientBalanceException expected) {
+            // Rejected transfers must leave both balances untouched
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      BigDecimal balance = accountsService.getAccount("Id-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+  }
+
+  @Test
+  void opposingTransfers_doNotDeadlock() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    // Each side moves at most its own starting balance, so no transfer can be rejected
+    Future<?> forward = executor.submit(() -> {
+      for (int i = 0; i < 1000; i++) {
+        accountsService.transfer("Id-0", "Id-1", BigDecimal.ONE);
+      }
+    });
+    Future<?> backward = executor.submit(() -> {
+      for (int i = 0; i < 1000; i++) {
+        accountsService.transfer("Id-1", "Id-0", BigDecimal.ONE);
+      }
+    });
+    forward.get(1, TimeUnit.MINUTES);
+    backward.get(1, TimeUnit.MINUTES);
+    executor.shutdown();
+
+    assertThat(accountsService.getAccount("Id-0").getBalance()
+            .add(accountsService.getAccount("Id-1").getBalance())).isEqualByComparingTo("2000");
+  }
+
+  @Test
+  void concurrentDebits_neverOverdraw() throws Exception {
+    Account account = new Account("Id-debit", new BigDecimal("100.00"));
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      futures.add(executor.submit(() -> {
+        int debited = 0;
+        for (int i = 0; i < 10_000; i++) {
+          if (account.tryDebit(1)) {
+            debited++;
+          }
+        }
+        return debited;
+      }));
+    }
+    int total = 0;
+    for (Future<Integer> future : futures) {
+      total += future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    assertThat(total).isEqualTo(10_000);
+    assertThat(account.getBalanceMinorUnits()).isZero();
+  }
+
+  @Test
+  void concurrentConditionalUpdates_loseNoIncrement() throws Exception {
+    AccountsRepository repository = accountsService.getAccountsRepository();
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Integer>> futures = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        int conflicts = 0;
+        for (int i = 0; i < 1_000; i++) {
+          // Read, compute, write back; a write that lost the race reads again
+          AccountSnapshot read = accountsService.getAccountSnapshot("Id-0");
+          while (repository.compareAndUpdate("Id-0", read.getVersion(), read.getBalanceMinorUnits() + 1) == null) {
+            conflicts++;
+            read = accountsService.getAccountSnapshot("Id-0");
+          }
+        }
+        return conflicts;
+      }));
+    }
+    start.countDown();
+    for (Future<Integer> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    AccountSnapshot account = accountsService.getAccountSnapshot("Id-0");
+    assertThat(account.getBalanceMinorUnits()).isEqualTo(100_000 + THREADS * 1_000);
+    assertThat(account.getVersion()).isEqualTo(THREADS * 1_000);
+  }
+}
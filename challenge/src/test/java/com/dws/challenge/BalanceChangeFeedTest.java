@@ -0,0 +1,127 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.BalanceChange;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.exception.SequenceExpiredException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.BalanceChangeFeed;
+import com.dws.challenge.service.HotAccountDetector;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferRateLimiter;
+import org.junit.jupiter.api.Test;
+
+class BalanceChangeFeedTest {
+
+  @Test
+  void cursorReadsChangesInSequenceOrderAndResumes() {
+    BalanceChangeFeed feed = new BalanceChangeFeed(8);
+    feed.accountCreated("Id-1", 1_000, 0);
+    feed.balanceChanged("Id-1", -250, 750, 1);
+    feed.balanceChanged("Id-2", 250, 250, 1);
+
+    List<BalanceChange> changes = new ArrayList<>();
+    BalanceChangeFeed.Cursor cursor = feed.cursor(0);
+    assertThat(cursor.poll(changes, 2)).isTrue();
+    assertThat(changes).extracting(BalanceChange::getSequence).containsExactly(0L, 1L);
+    assertThat(changes.get(0).getType()).isEqualTo(BalanceChange.Type.ACCOUNT_CREATED);
+    assertThat(changes.get(0).getChange()).isNull();
+    assertThat(changes.get(1).getBalance()).isEqualByComparingTo("7.50");
+    assertThat(changes.get(1).getChange()).isEqualByComparingTo("-2.50");
+
+    changes.clear();
+    assertThat(cursor.poll(changes, 10)).isTrue();
+    assertThat(changes).extracting(BalanceChange::getAccountId).containsExactly("Id-2");
+    changes.clear();
+    assertThat(cursor.poll(changes, 10)).isTrue();
+    assertThat(changes).isEmpty();
+
+    // A reconnecting subscriber picks up where it left off
+    feed.balanceChanged("Id-1", 100, 850, 2);
+    changes.clear();
+    assertThat(feed.cursor(3).poll(changes, 10)).isTrue();
+    assertThat(changes).extracting(BalanceChange::getSequence).containsExactly(3L);
+  }
+
+  @Test
+  void lappedCursorIsReportedAndExpiredSequenceRefused() {
+    BalanceChangeFeed feed = new BalanceChangeFeed(3);
+    assertThat(feed.getCapacity()).isEqualTo(4);
+    BalanceChangeFeed.Cursor cursor = feed.cursor(0);
+    for (int i = 0; i < 6; i++) {
+      feed.balanceChanged("Id-1", 1, i + 1, i + 1);
+    }
+    assertThat(feed.getOldestSequence()).isEqualTo(2);
+    assertThat(cursor.poll(new ArrayList<>(), 10)).isFalse();
+
+    assertThatThrownBy(() -> feed.cursor(1)).isInstanceOf(SequenceExpiredException.class);
+    assertThatThrownBy(() -> feed.cursor(7)).isInstanceOf(SequenceExpiredException.class);
+    List<BalanceChange> changes = new ArrayList<>();
+    assertThat(feed.cursor(2).poll(changes, 10)).isTrue();
+    assertThat(changes).extracting(BalanceChange::getSequence).containsExactly(2L, 3L, 4L, 5L);
+
+    BalanceChangeFeed disabled = BalanceChangeFeed.disabled();
+    disabled.balanceChanged("Id-1", 1, 1, 1);
+    assertThat(disabled.isEnabled()).isFalse();
+    assertThat(disabled.getNextSequence()).isZero();
+  }
+
+  @Test
+  void serviceAppendsCreationsAndEveryBalanceChange() {
+    NotificationDispatcher dispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    try {
+      BalanceChangeFeed feed = new BalanceChangeFeed(64);
+      AccountsServiceImpl accountsService = new AccountsServiceImpl(new AccountsRepositoryInMemory(), dispatcher,
+              new AccountLockManager(64), TransferMetrics.disabled(), new TransferLedger(),
+              HotAccountDetector.disabled(), TransferRateLimiter.disabled(), feed);
+      accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+      accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+      accountsService.createAccount(new Account("Id-3", BigDecimal.ZERO));
+
+      accountsService.transfer("Id-1", "Id-2", new BigDecimal("10"));
+      accountsService.transferMultiLeg("Id-1", List.of(new TransferLeg("Id-2", new BigDecimal("1")),
+              new TransferLeg("Id-3", new BigDecimal("2"))));
+      accountsService.transferBatch(Collections.singletonList(new TransferRequest("Id-2", "Id-3",
+              new BigDecimal("5"))));
+
+      List<BalanceChange> changes = new ArrayList<>();
+      assertThat(feed.cursor(0).poll(changes, 64)).isTrue();
+      assertThat(changes).extracting(BalanceChange::getType).startsWith(BalanceChange.Type.ACCOUNT_CREATED,
+              BalanceChange.Type.ACCOUNT_CREATED, BalanceChange.Type.ACCOUNT_CREATED);
+      assertThat(changes).hasSize(10);
+
+      // Replaying the changes of each account ends at its current balance and version
+      for (String accountId : List.of("Id-1", "Id-2", "Id-3")) {
+        BigDecimal balance = BigDecimal.ZERO;
+        long version = -1;
+        for (BalanceChange change : changes) {
+          if (change.getAccountId().equals(accountId)) {
+            balance = change.getChange() == null ? change.getBalance() : balance.add(change.getChange());
+            assertThat(change.getBalance()).isEqualByComparingTo(balance);
+            assertThat(change.getVersion()).isGreaterThan(version);
+            version = change.getVersion();
+          }
+        }
+        assertThat(accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo(balance);
+      }
+    } finally {
+      dispatcher.shutdown();
+    }
+  }
+}
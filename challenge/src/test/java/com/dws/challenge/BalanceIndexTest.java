@@ -0,0 +1,196 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.BalanceChangeFeed;
+import com.dws.challenge.service.BalanceIndex;
+import com.dws.challenge.service.HotAccountDetector;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BalanceIndexTest {
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private AccountsRepository repository;
+
+  private BalanceIndex balanceIndex;
+
+  private AccountsServiceImpl accountsService;
+
+  @BeforeEach
+  void setUp() {
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    repository = new AccountsRepositoryInMemory();
+    // Refreshed by hand below, the background refresher has its own test
+    balanceIndex = new BalanceIndex(repository, true, Duration.ofHours(1));
+    accountsService = new AccountsServiceImpl(repository, notificationDispatcher, new AccountLockManager(64),
+            TransferMetrics.disabled(), new TransferLedger(), new HotAccountDetector(4, Duration.ofMinutes(1), 4),
+            TransferRateLimiter.disabled(), BalanceChangeFeed.disabled(), balanceIndex);
+  }
+
+  @AfterEach
+  void tearDown() {
+    notificationDispatcher.shutdown();
+    balanceIndex.shutdown();
+  }
+
+  @Test
+  void rangeAndTopQueriesFollowTransfers() {
+    for (int i = 0; i < 5; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(i * 10)));
+    }
+    assertThat(ids(accountsService.findByBalance(null, new BigDecimal("20"), 10, false)))
+            .containsExactly("Id-0", "Id-1", "Id-2");
+
+    accountsService.transfer("Id-4", "Id-0", new BigDecimal("35"));
+    // Until the refresher runs, hits that moved out of range are filtered against the accounts
+    assertThat(ids(accountsService.findByBalance(null, new BigDecimal("20"), 10, false)))
+            .containsExactly("Id-1", "Id-2");
+    assertThat(balanceIndex.refreshMarked()).isEqualTo(2);
+    assertThat(ids(accountsService.findByBalance(null, null, 2, true))).containsExactly("Id-0", "Id-3");
+    assertThat(ids(accountsService.findByBalance(new BigDecimal("5"), new BigDecimal("20"), 10, false)))
+            .containsExactly("Id-4", "Id-1", "Id-2");
+    assertThat(ids(accountsService.findByBalance(new BigDecimal("21"), new BigDecimal("20"), 10, false))).isEmpty();
+
+    // Equal balances are ordered by id
+    accountsService.createAccount(new Account("Id-5", new BigDecimal("10")));
+    assertThat(ids(accountsService.findByBalance(new BigDecimal("10"), new BigDecimal("10"), 10, false)))
+            .containsExactly("Id-1", "Id-5");
+  }
+
+  @Test
+  void accountsGoneFromRepositoryAreDroppedOnRead() {
+    accountsService.createAccount(new Account("Id-0", BigDecimal.ONE));
+    repository.clearAccounts();
+    repository.createAccount(new Account("Id-1", BigDecimal.TEN));
+    balanceIndex.refresh("Id-1");
+
+    assertThat(ids(accountsService.findByBalance(null, null, 10, false))).containsExactly("Id-1");
+    assertThat(balanceIndex.getSize()).isEqualTo(1);
+  }
+
+  @Test
+  void batchGetKeepsRequestOrderAndReportsMissing() {
+    accountsService.createAccount(new Account("Id-0", BigDecimal.ONE));
+    accountsService.createAccount(new Account("Id-1", BigDecimal.TEN));
+
+    List<AccountSnapshot> snapshots = accountsService.getAccountSnapshots(Arrays.asList("Id-1", "Id-x", "Id-0"));
+    assertThat(snapshots.get(0).getAccountId()).isEqualTo("Id-1");
+    assertThat(snapshots.get(1)).isNull();
+    assertThat(snapshots.get(2).getBalance()).isEqualByComparingTo("1");
+
+    assertThatThrownBy(() -> accountsService.getAccountSnapshots(Collections.nCopies(1001, "Id-0")))
+            .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void indexMatchesBalancesAfterConcurrentTransfers() throws Exception {
+    int accounts = 32;
+    for (int i = 0; i < accounts; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long seed = t;
+      futures.add(executor.submit(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < 5_000; i++) {
+          int from = random.nextInt(accounts);
+          // Every fourth transfer pays the same account, so that it becomes hot and is credited unlocked
+          int to = i % 4 == 0 ? 0 : random.nextInt(accounts);
+          if (from == to) {
+            continue;
+          }
+          try {
+            accountsService.transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(30)));
+          } catch (InsufficientBalanceException expected) {
+            // Leaves both balances as they were
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+    balanceIndex.refreshMarked();
+
+    List<AccountSnapshot> expected = new ArrayList<>();
+    for (int i = 0; i < accounts; i++) {
+      expected.add(accountsService.getAccountSnapshot("Id-" + i));
+    }
+    expected.sort(Comparator.comparingLong(AccountSnapshot::getBalanceMinorUnits)
+            .thenComparing(AccountSnapshot::getAccountId));
+    assertThat(accountsService.findByBalance(null, null, accounts, false)).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void refresherWorksOffMarkedAccountsInBoundedRuns() {
+    for (int i = 0; i <= BalanceIndex.MAX_REFRESH_BATCH; i++) {
+      repository.createAccount(new Account("Id-" + i, BigDecimal.ONE));
+      balanceIndex.markChanged("Id-" + i);
+    }
+
+    assertThat(balanceIndex.refreshMarked()).isEqualTo(BalanceIndex.MAX_REFRESH_BATCH);
+    assertThat(balanceIndex.refreshMarked()).isEqualTo(1);
+    assertThat(balanceIndex.refreshMarked()).isZero();
+    assertThat(balanceIndex.getSize()).isEqualTo(BalanceIndex.MAX_REFRESH_BATCH + 1);
+  }
+
+  @Test
+  void backgroundRefresherCatchesUpWithoutQueries() throws Exception {
+    BalanceIndex refreshed = new BalanceIndex(repository, true, Duration.ofMillis(10));
+    try {
+      repository.createAccount(new Account("Id-0", BigDecimal.TEN));
+      refreshed.markChanged("Id-0");
+
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (refreshed.getSize() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(refreshed.getSize()).isEqualTo(1);
+    } finally {
+      refreshed.shutdown();
+    }
+  }
+
+  private static List<String> ids(List<AccountSnapshot> snapshots) {
+    List<String> ids = new ArrayList<>();
+    for (AccountSnapshot snapshot : snapshots) {
+      ids.add(snapshot.getAccountId());
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,195 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.ConvertedAmountOutOfRangeException;
+import com.dws.challenge.exception.ExchangeRateUnavailableException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.BalanceChangeFeed;
+import com.dws.challenge.service.BalanceIndex;
+import com.dws.challenge.service.ExchangeRateCache;
+import com.dws.challenge.service.ExchangeRates;
+import com.dws.challenge.service.FileExchangeRateProvider;
+import com.dws.challenge.service.HotAccountDetector;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExchangeRateTest {
+
+  private final AtomicReference<ExchangeRates> providedRates = new AtomicReference<>();
+
+  private NotificationService notificationService;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private ExchangeRateCache exchangeRates;
+
+  private AccountsServiceImpl accountsService;
+
+  @TempDir
+  Path directory;
+
+  @BeforeEach
+  void setUp() {
+    providedRates.set(rates(System.currentTimeMillis()));
+    exchangeRates = new ExchangeRateCache(() -> {
+      ExchangeRates rates = providedRates.get();
+      if (rates == null) {
+        throw new IOException("Rate source is down");
+      }
+      return rates;
+    }, Duration.ofHours(1), Duration.ofMinutes(10));
+    notificationService = mock(NotificationService.class);
+    notificationDispatcher = new NotificationDispatcher(notificationService, 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    accountsService = new AccountsServiceImpl(new AccountsRepositoryInMemory(), notificationDispatcher,
+            new AccountLockManager(64), TransferMetrics.disabled(), new TransferLedger(), HotAccountDetector.disabled(),
+            TransferRateLimiter.disabled(), BalanceChangeFeed.disabled(), BalanceIndex.disabled(), exchangeRates);
+    accountsService.createAccount(new Account("Id-EUR", new BigDecimal("100.00")));
+    accountsService.createAccount(new Account("Id-USD", new BigDecimal("100.00"), "USD"));
+    accountsService.createAccount(new Account("Id-GBP", BigDecimal.ZERO, "GBP"));
+    accountsService.createAccount(new Account("Id-JPY", BigDecimal.ZERO, "JPY"));
+  }
+
+  @AfterEach
+  void tearDown() {
+    exchangeRates.shutdown();
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void convertsThroughCrossRatesRoundingHalfToEven() {
+    ExchangeRates rates = rates(0);
+    assertThat(rates.convert(10_000, "EUR", "USD")).isEqualTo(10_850);
+    assertThat(rates.convert(10_850, "USD", "EUR")).isEqualTo(10_000);
+    assertThat(rates.convert(10_000, "USD", "GBP")).isEqualTo(7_889);
+    assertThat(rates.convert(1, "EUR", "XTS")).isEqualTo(2);
+    assertThat(rates.convert(3, "EUR", "XTS")).isEqualTo(4);
+    assertThatThrownBy(() -> rates.convert(100, "EUR", "JPY"))
+            .isInstanceOf(ExchangeRateUnavailableException.class)
+            .hasMessage("No exchange rate from EUR to JPY");
+    assertThatThrownBy(() -> rates.convert(Long.MAX_VALUE, "EUR", "USD"))
+            .isInstanceOf(ConvertedAmountOutOfRangeException.class)
+            .hasMessage("Amount is too large to convert from EUR to USD");
+  }
+
+  @Test
+  void transfersBetweenCurrenciesCreditTheConvertedAmount() {
+    accountsService.transfer("Id-EUR", "Id-USD", new BigDecimal("10.00"));
+
+    assertThat(accountsService.getAccount("Id-EUR").getBalance()).isEqualByComparingTo("90.00");
+    assertThat(accountsService.getAccount("Id-USD").getBalance()).isEqualByComparingTo("110.85");
+    assertThat(accountsService.getTransactions("Id-EUR", null, 10).getTransactions().get(0).getAmount())
+            .isEqualByComparingTo("-10.00");
+    assertThat(accountsService.getTransactions("Id-USD", null, 10).getTransactions().get(0).getAmount())
+            .isEqualByComparingTo("10.85");
+    verify(notificationService, timeout(1000)).sendNotification("Id-EUR", "Transferred 10.00 EUR to account Id-USD");
+    verify(notificationService, timeout(1000)).sendNotification("Id-USD", "Received 10.85 USD from account Id-EUR");
+  }
+
+  @Test
+  void multiLegAndBatchTransfersConvertEachCredit() {
+    accountsService.transferMultiLeg("Id-EUR", Arrays.asList(new TransferLeg("Id-USD", new BigDecimal("10.00")),
+            new TransferLeg("Id-GBP", new BigDecimal("10.00"))));
+    assertThat(accountsService.getAccount("Id-EUR").getBalance()).isEqualByComparingTo("80.00");
+    assertThat(accountsService.getAccount("Id-USD").getBalance()).isEqualByComparingTo("110.85");
+    assertThat(accountsService.getAccount("Id-GBP").getBalance()).isEqualByComparingTo("8.56");
+
+    List<TransferResult> results = accountsService.transferBatch(Arrays.asList(
+            new TransferRequest("Id-USD", "Id-EUR", new BigDecimal("10.85")),
+            new TransferRequest("Id-EUR", "Id-GBP", new BigDecimal("0.01")),
+            new TransferRequest("Id-EUR", "Id-JPY", BigDecimal.ONE)));
+    assertThat(results.get(0).getStatus()).isEqualTo(TransferResult.Status.SUCCEEDED);
+    assertThat(results.get(1).getStatus()).isEqualTo(TransferResult.Status.SUCCEEDED);
+    assertThat(results.get(2).getStatus()).isEqualTo(TransferResult.Status.REJECTED);
+    assertThat(results.get(2).getMessage()).isEqualTo("No exchange rate from EUR to JPY");
+    assertThat(accountsService.getAccount("Id-USD").getBalance()).isEqualByComparingTo("100.00");
+    assertThat(accountsService.getAccount("Id-EUR").getBalance()).isEqualByComparingTo("89.99");
+    assertThat(accountsService.getAccount("Id-GBP").getBalance()).isEqualByComparingTo("8.57");
+  }
+
+  @Test
+  void refusesTransfersOnStaleOrMissingRatesWithoutChangingBalances() {
+    providedRates.set(rates(System.currentTimeMillis() - Duration.ofMinutes(11).toMillis()));
+    assertThat(exchangeRates.refresh()).isTrue();
+    assertThatThrownBy(() -> accountsService.transfer("Id-EUR", "Id-USD", BigDecimal.ONE))
+            .isInstanceOf(ExchangeRateUnavailableException.class)
+            .hasMessage("Exchange rates are out of date");
+
+    AccountsServiceImpl withoutRates = new AccountsServiceImpl(new AccountsRepositoryInMemory(),
+            notificationDispatcher, new AccountLockManager(64), TransferMetrics.disabled(), new TransferLedger(),
+            HotAccountDetector.disabled(), TransferRateLimiter.disabled(), BalanceChangeFeed.disabled(),
+            BalanceIndex.disabled());
+    withoutRates.createAccount(new Account("Id-1", BigDecimal.TEN));
+    withoutRates.createAccount(new Account("Id-2", BigDecimal.TEN, "USD"));
+    assertThatThrownBy(() -> withoutRates.transfer("Id-1", "Id-2", BigDecimal.ONE))
+            .isInstanceOf(ExchangeRateUnavailableException.class);
+
+    assertThat(withoutRates.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+    assertThat(accountsService.getAccount("Id-EUR").getBalance()).isEqualByComparingTo("100.00");
+    assertThat(accountsService.getAccount("Id-USD").getBalance()).isEqualByComparingTo("100.00");
+  }
+
+  @Test
+  void keepsLastRatesWhenRefreshFails() {
+    ExchangeRates current = exchangeRates.getRates();
+    providedRates.set(null);
+
+    assertThat(exchangeRates.refresh()).isFalse();
+    assertThat(exchangeRates.getRates()).isSameAs(current);
+    assertThat(exchangeRates.convert(10_000, "EUR", "USD")).isEqualTo(10_850);
+  }
+
+  @Test
+  void fileProviderReadsConfiguredOrBundledRates() throws IOException {
+    Path file = directory.resolve("rates.properties");
+    Files.write(file, "base=USD\nEUR=0.9200\n".getBytes(StandardCharsets.UTF_8));
+    ExchangeRates rates = new FileExchangeRateProvider(file).fetchRates();
+    assertThat(rates.getBaseCurrency()).isEqualTo("USD");
+    assertThat(rates.convert(10_000, "USD", "EUR")).isEqualTo(9_200);
+
+    ExchangeRates bundled = new FileExchangeRateProvider((Path) null).fetchRates();
+    assertThat(bundled.getBaseCurrency()).isEqualTo("EUR");
+    assertThat(bundled.rate("EUR", "USD")).isNotNull();
+
+    Files.write(file, "EUR=0.9200\n".getBytes(StandardCharsets.UTF_8));
+    assertThatThrownBy(() -> new FileExchangeRateProvider(file).fetchRates()).isInstanceOf(IOException.class);
+  }
+
+  private static ExchangeRates rates(long fetchedAtMillis) {
+    Map<String, BigDecimal> ratesPerEuro = new HashMap<>();
+    ratesPerEuro.put("USD", new BigDecimal("1.0850"));
+    ratesPerEuro.put("GBP", new BigDecimal("0.8560"));
+    ratesPerEuro.put("XTS", new BigDecimal("1.5"));
+    return new ExchangeRates("EUR", ratesPerEuro, fetchedAtMillis);
+  }
+}
@@ -0,0 +1,135 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Balance read latency while a burst of transfers blocks on journal syncs, with the transfers run
+ * on the Tomcat pool ({@code servlet}) or handed to the offload pool ({@code async}). Both modes
+ * get the same small connector pool so that the burst can exhaust it. Opt-in:
+ * {@code mvn test -Dtest=ExecutionModeLoadTest -Dbenchmarks=true}
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class ExecutionModeLoadTest {
+
+  private static final int ACCOUNTS = 8;
+
+  private static final int WRITERS = 64;
+
+  private static final int READERS = 4;
+
+  private static final Duration RUN = Duration.ofSeconds(10);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void compareServletAndAsyncModes() throws Exception {
+    for (String mode : new String[] {"servlet", "async"}) {
+      ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+              .properties("server.port=0",
+                      "server.tomcat.threads.max=16",
+                      "challenge.web.execution-mode=" + mode,
+                      "challenge.web.async.threads=64",
+                      "challenge.repository.type=journal",
+                      "challenge.journal.directory=" + directory.resolve(mode),
+                      "challenge.journal.snapshot-interval-ms=0",
+                      "logging.level.com.dws.challenge=WARN",
+                      "logging.level." + ExecutionModeLoadTest.class.getName() + "=INFO")
+              .run();
+      try {
+        int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        log.info(run(mode, "http://localhost:" + port + "/v1/accounts"));
+      } finally {
+        context.close();
+      }
+    }
+  }
+
+  private static String run(String mode, String base) throws Exception {
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newCachedThreadPool()).build();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      HttpResponse<String> created = client.send(HttpRequest.newBuilder(URI.create(base))
+              .header("Content-Type", "application/json")
+              .POST(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"Id-" + i + "\",\"balance\":1000000}"))
+              .build(), HttpResponse.BodyHandlers.ofString());
+      assertThat(created.statusCode()).isEqualTo(201);
+    }
+
+    Recorder reads = new Recorder(3);
+    AtomicLong transfers = new AtomicLong();
+    AtomicLong shed = new AtomicLong();
+    long deadline = System.nanoTime() + RUN.toNanos();
+    ExecutorService clients = Executors.newFixedThreadPool(WRITERS + READERS);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < WRITERS; t++) {
+      long seed = t;
+      futures.add(clients.submit(() -> {
+        SplittableRandom random = new SplittableRandom(seed);
+        while (System.nanoTime() < deadline) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(base + "/transfer?fromAccountId=Id-"
+                  + from + "&toAccountId=Id-" + to + "&amount=0.01")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                  HttpResponse.BodyHandlers.discarding());
+          if (response.statusCode() == 503) {
+            shed.incrementAndGet();
+          } else {
+            transfers.incrementAndGet();
+          }
+        }
+        return null;
+      }));
+    }
+    for (int t = 0; t < READERS; t++) {
+      long seed = WRITERS + t;
+      futures.add(clients.submit(() -> {
+        SplittableRandom random = new SplittableRandom(seed);
+        while (System.nanoTime() < deadline) {
+          long started = System.nanoTime();
+          HttpResponse<Void> response = client.send(HttpRequest.newBuilder(
+                  URI.create(base + "/Id-" + random.nextInt(ACCOUNTS))).GET().build(),
+                  HttpResponse.BodyHandlers.discarding());
+          reads.recordValue((System.nanoTime() - started) / 1000);
+          assertThat(response.statusCode()).isEqualTo(200);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    clients.shutdown();
+
+    Histogram histogram = reads.getIntervalHistogram();
+    return String.format("%-7s transfers/s=%d shed=%d reads=%d read p50=%dus p99=%dus max=%dus", mode,
+            transfers.get() / RUN.getSeconds(), shed.get(), histogram.getTotalCount(),
+            histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMaxValue());
+  }
+}
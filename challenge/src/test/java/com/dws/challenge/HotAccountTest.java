@@ -0,0 +1,189 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.TransferRateLimitedException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.HotAccountDetector;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferRateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HotAccountTest {
+
+  private static final int ACCOUNTS = 16;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  @BeforeEach
+  void setUp() {
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+  }
+
+  @AfterEach
+  void tearDown() {
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void stripedCreditsAreMergedOnReadAndFoldedBeforeDebit() {
+    Account account = new Account("Id-hot", new BigDecimal("10"));
+    account.stripeCredits(4);
+    account.creditStriped(250);
+    account.creditStriped(50);
+
+    assertThat(account.getBalance()).isEqualByComparingTo("13");
+    AccountSnapshot snapshot = account.snapshot();
+    assertThat(snapshot.getBalance()).isEqualByComparingTo("13");
+    assertThat(snapshot.getVersion()).isZero();
+
+    // Only covered once the pending credits are counted
+    assertThat(account.tryDebit(1_200)).isTrue();
+    assertThat(account.getBalance()).isEqualByComparingTo("1");
+    assertThat(account.snapshot().getVersion()).isEqualTo(2);
+  }
+
+  @Test
+  void contendedReceiverBecomesHotAndStaysConsistent() throws Exception {
+    HotAccountDetector detector = new HotAccountDetector(8, Duration.ofMinutes(1), 4);
+    AccountsServiceImpl accountsService = service(detector, TransferRateLimiter.disabled());
+    accountsService.createAccount(new Account("Id-merchant", BigDecimal.ZERO));
+
+    // Every thread pays the merchant and, now and then, the merchant refunds
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long seed = t;
+      futures.add(executor.submit(() -> {
+        Random random = new Random(seed);
+        start.await();
+        for (int i = 0; i < 5_000; i++) {
+          String customer = "Id-" + random.nextInt(ACCOUNTS);
+          try {
+            if (i % 10 == 0) {
+              accountsService.transfer("Id-merchant", customer, new BigDecimal(1 + random.nextInt(20)));
+            } else {
+              accountsService.transfer(customer, "Id-merchant", new BigDecimal(1 + random.nextInt(5)));
+            }
+          } catch (InsufficientBalanceException expected) {
+            // Rejected transfers must leave both balances untouched
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    BigDecimal total = accountsService.getAccount("Id-merchant").getBalance();
+    for (int i = 0; i < ACCOUNTS; i++) {
+      BigDecimal balance = accountsService.getAccount("Id-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+  }
+
+  @Test
+  void detectorStripesAccountOnceThresholdIsReachedWithinWindow() {
+    HotAccountDetector detector = new HotAccountDetector(3, Duration.ofMinutes(1), 4);
+    Account account = new Account("Id-hot", BigDecimal.ZERO);
+    detector.recordContention(account);
+    detector.recordContention(account);
+    assertThat(account.isCreditStriped()).isFalse();
+
+    detector.recordContention(account);
+    assertThat(account.isCreditStriped()).isTrue();
+    assertThat(detector.getHotAccountCount()).isEqualTo(1);
+
+    HotAccountDetector.disabled().recordContention(new Account("Id-cold", BigDecimal.ZERO));
+  }
+
+  @Test
+  void rateLimiterRejectsBeyondBurstPerSourceAccount() {
+    TransferRateLimiter limiter = new TransferRateLimiter(0.001, 3);
+    AccountsServiceImpl accountsService = service(HotAccountDetector.disabled(), limiter);
+    for (int i = 0; i < 3; i++) {
+      accountsService.transfer("Id-0", "Id-1", BigDecimal.ONE);
+    }
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-1", BigDecimal.ONE))
+            .isInstanceOf(TransferRateLimitedException.class);
+    List<TransferResult> results = accountsService.transferBatch(Collections.singletonList(
+            new TransferRequest("Id-0", "Id-1", BigDecimal.ONE)));
+    assertThat(results.get(0).getMessage()).isEqualTo("Transfer rate limit exceeded");
+
+    // Other sources have buckets of their own
+    accountsService.transfer("Id-1", "Id-0", BigDecimal.ONE);
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("998");
+
+    // Unknown sources are turned away before they get a bucket
+    assertThatThrownBy(() -> accountsService.transfer("Id-missing", "Id-0", BigDecimal.ONE))
+            .isInstanceOf(AccountNotFoundException.class);
+    accountsService.transferBatch(Collections.singletonList(new TransferRequest("Id-gone", "Id-0", BigDecimal.ONE)));
+    assertThat(limiter.getBucketCount()).isEqualTo(2);
+  }
+
+  @Test
+  void rateLimiterRefillsOverTime() throws Exception {
+    TransferRateLimiter limiter = new TransferRateLimiter(100, 1);
+    assertThat(limiter.tryAcquire("Id-0")).isTrue();
+    assertThat(limiter.tryAcquire("Id-0")).isFalse();
+    Thread.sleep(20);
+    assertThat(limiter.tryAcquire("Id-0")).isTrue();
+  }
+
+  @Test
+  void rateLimiterDropsIdleBuckets() throws Exception {
+    TransferRateLimiter limiter = new TransferRateLimiter(1000, 1);
+    for (int i = 0; i < 3000; i++) {
+      limiter.tryAcquire("Id-old-" + i);
+    }
+    Thread.sleep(10);
+    for (int i = 0; i < 3000; i++) {
+      limiter.tryAcquire("Id-new-" + i);
+    }
+    assertThat(limiter.getBucketCount()).isLessThan(6000);
+  }
+
+  private AccountsServiceImpl service(HotAccountDetector detector, TransferRateLimiter limiter) {
+    AccountsServiceImpl accountsService = new AccountsServiceImpl(new AccountsRepositoryInMemory(),
+            notificationDispatcher, new AccountLockManager(64), TransferMetrics.disabled(), new TransferLedger(),
+            detector, limiter);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+    return accountsService;
+  }
+}
@@ -0,0 +1,115 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.IdempotencyKeyInUseException;
+import com.dws.challenge.exception.IdempotencyKeyMismatchException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.TransferRateLimitedException;
+import com.dws.challenge.exception.UnsupportedTransferException;
+import com.dws.challenge.web.IdempotencyCache;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyCacheTest {
+
+  @Test
+  void replaysResultAndFailureForSameKey() {
+    IdempotencyCache cache = new IdempotencyCache(1024, Duration.ofHours(1));
+    AtomicInteger runs = new AtomicInteger();
+
+    assertThat(cache.execute("a", "fp", runs::incrementAndGet)).isEqualTo(1);
+    assertThat(cache.execute("a", "fp", runs::incrementAndGet)).isEqualTo(1);
+
+    InsufficientBalanceException failure = new InsufficientBalanceException("Insufficient balance");
+    assertThatThrownBy(() -> cache.execute("b", "fp", () -> {
+      runs.incrementAndGet();
+      throw failure;
+    })).isSameAs(failure);
+    // Replayed as an equal exception, but never the instance another caller may be throwing
+    assertThatThrownBy(() -> cache.execute("b", "fp", runs::incrementAndGet))
+            .isInstanceOf(InsufficientBalanceException.class)
+            .hasMessage("Insufficient balance")
+            .isNotSameAs(failure);
+
+    assertThatThrownBy(() -> cache.execute("c", "fp", () -> {
+      runs.incrementAndGet();
+      throw new AccountNotFoundException("Id-missing");
+    })).isInstanceOf(AccountNotFoundException.class);
+    assertThatThrownBy(() -> cache.execute("c", "fp", runs::incrementAndGet))
+            .isInstanceOf(AccountNotFoundException.class)
+            .hasMessage("Account not found: Id-missing");
+
+    assertThat(runs.get()).isEqualTo(3);
+  }
+
+  @Test
+  void forgetsTransientAndUnexpectedFailures() {
+    IdempotencyCache cache = new IdempotencyCache(1024, Duration.ofHours(1));
+    AtomicInteger runs = new AtomicInteger();
+
+    assertThatThrownBy(() -> cache.execute("a", "fp", () -> {
+      runs.incrementAndGet();
+      throw new TransferRateLimitedException("Too many transfers");
+    })).isInstanceOf(TransferRateLimitedException.class);
+    assertThatThrownBy(() -> cache.execute("a", "fp", () -> {
+      runs.incrementAndGet();
+      throw new UnsupportedTransferException("Conditional transfers are not supported by this repository");
+    })).isInstanceOf(UnsupportedTransferException.class);
+    assertThatThrownBy(() -> cache.execute("a", "fp", () -> {
+      runs.incrementAndGet();
+      throw new AssertionError("boom");
+    })).isInstanceOf(AssertionError.class);
+    assertThat(cache.execute("a", "fp", runs::incrementAndGet)).isEqualTo(4);
+    assertThat(cache.execute("a", "fp", runs::incrementAndGet)).isEqualTo(4);
+  }
+
+  @Test
+  void neverEvictsARequestStillRunning() {
+    IdempotencyCache cache = new IdempotencyCache(64, Duration.ofHours(1));
+    AtomicInteger runs = new AtomicInteger();
+    cache.execute("running", "fp", () -> {
+      // One key per segment, so every segment overflows while this request is running
+      for (int i = 0; i < 10_000; i++) {
+        cache.execute("key-" + i, "fp", () -> 0);
+      }
+      assertThatThrownBy(() -> cache.execute("running", "fp", runs::incrementAndGet))
+              .isInstanceOf(IdempotencyKeyInUseException.class);
+      return runs.incrementAndGet();
+    });
+
+    assertThat(runs.get()).isEqualTo(1);
+  }
+
+  @Test
+  void rejectsKeyReusedWithDifferentFingerprint() {
+    IdempotencyCache cache = new IdempotencyCache(1024, Duration.ofHours(1));
+    cache.execute("a", "fp-1", () -> 1);
+
+    assertThatThrownBy(() -> cache.execute("a", "fp-2", () -> 2))
+            .isInstanceOf(IdempotencyKeyMismatchException.class);
+  }
+
+  @Test
+  void forgetsKeysOnceExpiredOrEvicted() throws InterruptedException {
+    AtomicInteger runs = new AtomicInteger();
+    IdempotencyCache expiring = new IdempotencyCache(1024, Duration.ofMillis(1));
+    expiring.execute("a", "fp", runs::incrementAndGet);
+    Thread.sleep(5);
+    expiring.execute("a", "fp", runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(2);
+
+    // One key per segment, so every segment overflows long before 10 000 keys
+    IdempotencyCache bounded = new IdempotencyCache(64, Duration.ofHours(1));
+    bounded.execute("first", "fp", runs::incrementAndGet);
+    for (int i = 0; i < 10_000; i++) {
+      bounded.execute("key-" + i, "fp", () -> 0);
+    }
+    bounded.execute("first", "fp", runs::incrementAndGet);
+    assertThat(runs.get()).isEqualTo(4);
+  }
+}
@@ -0,0 +1,59 @@
+package com.dws.challenge;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+
+/**
+ * Child process for {@link JournaledAccountsRepositoryTest}: creates accounts, reports that they
+ * are durable, then transfers between them until it is killed.
+ */
+public class JournalCrashWriter {
+
+  static final int ACCOUNTS = 20;
+
+  static final int INITIAL_BALANCE = 1000;
+
+  public static void main(String[] args) throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(Paths.get(args[0]), 64 * 1024,
+            Boolean.parseBoolean(args[1]));
+    NotificationService silent = new NotificationService() {
+      @Override
+      public void notifyAboutTransfer(Account account, String transferDescription) {
+      }
+
+      @Override
+      public void sendNotification(String accountFromId, String s) {
+      }
+    };
+    AccountsServiceImpl accountsService = new AccountsServiceImpl(repository,
+            new NotificationDispatcher(silent, 1024, 1, 256, NotificationDispatcher.OverflowPolicy.DROP_OLDEST),
+            new AccountLockManager(64), TransferMetrics.disabled(), new TransferLedger());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(INITIAL_BALANCE)));
+    }
+    System.out.println("ready");
+    System.out.flush();
+
+    Random random = new Random();
+    while (true) {
+      int from = random.nextInt(ACCOUNTS);
+      int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+      try {
+        accountsService.transfer("Id-" + from, "Id-" + to, BigDecimal.valueOf(1 + random.nextInt(5000), 2));
+      } catch (InsufficientBalanceException ignored) {
+        // Keep going, the point is to be mid-append when the process dies
+      }
+    }
+  }
+}
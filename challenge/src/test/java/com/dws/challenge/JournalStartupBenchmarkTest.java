@@ -0,0 +1,91 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import com.dws.challenge.repository.journal.TransferJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Startup time of the journaled repository with and without a snapshot. Opt-in, as it needs a
+ * large heap at 10M accounts:
+ * {@code mvn test -Dtest=JournalStartupBenchmarkTest -Dbenchmarks=true -DargLine=-Xmx8g}
+ * and {@code -Dbenchmark.accounts=1000000,10000000} to pick the sizes.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class JournalStartupBenchmarkTest {
+
+  private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final TransferJournal.Visitor IGNORE = new TransferJournal.Visitor() {
+    @Override
+    public void accountCreated(String accountId, long balanceMinorUnits, String currency) {
+    }
+
+    @Override
+    public void balancesChanged(String[] accountIds, long[] deltasMinorUnits, int count) {
+    }
+
+    @Override
+    public void accountsCleared() {
+    }
+  };
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void startupWithAndWithoutSnapshot() throws Exception {
+    for (String size : System.getProperty("benchmark.accounts", "1000000,10000000").split(",")) {
+      int accounts = Integer.parseInt(size.trim());
+      Path journalDirectory = directory.resolve("accounts-" + accounts);
+      writeHistory(journalDirectory, accounts, accounts * 2L);
+
+      long started = System.nanoTime();
+      JournaledAccountsRepository replayed = new JournaledAccountsRepository(journalDirectory, SEGMENT_SIZE, true);
+      long fullReplayMillis = (System.nanoTime() - started) / 1_000_000;
+      assertThat(replayed.compact()).isTrue();
+      replayed.close();
+      replayed = null;
+      System.gc();
+
+      started = System.nanoTime();
+      JournaledAccountsRepository fromSnapshot = new JournaledAccountsRepository(journalDirectory, SEGMENT_SIZE, true);
+      long snapshotMillis = (System.nanoTime() - started) / 1_000_000;
+      assertThat(fromSnapshot.getAccount("Id-0")).isNotNull();
+      fromSnapshot.close();
+      fromSnapshot = null;
+      System.gc();
+
+      log.info("accounts={} transfers={} fullReplayMs={} snapshotPlusTailMs={}",
+              accounts, accounts * 2L, fullReplayMillis, snapshotMillis);
+    }
+  }
+
+  private static void writeHistory(Path journalDirectory, int accounts, long transfers) throws Exception {
+    TransferJournal journal = new TransferJournal(journalDirectory, SEGMENT_SIZE, IGNORE);
+    for (int i = 0; i < accounts; i++) {
+      journal.appendAccountCreated("Id-" + i, 1_000_000, Account.DEFAULT_CURRENCY);
+    }
+    SplittableRandom random = new SplittableRandom(42);
+    String[] ids = new String[2];
+    long[] deltas = new long[2];
+    for (long i = 0; i < transfers; i++) {
+      ids[0] = "Id-" + random.nextInt(accounts);
+      ids[1] = "Id-" + random.nextInt(accounts);
+      long amount = 1 + random.nextInt(100);
+      deltas[0] = -amount;
+      deltas[1] = amount;
+      journal.appendBalanceChanges(ids, deltas, 2);
+    }
+    journal.close();
+  }
+}
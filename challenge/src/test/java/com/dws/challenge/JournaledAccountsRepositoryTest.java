@@ -0,0 +1,205 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.JournaledAccountsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JournaledAccountsRepositoryTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void replaysAccountsAndBalanceChanges() throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    repository.createAccount(new Account("Id-1", new BigDecimal("100.50")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("20")));
+    repository.awaitDurable(repository.recordBalanceChanges(new String[] {"Id-1", "Id-2"},
+            new long[] {-5025, 5025}, 2));
+    repository.close();
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("50.25");
+    assertThat(recovered.getAccount("Id-2").getBalance()).isEqualByComparingTo("70.25");
+    recovered.close();
+  }
+
+  @Test
+  void keepsCurrenciesAcrossReplayAndSnapshots() throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, SEGMENT_SIZE, false);
+    repository.createAccount(new Account("Id-1", new BigDecimal("10")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("20"), "USD"));
+    for (int i = 0; i < 500; i++) {
+      repository.recordBalanceChanges(new String[] {"Id-1", "Id-2"}, new long[] {-1, 1}, 2);
+    }
+    assertThat(repository.compact()).isTrue();
+    repository.createAccount(new Account("Id-3", new BigDecimal("30"), "GBP"));
+    repository.close();
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(recovered.getAccount("Id-1").getCurrency()).isEqualTo("EUR");
+    assertThat(recovered.getAccount("Id-2").getCurrency()).isEqualTo("USD");
+    assertThat(recovered.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(2500);
+    assertThat(recovered.getAccount("Id-3").getCurrency()).isEqualTo("GBP");
+    recovered.close();
+  }
+
+  @Test
+  void rollsSegmentsAndReplaysAcrossThem() throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, SEGMENT_SIZE, false);
+    repository.createAccount(new Account("Id-1", new BigDecimal("1000")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("0")));
+    for (int i = 0; i < 1000; i++) {
+      repository.recordBalanceChanges(new String[] {"Id-1", "Id-2"}, new long[] {-1, 1}, 2);
+    }
+    repository.close();
+    assertThat(segments()).hasSizeGreaterThan(1);
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(recovered.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(100_000 - 1000);
+    assertThat(recovered.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(1000);
+    recovered.close();
+  }
+
+  @Test
+  void discardsTornRecordAtTheTailAndKeepsAppending() throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    repository.createAccount(new Account("Id-1", new BigDecimal("10")));
+    repository.close();
+
+    // Simulate a crash in the middle of copying a record: a length header followed by garbage
+    Path segment = segments().get(0);
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+      ByteBuffer length = ByteBuffer.allocate(4);
+      int offset = 0;
+      while (true) {
+        length.clear();
+        channel.read(length, offset);
+        int recordLength = length.getInt(0);
+        if (recordLength == 0) {
+          break;
+        }
+        offset += 8 + recordLength;
+      }
+      ByteBuffer torn = ByteBuffer.allocate(16);
+      torn.putInt(40).putInt(12345).put("Id-1".getBytes(StandardCharsets.UTF_8)).flip();
+      channel.write(torn, offset);
+    }
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(recovered.getAccount("Id-1").getBalance()).isEqualByComparingTo("10");
+    recovered.createAccount(new Account("Id-2", new BigDecimal("5")));
+    recovered.close();
+
+    JournaledAccountsRepository again = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(again.getAccount("Id-2").getBalance()).isEqualByComparingTo("5");
+    again.close();
+  }
+
+  @Test
+  void recoversConsistentBalancesAfterProcessIsKilledMidWrite() throws Exception {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            JournalCrashWriter.class.getName(), directory.toString(), "false")
+            .redirectErrorStream(true)
+            .start();
+    try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(),
+            StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = output.readLine()) != null && !line.equals("ready")) {
+        // Skip log output until the accounts exist
+      }
+      assertThat(line).isEqualTo("ready");
+      Thread.sleep(500);
+      process.destroyForcibly();
+      assertThat(process.waitFor(30, TimeUnit.SECONDS)).isTrue();
+    }
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, 64 * 1024, true);
+    long total = 0;
+    for (int i = 0; i < JournalCrashWriter.ACCOUNTS; i++) {
+      long balance = recovered.getAccount("Id-" + i).getBalanceMinorUnits();
+      assertThat(balance).isNotNegative();
+      total += balance;
+    }
+    assertThat(total).isEqualTo(JournalCrashWriter.ACCOUNTS * JournalCrashWriter.INITIAL_BALANCE * 100L);
+    recovered.close();
+  }
+
+  @Test
+  void compactsSealedSegmentsIntoSnapshotAndReplaysOnlyTheTail() throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, SEGMENT_SIZE, false);
+    repository.createAccount(new Account("Id-1", new BigDecimal("1000")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("0")));
+    for (int i = 0; i < 1000; i++) {
+      repository.recordBalanceChanges(new String[] {"Id-1", "Id-2"}, new long[] {-1, 1}, 2);
+    }
+    int segmentsBefore = segments().size();
+    assertThat(repository.compact()).isTrue();
+    assertThat(segments()).hasSize(1).hasSizeLessThan(segmentsBefore);
+
+    // Appends after the snapshot land in the tail that recovery replays on top of it
+    for (int i = 0; i < 10; i++) {
+      repository.recordBalanceChanges(new String[] {"Id-1", "Id-2"}, new long[] {-1, 1}, 2);
+    }
+    repository.close();
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(recovered.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(100_000 - 1010);
+    assertThat(recovered.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(1010);
+    assertThat(recovered.compact()).isFalse();
+    recovered.close();
+  }
+
+  @Test
+  void compactsWhileTransfersKeepAppending() throws Exception {
+    JournaledAccountsRepository repository = new JournaledAccountsRepository(directory, SEGMENT_SIZE, false);
+    repository.createAccount(new Account("Id-1", new BigDecimal("100000")));
+    repository.createAccount(new Account("Id-2", new BigDecimal("0")));
+    Thread writer = new Thread(() -> {
+      for (int i = 0; i < 20_000; i++) {
+        repository.recordBalanceChanges(new String[] {"Id-1", "Id-2"}, new long[] {-1, 1}, 2);
+      }
+    });
+    writer.start();
+    while (writer.isAlive()) {
+      repository.compact();
+    }
+    writer.join();
+    repository.close();
+
+    JournaledAccountsRepository recovered = new JournaledAccountsRepository(directory, SEGMENT_SIZE, true);
+    assertThat(recovered.getAccount("Id-1").getBalanceMinorUnits()).isEqualTo(10_000_000 - 20_000);
+    assertThat(recovered.getAccount("Id-2").getBalanceMinorUnits()).isEqualTo(20_000);
+    recovered.close();
+  }
+
+  private List<Path> segments() throws Exception {
+    List<Path> segments = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+      stream.forEach(segments::add);
+    }
+    segments.sort(null);
+    return segments;
+  }
+}
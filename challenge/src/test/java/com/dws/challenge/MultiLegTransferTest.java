@@ -0,0 +1,149 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MultiLegTransferTest {
+
+  private static final int ACCOUNTS = 16;
+
+  private AccountsServiceImpl accountsService;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private TransferLedger ledger;
+
+  @BeforeEach
+  void setUp() {
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    ledger = new TransferLedger();
+    accountsService = new AccountsServiceImpl(new AccountsRepositoryInMemory(),
+            notificationDispatcher, new AccountLockManager(4), TransferMetrics.disabled(), ledger);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void transferMultiLeg_debitsTotalAndCreditsEveryLeg() {
+    accountsService.transferMultiLeg("Id-0", Arrays.asList(
+            new TransferLeg("Id-1", new BigDecimal("250.50")),
+            new TransferLeg("Id-2", new BigDecimal("0.50")),
+            new TransferLeg("Id-1", new BigDecimal("49"))));
+
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("700");
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1299.50");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1000.50");
+    assertThat(ledger.read("Id-0", null, 10).getTransactions()).hasSize(3);
+  }
+
+  @Test
+  void transferMultiLeg_insufficientTotalLeavesEveryAccountUntouched() {
+    // Each leg alone is covered, their sum is not
+    assertThatThrownBy(() -> accountsService.transferMultiLeg("Id-0", Arrays.asList(
+            new TransferLeg("Id-1", new BigDecimal("600")),
+            new TransferLeg("Id-2", new BigDecimal("400.01")))))
+            .isInstanceOf(InsufficientBalanceException.class);
+
+    assertUntouched("Id-0", "Id-1", "Id-2");
+  }
+
+  @Test
+  void transferMultiLeg_invalidLegRejectsWholeTransfer() {
+    assertThatThrownBy(() -> accountsService.transferMultiLeg("Id-0", Arrays.asList(
+            new TransferLeg("Id-1", BigDecimal.TEN),
+            new TransferLeg("Id-missing", BigDecimal.ONE))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Account not found: Id-missing");
+    assertThatThrownBy(() -> accountsService.transferMultiLeg("Id-0", Arrays.asList(
+            new TransferLeg("Id-1", BigDecimal.TEN),
+            new TransferLeg("Id-2", new BigDecimal("-1")))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Leg 1: Amount must be positive");
+    assertThatThrownBy(() -> accountsService.transferMultiLeg("Id-0", Collections.emptyList()))
+            .isInstanceOf(IllegalArgumentException.class);
+
+    assertUntouched("Id-0", "Id-1", "Id-2");
+    assertThat(ledger.read("Id-0", null, 10).getTransactions()).isEmpty();
+  }
+
+  @Test
+  void concurrentMultiLegAndSingleTransfers_conserveTotalBalance() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long seed = t;
+      futures.add(executor.submit(() -> {
+        Random random = new Random(seed);
+        start.await();
+        for (int i = 0; i < 5_000; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          List<TransferLeg> legs = new ArrayList<>();
+          for (int leg = 1 + random.nextInt(3); leg > 0; leg--) {
+            legs.add(new TransferLeg("Id-" + (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS,
+                    new BigDecimal(1 + random.nextInt(200))));
+          }
+          try {
+            accountsService.transferMultiLeg("Id-" + from, legs);
+          } catch (InsufficientBalanceException expected) {
+            // Rejected transfers must leave every balance untouched
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      BigDecimal balance = accountsService.getAccount("Id-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+  }
+
+  private void assertUntouched(String... accountIds) {
+    for (String accountId : accountIds) {
+      assertThat(accountsService.getAccount(accountId).getBalance()).isEqualByComparingTo("1000");
+    }
+  }
+}
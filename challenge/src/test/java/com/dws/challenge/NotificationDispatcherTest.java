@@ -0,0 +1,128 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import org.junit.jupiter.api.Test;
+
+class NotificationDispatcherTest {
+
+  @Test
+  void coalescesQueuedMessagesPerAccount() throws Exception {
+    NotificationService notificationService = mock(NotificationService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    // Hold the single worker on the first message so the next ones pile up in the queue
+    doAnswer(invocation -> {
+      release.await(5, TimeUnit.SECONDS);
+      return null;
+    }).when(notificationService).sendNotification(eq("Id-block"), anyString());
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notificationService, 16, 1, 16,
+            NotificationDispatcher.OverflowPolicy.BLOCK);
+    try {
+      dispatcher.enqueue("Id-block", "first");
+      verify(notificationService, timeout(1000)).sendNotification("Id-block", "first");
+
+      dispatcher.enqueue("Id-123", "one");
+      dispatcher.enqueue("Id-123", "two");
+      release.countDown();
+
+      verify(notificationService, timeout(1000)).sendNotification("Id-123", "one\ntwo");
+      assertThat(dispatcher.getEnqueuedCount()).isEqualTo(3);
+    } finally {
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  void dropsNewestWhenQueueIsFull() throws Exception {
+    NotificationService notificationService = mock(NotificationService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      release.await(5, TimeUnit.SECONDS);
+      return null;
+    }).when(notificationService).sendNotification(anyString(), anyString());
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notificationService, 2, 1, 1,
+            NotificationDispatcher.OverflowPolicy.DROP_NEWEST);
+    try {
+      dispatcher.enqueue("Id-block", "first");
+      verify(notificationService, timeout(1000)).sendNotification("Id-block", "first");
+
+      assertThat(dispatcher.enqueue("Id-1", "queued")).isTrue();
+      assertThat(dispatcher.enqueue("Id-2", "queued")).isTrue();
+      assertThat(dispatcher.enqueue("Id-3", "dropped")).isFalse();
+      assertThat(dispatcher.getQueueDepth()).isEqualTo(2);
+      assertThat(dispatcher.getDroppedCount()).isEqualTo(1);
+    } finally {
+      release.countDown();
+      dispatcher.shutdown();
+    }
+  }
+
+  @Test
+  void blockedEnqueueGivesUpOnShutdown() throws Exception {
+    NotificationService notificationService = mock(NotificationService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      release.await(5, TimeUnit.SECONDS);
+      return null;
+    }).when(notificationService).sendNotification(anyString(), anyString());
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notificationService, 1, 1, 1,
+            NotificationDispatcher.OverflowPolicy.BLOCK);
+    Thread stopper = new Thread(dispatcher::shutdown);
+    try {
+      dispatcher.enqueue("Id-block", "first");
+      verify(notificationService, timeout(1000)).sendNotification("Id-block", "first");
+      assertThat(dispatcher.enqueue("Id-1", "queued")).isTrue();
+
+      CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> dispatcher.enqueue("Id-2", "blocked"));
+      stopper.start();
+
+      // The caller is let go while the worker is still stuck, instead of waiting for space forever
+      assertThat(blocked.get(1, TimeUnit.SECONDS)).isFalse();
+      assertThat(dispatcher.getDroppedCount()).isEqualTo(1);
+    } finally {
+      release.countDown();
+      stopper.join();
+    }
+  }
+
+  @Test
+  void rendersTransferNotificationsForBothAccountHolders() throws Exception {
+    NotificationService notificationService = mock(NotificationService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      release.await(5, TimeUnit.SECONDS);
+      return null;
+    }).when(notificationService).sendNotification(eq("Id-block"), anyString());
+    NotificationDispatcher dispatcher = new NotificationDispatcher(notificationService, 16, 1, 16,
+            NotificationDispatcher.OverflowPolicy.BLOCK);
+    try {
+      dispatcher.enqueue("Id-block", "first");
+      verify(notificationService, timeout(1000)).sendNotification("Id-block", "first");
+
+      dispatcher.enqueueTransfer("Id-1", "Id-2", 12_345, "EUR", 13_580, "USD");
+      dispatcher.enqueueTransfer("Id-2", "Id-1", 5, "USD", 4, "EUR");
+      release.countDown();
+
+      // Each holder is told the amount that moved on their own account
+      verify(notificationService, timeout(1000)).sendNotification("Id-1",
+              "Transferred 123.45 EUR to account Id-2\nReceived 0.04 EUR from account Id-2");
+      verify(notificationService, timeout(1000)).sendNotification("Id-2",
+              "Received 135.80 USD from account Id-1\nTransferred 0.05 USD to account Id-1");
+      assertThat(dispatcher.getEnqueuedCount()).isEqualTo(5);
+    } finally {
+      dispatcher.shutdown();
+    }
+  }
+}
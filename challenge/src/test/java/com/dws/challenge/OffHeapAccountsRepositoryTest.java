@@ -0,0 +1,224 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountSnapshot;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.UnsupportedTransferException;
+import com.dws.challenge.repository.OffHeapAccountsRepository;
+import com.dws.challenge.repository.RejectedAccount;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OffHeapAccountsRepositoryTest {
+
+  private static final int ACCOUNTS = 64;
+
+  private OffHeapAccountsRepository repository;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private AccountsServiceImpl accountsService;
+
+  @BeforeEach
+  void setUp() {
+    // Starts far too small so the tests also cover growing the table
+    repository = new OffHeapAccountsRepository(4, 16);
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    accountsService = new AccountsServiceImpl(repository, notificationDispatcher, new AccountLockManager(4),
+            TransferMetrics.disabled(), new TransferLedger());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void storesAccountsAcrossGrowthAndRejectsDuplicates() {
+    assertThat(repository.getSize()).isEqualTo(ACCOUNTS);
+    for (int i = 0; i < ACCOUNTS; i++) {
+      assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("1000");
+    }
+    assertThat(repository.getAccount("Id-missing")).isNull();
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-3", BigDecimal.ONE)))
+            .isInstanceOf(DuplicateAccountIdException.class);
+
+    List<RejectedAccount> duplicates = repository.createAccounts(Arrays.asList(
+            new Account("Id-new", new BigDecimal("12.34")), new Account("Id-5", BigDecimal.ONE)));
+    assertThat(duplicates).extracting(RejectedAccount::getReason).containsExactly("Account id Id-5 already exists!");
+    assertThat(repository.getAccount("Id-new").getBalance()).isEqualByComparingTo("12.34");
+    assertThat(repository.getAccount("Id-5").getBalance()).isEqualByComparingTo("1000");
+
+    repository.createAccount(new Account("Kontö-1", BigDecimal.TEN));
+    assertThat(repository.getAccount("Kontö-1").getBalance()).isEqualByComparingTo("10");
+    assertThat(repository.getAccount("Konto-1")).isNull();
+  }
+
+  @Test
+  void clearEmptiesTheTable() {
+    repository.clearAccounts();
+
+    assertThat(repository.getSize()).isZero();
+    assertThat(repository.getAccount("Id-0")).isNull();
+    repository.createAccount(new Account("Id-0", BigDecimal.ONE));
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  void rejectsIdsLongerThanASlotHolds() {
+    assertThatThrownBy(() -> repository.createAccount(new Account("Id-0123456789abcdef", BigDecimal.ONE)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Account id Id-0123456789abcdef is longer than 16 bytes");
+
+    // In a bulk create it only skips that account, as a duplicate would
+    List<RejectedAccount> rejected = repository.createAccounts(Arrays.asList(
+            new Account("Id-0123456789abcdef", BigDecimal.ONE), new Account("Id-short", BigDecimal.ONE)));
+    assertThat(rejected).extracting(RejectedAccount::getReason)
+            .containsExactly("Account id Id-0123456789abcdef is longer than 16 bytes");
+    assertThat(repository.getAccount("Id-short").getBalance()).isEqualByComparingTo("1");
+  }
+
+  @Test
+  void accountsHandedOutAreDetachedCopies() {
+    Account copy = repository.getAccount("Id-0");
+    copy.setBalance(BigDecimal.ZERO);
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualByComparingTo("1000");
+
+    accountsService.transfer("Id-0", "Id-1", new BigDecimal("0.01"));
+    assertThat(repository.getAccount("Id-0").snapshot().getVersion()).isEqualTo(1);
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000.01");
+  }
+
+  @Test
+  void storesCurrencyAndRefusesTransfersBetweenCurrencies() {
+    repository.createAccount(new Account("Id-USD", BigDecimal.TEN, "USD"));
+    assertThat(repository.getAccount("Id-USD").getCurrency()).isEqualTo("USD");
+    assertThat(repository.getAccount("Id-0").getCurrency()).isEqualTo("EUR");
+
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-USD", BigDecimal.ONE))
+            .isInstanceOf(UnsupportedTransferException.class)
+            .hasMessage("Cross-currency transfers are not supported by this repository");
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  void conditionalUpdatesApplyOnlyAtTheExpectedVersion() {
+    accountsService.transfer("Id-0", "Id-1", new BigDecimal("0.01"));
+
+    assertThat(repository.compareAndUpdate("Id-0", 0, 500)).isNull();
+    AccountSnapshot previous = repository.compareAndUpdate("Id-0", 1, 500);
+    assertThat(previous.getBalanceMinorUnits()).isEqualTo(99_999);
+    assertThat(repository.getAccount("Id-0").snapshot())
+            .isEqualTo(new AccountSnapshot("Id-0", 500, 2, previous.getCurrency()));
+    assertThat(repository.compareAndUpdate("Id-0", 1, 0)).isNull();
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-1", 1, 2))
+            .isInstanceOf(UnsupportedTransferException.class)
+            .hasMessage("Conditional transfers are not supported by this repository");
+  }
+
+  @Test
+  void transferRejectsInsufficientBalanceAndUnknownAccounts() {
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-1", new BigDecimal("1000.01")))
+            .isInstanceOf(InsufficientBalanceException.class);
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-missing", BigDecimal.ONE))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Account not found: Id-missing");
+
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  void multiLegTransferDebitsOnceAndCreditsEveryLeg() {
+    List<TransferLeg> legs = new ArrayList<>();
+    for (int i = 1; i < 9; i++) {
+      legs.add(new TransferLeg("Id-" + i, new BigDecimal("100")));
+    }
+    accountsService.transferMultiLeg("Id-0", legs);
+    assertThatThrownBy(() -> accountsService.transferMultiLeg("Id-0", legs))
+            .isInstanceOf(InsufficientBalanceException.class);
+
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("200");
+    for (int i = 1; i < 9; i++) {
+      assertThat(accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("1100");
+    }
+  }
+
+  @Test
+  void concurrentTransfersWhileAccountsAreAdded_conserveTotalBalance() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long seed = t;
+      futures.add(executor.submit(() -> {
+        Random random = new Random(seed);
+        start.await();
+        for (int i = 0; i < 5_000; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = random.nextInt(ACCOUNTS);
+          if (from == to) {
+            continue;
+          }
+          try {
+            accountsService.transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50)));
+          } catch (InsufficientBalanceException expected) {
+            // Rejected transfers must leave both balances untouched
+          }
+        }
+        return null;
+      }));
+    }
+    // Forces the table to grow several times underneath the transfers
+    futures.add(executor.submit(() -> {
+      start.await();
+      for (int i = 0; i < 20_000; i++) {
+        repository.createAccount(new Account("Extra-" + i, BigDecimal.ZERO));
+      }
+      return null;
+    }));
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      BigDecimal balance = accountsService.getAccount("Id-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+    assertThat(repository.getSize()).isEqualTo(ACCOUNTS + 20_000);
+    assertThat(repository.getAccount("Extra-19999")).isNotNull();
+  }
+}
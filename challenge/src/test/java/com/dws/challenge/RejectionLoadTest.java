@@ -0,0 +1,128 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Transfer throughput over HTTP when most requests are rejected: unknown accounts, empty source
+ * accounts and invalid amounts, mixed with a share of transfers that succeed. Opt-in:
+ * {@code mvn test -Dtest=RejectionLoadTest -Dbenchmarks=true}, with
+ * {@code -Dbenchmark.rejected-percent=90} to change the mix.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class RejectionLoadTest {
+
+  private static final int ACCOUNTS = 1000;
+
+  private static final int CLIENTS = 32;
+
+  private static final Duration WARMUP = Duration.ofSeconds(5);
+
+  private static final Duration RUN = Duration.ofSeconds(10);
+
+  @Test
+  void throughputUnderRejections() throws Exception {
+    int rejectedPercent = Integer.getInteger("benchmark.rejected-percent", 90);
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+            .properties("server.port=0", "logging.level.com.dws.challenge=WARN",
+                    "logging.level." + RejectionLoadTest.class.getName() + "=INFO")
+            .run();
+    try {
+      int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+      String base = "http://localhost:" + port + "/v1/accounts";
+      HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+              .executor(Executors.newCachedThreadPool()).build();
+      for (int i = 0; i < ACCOUNTS; i++) {
+        // Odd accounts are empty, so any transfer from them is rejected
+        HttpResponse<String> created = client.send(HttpRequest.newBuilder(URI.create(base))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"accountId\":\"Id-load-" + i + "\",\"balance\":"
+                        + (i % 2 == 0 ? "1000000000" : "0") + "}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(created.statusCode()).isEqualTo(201);
+      }
+      run(client, base, rejectedPercent, WARMUP);
+      log.info(run(client, base, rejectedPercent, RUN));
+    } finally {
+      context.close();
+    }
+  }
+
+  private static String run(HttpClient client, String base, int rejectedPercent, Duration duration) throws Exception {
+    Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    Recorder latencies = new Recorder(3);
+    long deadline = System.nanoTime() + duration.toNanos();
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < CLIENTS; t++) {
+      long seed = t;
+      futures.add(clients.submit(() -> {
+        SplittableRandom random = new SplittableRandom(seed);
+        while (System.nanoTime() < deadline) {
+          int from = random.nextInt(ACCOUNTS / 2) * 2;
+          int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+          String toAccountId = "Id-load-" + to;
+          String amount = "0.01";
+          if (random.nextInt(100) < rejectedPercent) {
+            switch (random.nextInt(3)) {
+              case 0:
+                toAccountId = "Id-missing-" + to;
+                break;
+              case 1:
+                from = from + 1;
+                to = to == from ? from - 1 : to;
+                break;
+              default:
+                amount = "-1";
+                break;
+            }
+          }
+          long started = System.nanoTime();
+          HttpResponse<Void> response = client.send(HttpRequest.newBuilder(URI.create(base
+                  + "/transfer?fromAccountId=Id-load-" + from + "&toAccountId=" + toAccountId + "&amount=" + amount))
+                  .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+          latencies.recordValue((System.nanoTime() - started) / 1000);
+          statuses.computeIfAbsent(response.statusCode(), status -> new LongAdder()).increment();
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    clients.shutdown();
+
+    Histogram histogram = latencies.getIntervalHistogram();
+    Map<Integer, Long> byStatus = new TreeMap<>();
+    statuses.forEach((status, count) -> byStatus.put(status, count.sum()));
+    return String.format("rejected=%d%% requests/s=%d statuses=%s p50=%dus p99=%dus max=%dus", rejectedPercent,
+            histogram.getTotalCount() / duration.getSeconds(), byStatus, histogram.getValueAtPercentile(50),
+            histogram.getValueAtPercentile(99), histogram.getMaxValue());
+  }
+}
@@ -0,0 +1,209 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.TransferLeg;
+import com.dws.challenge.domain.TransferRequest;
+import com.dws.challenge.domain.TransferResult;
+import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.repository.ShardedAccountsRepository;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ShardedAccountsRepositoryTest {
+
+  private static final int ACCOUNTS = 64;
+
+  private ShardedAccountsRepository repository;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private AccountsServiceImpl accountsService;
+
+  @BeforeEach
+  void setUp() {
+    repository = new ShardedAccountsRepository(4);
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    accountsService = new AccountsServiceImpl(repository, notificationDispatcher, new AccountLockManager(4),
+            TransferMetrics.disabled(), new TransferLedger());
+    for (int i = 0; i < ACCOUNTS; i++) {
+      accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    repository.close();
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void accountsSpreadEvenlyAndMoveLittleWhenShardsAreAdded() {
+    ShardedAccountsRepository grown = new ShardedAccountsRepository(5);
+    int[] perShard = new int[4];
+    int moved = 0;
+    int keys = 100_000;
+    for (int i = 0; i < keys; i++) {
+      String accountId = "Id-" + i;
+      perShard[repository.shardOf(accountId)]++;
+      if (grown.shardOf(accountId) != repository.shardOf(accountId)) {
+        assertThat(grown.shardOf(accountId)).isEqualTo(4);
+        moved++;
+      }
+    }
+    grown.close();
+
+    for (int count : perShard) {
+      assertThat(count).isBetween(keys / 4 * 8 / 10, keys / 4 * 12 / 10);
+    }
+    assertThat(moved).isBetween(keys / 5 * 7 / 10, keys / 5 * 13 / 10);
+  }
+
+  @Test
+  void concurrentCrossShardTransfers_conserveTotalBalance() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long seed = t;
+      futures.add(executor.submit(() -> {
+        Random random = new Random(seed);
+        start.await();
+        for (int i = 0; i < 5_000; i++) {
+          int from = random.nextInt(ACCOUNTS);
+          int to = random.nextInt(ACCOUNTS);
+          if (from == to) {
+            continue;
+          }
+          try {
+            accountsService.transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50)));
+          } catch (InsufficientBalanceException expected) {
+            // Rejected transfers must leave both balances untouched
+          }
+        }
+        return null;
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < ACCOUNTS; i++) {
+      BigDecimal balance = accountsService.getAccount("Id-" + i).getBalance();
+      assertThat(balance).isGreaterThanOrEqualTo(BigDecimal.ZERO);
+      total = total.add(balance);
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+  }
+
+  @Test
+  void transferRejectsInsufficientBalanceAndUnknownAccounts() {
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-1", new BigDecimal("1000.01")))
+            .isInstanceOf(InsufficientBalanceException.class);
+    assertThatThrownBy(() -> accountsService.transfer("Id-0", "Id-missing", BigDecimal.ONE))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Account not found: Id-missing");
+
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  void failedChangeFailsItsCallerInsteadOfHanging() {
+    repository.createAccount(new Account("Id-failing", new BigDecimal(1000)) {
+      @Override
+      public boolean tryDebit(long amountMinorUnits) {
+        throw new IllegalStateException("Debit failed");
+      }
+    });
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThatThrownBy(
+            () -> repository.transfer("Id-failing", "Id-1", 100)).isInstanceOf(IllegalStateException.class)
+            .hasMessage("Debit failed"));
+    // The owner carries on with the next change
+    assertThat(repository.transfer("Id-0", "Id-1", 100)).isTrue();
+  }
+
+  @Test
+  void failedCreditGivesItsDebitBack() {
+    String failingId = "Id-failing";
+    for (int i = 0; repository.shardOf(failingId) == repository.shardOf("Id-0"); i++) {
+      failingId = "Id-failing-" + i;
+    }
+    String accountToId = failingId;
+    repository.createAccount(new Account(accountToId, BigDecimal.ZERO) {
+      @Override
+      public void credit(long amountMinorUnits) {
+        throw new AssertionError("Credit failed");
+      }
+    });
+
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThatThrownBy(
+            () -> repository.transfer("Id-0", accountToId, 100)).isInstanceOf(AssertionError.class)
+            .hasMessage("Credit failed"));
+    assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThatThrownBy(
+            () -> repository.transfer("Id-0", new String[] {"Id-1", accountToId}, new long[] {100, 200}))
+            .isInstanceOf(AssertionError.class));
+
+    // Only the leg that was credited stays moved
+    assertThat(repository.getAccount("Id-0").getBalance()).isEqualByComparingTo("999");
+    assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("1001");
+  }
+
+  @Test
+  void transferBatchAppliesItemsInOrderAcrossShards() {
+    List<TransferResult> results = accountsService.transferBatch(Arrays.asList(
+            new TransferRequest("Id-0", "Id-1", new BigDecimal("600")),
+            new TransferRequest("Id-0", "Id-2", new BigDecimal("600")),
+            new TransferRequest("Id-1", "Id-missing", BigDecimal.ONE)));
+
+    assertThat(results).extracting(TransferResult::getStatus).containsExactly(TransferResult.Status.SUCCEEDED,
+            TransferResult.Status.REJECTED, TransferResult.Status.REJECTED);
+    assertThat(results.get(1).getMessage()).isEqualTo("Insufficient balance");
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("400");
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1600");
+  }
+
+  @Test
+  void multiLegTransferCreditsLegsOnEveryShard() {
+    List<TransferLeg> legs = new ArrayList<>();
+    for (int i = 1; i < 9; i++) {
+      legs.add(new TransferLeg("Id-" + i, new BigDecimal("100")));
+    }
+    accountsService.transferMultiLeg("Id-0", legs);
+    assertThatThrownBy(() -> accountsService.transferMultiLeg("Id-0", legs))
+            .isInstanceOf(InsufficientBalanceException.class);
+
+    assertThat(accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("200");
+    for (int i = 1; i < 9; i++) {
+      assertThat(accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("1100");
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.dws.challenge.domain.Transaction;
+import com.dws.challenge.domain.TransactionPage;
+import com.dws.challenge.service.TransferLedger;
+import org.junit.jupiter.api.Test;
+
+class TransferLedgerTest {
+
+  @Test
+  void readsEntriesOfOneAccountNewestFirstWithSignedAmounts() {
+    TransferLedger ledger = new TransferLedger();
+    ledger.append("Id-1", "Id-2", 150);
+    ledger.append("Id-3", "Id-4", 999);
+    ledger.append("Id-2", "Id-1", 25);
+
+    TransactionPage page = ledger.read("Id-1", null, 10);
+
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(page.getTransactions()).extracting(Transaction::getId).containsExactly(2L, 0L);
+    assertThat(page.getTransactions()).extracting(Transaction::getCounterpartyAccountId)
+            .containsExactly("Id-2", "Id-2");
+    assertThat(page.getTransactions().get(0).getAmount()).isEqualByComparingTo("0.25");
+    assertThat(page.getTransactions().get(1).getAmount()).isEqualByComparingTo("-1.50");
+    assertThat(ledger.read("Id-unknown", null, 10).getTransactions()).isEmpty();
+    // Entry 1 belongs to other accounts, so it cannot continue the statement of Id-1
+    assertThatThrownBy(() -> ledger.read("Id-1", 1L, 10)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void cursorWalksEveryEntryOnceAcrossChunks() {
+    TransferLedger ledger = new TransferLedger();
+    // Interleave another account so the hot account's positions are not contiguous
+    for (int i = 0; i < 10_000; i++) {
+      ledger.append("Id-hot", "Id-" + (i % 7), i);
+      ledger.append("Id-a", "Id-b", 1);
+    }
+
+    List<Long> ids = new ArrayList<>();
+    Long cursor = null;
+    do {
+      TransactionPage page = ledger.read("Id-hot", cursor, 333);
+      page.getTransactions().forEach(transaction -> ids.add(transaction.getId()));
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    assertThat(ids).hasSize(10_000).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    assertThat(ids.get(0)).isEqualTo(19_998L);
+    assertThat(ids.get(9_999)).isZero();
+  }
+
+  @Test
+  void keepsOnlyTheNewestChunksOnceFull() {
+    TransferLedger ledger = new TransferLedger(8192);
+    for (int i = 0; i < 20_000; i++) {
+      ledger.append("Id-1", "Id-2", 1);
+    }
+
+    List<Long> ids = new ArrayList<>();
+    Long cursor = null;
+    do {
+      TransactionPage page = ledger.read("Id-1", cursor, 1000);
+      page.getTransactions().forEach(transaction -> ids.add(transaction.getId()));
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    // Two full chunks of 4096 retained besides the one being filled
+    assertThat(ids).hasSize(20_000 - 2 * 4096).startsWith(19_999L).endsWith(8192L);
+    assertThat(ledger.read("Id-1", 100L, 10).getTransactions()).isEmpty();
+  }
+
+  @Test
+  void concurrentAppendsChainEveryEntryOnce() throws Exception {
+    TransferLedger ledger = new TransferLedger();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String own = "Id-" + t;
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          ledger.append(own, "Id-shared", 1);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get(1, TimeUnit.MINUTES);
+    }
+    executor.shutdown();
+
+    Set<Long> ids = new HashSet<>();
+    Long cursor = null;
+    do {
+      TransactionPage page = ledger.read("Id-shared", cursor, 1000);
+      page.getTransactions().forEach(transaction -> ids.add(transaction.getId()));
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    assertThat(ids).hasSize(40_000);
+    assertThat(ledger.read("Id-0", null, 20_000).getTransactions()).hasSize(10_000);
+  }
+}
@@ -0,0 +1,140 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.dws.challenge.web.TransferOffloadFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class TransferOffloadFilterTest {
+
+  @Test
+  void runsChainOnExecutorAndCompletesRequest() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "offload"));
+    AtomicReference<String> thread = new AtomicReference<>();
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/accounts/transfer");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new TransferOffloadFilter(executor, 1000).doFilter(request, response,
+            new MockFilterChain(new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse res) {
+                thread.set(Thread.currentThread().getName());
+              }
+            }));
+    executor.shutdown();
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(thread.get()).isEqualTo("offload");
+    assertThat(request.isAsyncStarted()).isFalse();
+    assertThat(response.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  void shedsRequestsWhenExecutorIsSaturated() throws Exception {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+    executor.execute(() -> {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/accounts/transfer");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new TransferOffloadFilter(executor, 1000).doFilter(request, response, new MockFilterChain());
+    executor.shutdownNow();
+
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+  }
+
+  @Test
+  void answersTimedOutRequestsWithServiceUnavailable() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    CountDownLatch release = new CountDownLatch(1);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/accounts/transfer");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    new TransferOffloadFilter(executor, 1000).doFilter(request, response,
+            new MockFilterChain(new HttpServlet() {
+              @Override
+              protected void service(HttpServletRequest req, HttpServletResponse res) throws IOException {
+                try {
+                  release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                res.getWriter().write("late");
+              }
+            }));
+    MockAsyncContext async = (MockAsyncContext) request.getAsyncContext();
+    AtomicInteger completions = new AtomicInteger();
+    async.addListener(new AsyncListener() {
+      @Override
+      public void onComplete(AsyncEvent event) {
+        completions.incrementAndGet();
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) {
+      }
+
+      @Override
+      public void onError(AsyncEvent event) {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+    // What the container does once the async timeout passes
+    for (AsyncListener listener : async.getListeners()) {
+      listener.onTimeout(new AsyncEvent(async));
+    }
+    release.countDown();
+    executor.shutdown();
+    assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+    assertThat(completions.get()).isEqualTo(1);
+  }
+
+  @Test
+  void leavesReadsOnTheCallingThread() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/accounts/Id-1");
+    request.setAsyncSupported(true);
+    MockFilterChain chain = new MockFilterChain();
+
+    new TransferOffloadFilter(executor, 1000).doFilter(request, new MockHttpServletResponse(), chain);
+    executor.shutdown();
+
+    assertThat(request.isAsyncStarted()).isFalse();
+    assertThat(chain.getRequest()).isSameAs(request);
+  }
+}
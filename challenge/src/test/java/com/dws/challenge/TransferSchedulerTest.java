@@ -0,0 +1,221 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.ScheduledTransfer;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.journal.ScheduledTransferLog;
+import com.dws.challenge.service.AccountLockManager;
+import com.dws.challenge.service.AccountsServiceImpl;
+import com.dws.challenge.service.HotAccountDetector;
+import com.dws.challenge.service.NotificationDispatcher;
+import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.service.TimingWheel;
+import com.dws.challenge.service.TransferLedger;
+import com.dws.challenge.service.TransferMetrics;
+import com.dws.challenge.service.TransferRateLimiter;
+import com.dws.challenge.service.TransferScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransferSchedulerTest {
+
+  private static final Duration TICK = Duration.ofMillis(10);
+
+  @TempDir
+  Path directory;
+
+  private NotificationDispatcher notificationDispatcher;
+
+  private AccountsServiceImpl accountsService;
+
+  private TransferScheduler scheduler;
+
+  @BeforeEach
+  void setUp() {
+    notificationDispatcher = new NotificationDispatcher(mock(NotificationService.class), 1024, 1, 64,
+            NotificationDispatcher.OverflowPolicy.DROP_OLDEST);
+    accountsService = new AccountsServiceImpl(new AccountsRepositoryInMemory(), notificationDispatcher,
+            new AccountLockManager(64), TransferMetrics.disabled(), new TransferLedger(),
+            HotAccountDetector.disabled(), TransferRateLimiter.disabled());
+    accountsService.createAccount(new Account("Id-1", new BigDecimal("1000")));
+    accountsService.createAccount(new Account("Id-2", BigDecimal.ZERO));
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  void wheelReleasesEveryValueAtItsTickAcrossLevels() {
+    long start = 1_000_000;
+    TimingWheel<Long> wheel = new TimingWheel<>(10, 4, start);
+    Random random = new Random(42);
+    Map<Long, Long> deadlines = new HashMap<>();
+    for (long i = 0; i < 20_000; i++) {
+      // From the next tick to well into the third level
+      long deadline = start + 1 + (long) (Math.pow(random.nextDouble(), 3) * 10 * 64 * 64 * 64);
+      deadlines.put(i, deadline);
+      wheel.add(i, deadline);
+    }
+    long now = start;
+    List<Long> due = new ArrayList<>();
+    while (wheel.getSize() > 0) {
+      now += 1 + random.nextInt(500);
+      due.clear();
+      wheel.advance(now, due);
+      long previousTick = -1;
+      for (long value : due) {
+        long deadline = deadlines.remove(value);
+        assertThat(deadline).isLessThanOrEqualTo(now);
+        // Not held back: it would have come due at an earlier advance otherwise
+        assertThat(deadline).isGreaterThan(now - 500 - 10);
+        long tick = Math.floorDiv(deadline + 9, 10);
+        assertThat(tick).isGreaterThanOrEqualTo(previousTick);
+        previousTick = tick;
+      }
+    }
+    assertThat(deadlines).isEmpty();
+
+    // A deadline already passed comes due on the next tick
+    wheel.add(-1L, now - 1_000);
+    due.clear();
+    wheel.advance(now + 10, due);
+    assertThat(due).containsExactly(-1L);
+    assertThatThrownBy(() -> wheel.add(0L, Long.MAX_VALUE / 2)).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void dueTransfersRunAndCancelledOnesDoNot() throws Exception {
+    scheduler = new TransferScheduler(accountsService, (Path) null, TICK, Duration.ZERO, 2, 1);
+    Instant soon = Instant.now().plusMillis(50);
+    ScheduledTransfer first = scheduler.schedule("Id-1", "Id-2", new BigDecimal("10"), soon);
+    ScheduledTransfer cancelled = scheduler.schedule("Id-1", "Id-2", new BigDecimal("20"), soon);
+    scheduler.schedule("Id-1", "Id-2", new BigDecimal("30"), soon);
+    scheduler.schedule("Id-2", "Id-1", new BigDecimal("5000"), soon);
+    assertThat(scheduler.getScheduledTransfer(first.getId())).isEqualTo(first);
+    assertThat(scheduler.cancel(cancelled.getId())).isTrue();
+    assertThat(scheduler.cancel(cancelled.getId())).isFalse();
+
+    awaitSettled(3);
+    assertThat(scheduler.getSucceededCount()).isEqualTo(2);
+    assertThat(scheduler.getFailedCount()).isEqualTo(1);
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("40");
+    assertThat(scheduler.getScheduledTransfer(first.getId())).isNull();
+
+    assertThatThrownBy(() -> scheduler.schedule("Id-1", "Id-x", BigDecimal.ONE, soon))
+            .isInstanceOf(AccountNotFoundException.class);
+    assertThatThrownBy(() -> scheduler.schedule("Id-1", "Id-1", BigDecimal.ONE, soon))
+            .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void jitterOnlyDelays() throws Exception {
+    scheduler = new TransferScheduler(accountsService, (Path) null, TICK, Duration.ofMinutes(10), 512, 1);
+    Instant at = Instant.now().plus(Duration.ofHours(1));
+    long spread = 0;
+    for (int i = 0; i < 100; i++) {
+      ScheduledTransfer transfer = scheduler.schedule("Id-1", "Id-2", BigDecimal.ONE, at);
+      assertThat(transfer.getExecuteAt()).isBetween(at, at.plus(Duration.ofMinutes(10)));
+      spread = Math.max(spread, transfer.getExecuteAtMillis() - at.toEpochMilli());
+    }
+    assertThat(spread).isGreaterThan(0);
+  }
+
+  @Test
+  void pendingTransfersSurviveRestartAndLogIsCompacted() throws Exception {
+    scheduler = new TransferScheduler(accountsService, directory, TICK, Duration.ZERO, 512, 2);
+    ScheduledTransfer later = scheduler.schedule("Id-1", "Id-2", new BigDecimal("7"),
+            Instant.now().plus(Duration.ofDays(30)));
+    Instant now = Instant.now();
+    for (int i = 0; i < 1500; i++) {
+      scheduler.schedule("Id-1", "Id-2", new BigDecimal("0.01"), now);
+    }
+    awaitSettled(1500);
+    scheduler.shutdown();
+    // Compacted on the way, or the records of the 1501 schedulings alone, 45 bytes each, would be there
+    assertThat(Files.size(directory.resolve("scheduled-transfers.log"))).isLessThan(1501 * 45);
+
+    scheduler = new TransferScheduler(accountsService, directory, TICK, Duration.ZERO, 512, 1);
+    assertThat(scheduler.getPendingCount()).isEqualTo(1);
+    assertThat(scheduler.getScheduledTransfer(later.getId())).isEqualTo(later);
+    ScheduledTransfer next = scheduler.schedule("Id-1", "Id-2", BigDecimal.ONE, Instant.now());
+    // Ids of transfers that ran before the restart and were compacted away are not handed out again
+    assertThat(next.getId()).isEqualTo(1501);
+    awaitSettled(1);
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("16");
+  }
+
+  @Test
+  void transfersRunningAtACrashAreReportedInDoubtAndNotRunAgain() throws Exception {
+    long now = System.currentTimeMillis();
+    ScheduledTransfer running = new ScheduledTransfer(0, "Id-1", "Id-2", 500, now);
+    ScheduledTransfer waiting = new ScheduledTransfer(1, "Id-1", "Id-2", 700, now);
+    try (ScheduledTransferLog transferLog = new ScheduledTransferLog(directory)) {
+      transferLog.appendScheduled(running);
+      transferLog.appendScheduled(waiting);
+      // Claimed, then the process died before it was marked done: it may have settled or not
+      transferLog.appendClaimed(new long[] {running.getId()}, 1);
+    }
+
+    scheduler = new TransferScheduler(accountsService, directory, TICK, Duration.ZERO, 512, 1);
+    assertThat(scheduler.getInDoubtTransfers()).containsExactly(running);
+    awaitSettled(1);
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("7");
+    scheduler.shutdown();
+
+    // Reported once: neither pending nor in doubt after the next restart
+    scheduler = new TransferScheduler(accountsService, directory, TICK, Duration.ZERO, 512, 1);
+    assertThat(scheduler.getInDoubtTransfers()).isEmpty();
+    assertThat(scheduler.getPendingCount()).isZero();
+  }
+
+  @Test
+  void compactionKeepsTheClaimsOfExecutingTransfers() throws Exception {
+    ScheduledTransfer executing = new ScheduledTransfer(3, "Id-1", "Id-2", 500, 0);
+    ScheduledTransfer pending = new ScheduledTransfer(4, "Id-1", "Id-2", 700, 0);
+    try (ScheduledTransferLog transferLog = new ScheduledTransferLog(directory)) {
+      transferLog.appendScheduled(executing);
+      transferLog.appendScheduled(pending);
+      transferLog.appendClaimed(new long[] {executing.getId()}, 1);
+      transferLog.compact(Collections.singletonList(pending), Collections.singletonList(executing));
+    }
+
+    try (ScheduledTransferLog transferLog = new ScheduledTransferLog(directory)) {
+      assertThat(transferLog.getPending()).containsExactly(pending);
+      assertThat(transferLog.getInDoubt()).containsExactly(executing);
+      assertThat(transferLog.getNextId()).isEqualTo(5);
+    }
+  }
+
+  private void awaitSettled(long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (scheduler.getSucceededCount() + scheduler.getFailedCount() < count
+            && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(scheduler.getSucceededCount() + scheduler.getFailedCount()).isEqualTo(count);
+  }
+}
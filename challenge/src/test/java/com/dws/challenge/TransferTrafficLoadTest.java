@@ -0,0 +1,238 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsServiceImpl;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Replays transfer traffic against the REST API of an in-process server at a fixed arrival rate:
+ * balance reads on {@code GET /v1/accounts/{id}} and transfers on
+ * {@code POST /v1/accounts/transfer}, accounts drawn from a Zipf distribution. Requests are sent
+ * on schedule whether or not earlier ones have completed, and latency is measured from when a
+ * request was due rather than when it went out, so a stalled server shows up as latency instead
+ * of a lower request rate (no coordinated omission). Opt-in:
+ * {@code mvn test -Dtest=TransferTrafficLoadTest -Dbenchmarks=true}, tuned with
+ * <ul>
+ *   <li>{@code -Dbenchmark.rate=2000} requests per second</li>
+ *   <li>{@code -Dbenchmark.read-percent=80} share of balance reads</li>
+ *   <li>{@code -Dbenchmark.skew=1.0} Zipf exponent of account popularity, 0 for uniform</li>
+ *   <li>{@code -Dbenchmark.accounts=10000} and {@code -Dbenchmark.seconds=20}</li>
+ *   <li>{@code -Dbenchmark.repository=memory} or any other {@code challenge.repository.type}</li>
+ * </ul>
+ * With {@code -Dbenchmark.max-p99-ms} or {@code -Dbenchmark.min-throughput} set the run fails when
+ * the server does worse, so a capacity regression breaks the build that runs it.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+@Slf4j
+class TransferTrafficLoadTest {
+
+  private static final Duration WARMUP = Duration.ofSeconds(5);
+
+  // Requests still waiting for a response beyond this are counted as dropped instead of sent
+  private static final int MAX_IN_FLIGHT = 4096;
+
+  @Test
+  void replayTransferTraffic() throws Exception {
+    int rate = Integer.getInteger("benchmark.rate", 2000);
+    int readPercent = Integer.getInteger("benchmark.read-percent", 80);
+    double skew = Double.parseDouble(System.getProperty("benchmark.skew", "1.0"));
+    int accounts = Integer.getInteger("benchmark.accounts", 10_000);
+    Duration run = Duration.ofSeconds(Integer.getInteger("benchmark.seconds", 20));
+    String repository = System.getProperty("benchmark.repository", "memory");
+
+    ConfigurableApplicationContext context = new SpringApplicationBuilder(ChallengeApplication.class)
+            .properties("server.port=0",
+                    "challenge.repository.type=" + repository,
+                    "logging.level.com.dws.challenge=WARN",
+                    "logging.level." + TransferTrafficLoadTest.class.getName() + "=INFO")
+            .run();
+    try {
+      AccountsServiceImpl accountsService = context.getBean(AccountsServiceImpl.class);
+      for (int i = 0; i < accounts; i++) {
+        accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000)));
+      }
+      int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+      Traffic traffic = new Traffic("http://localhost:" + port + "/v1/accounts", accounts, skew, readPercent);
+      try {
+        traffic.generate(rate, WARMUP);
+        traffic.reset();
+        long sent = traffic.generate(rate, run);
+
+        Histogram reads = traffic.reads.getIntervalHistogram();
+        Histogram transfers = traffic.transfers.getIntervalHistogram();
+        Histogram all = reads.copy();
+        all.add(transfers);
+        double throughput = (double) all.getTotalCount() / run.getSeconds();
+        log.info("rate={}/s read={}% skew={} accounts={} repository={}", rate, readPercent,
+                String.format("%.2f", skew), accounts, repository);
+        log.info("sent={} completed={} dropped={} errors={} throughput={}/s", sent, all.getTotalCount(),
+                traffic.dropped.sum(), traffic.errors.sum(), Math.round(throughput));
+        log.info(summary("reads", reads));
+        log.info(summary("transfers", transfers));
+        log.info(summary("all", all));
+
+        long maxP99Millis = Long.getLong("benchmark.max-p99-ms", Long.MAX_VALUE);
+        assertThat(all.getValueAtPercentile(99) / 1000).as("p99 latency in ms").isLessThanOrEqualTo(maxP99Millis);
+        int minThroughput = Integer.getInteger("benchmark.min-throughput", 0);
+        assertThat(throughput).as("requests per second").isGreaterThanOrEqualTo(minThroughput);
+      } finally {
+        traffic.shutdown();
+      }
+    } finally {
+      context.close();
+    }
+  }
+
+  private static String summary(String name, Histogram histogram) {
+    return String.format("%-9s count=%d p50=%dus p99=%dus p999=%dus max=%dus", name, histogram.getTotalCount(),
+            histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+            histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+  }
+
+  /**
+   * Open-loop request generator: one thread paces the arrivals and sends asynchronously, responses
+   * are recorded on the client's threads.
+   */
+  private static final class Traffic {
+
+    private final String base;
+
+    private final double[] popularity;
+
+    private final int readPercent;
+
+    private final ExecutorService responses = Executors.newFixedThreadPool(4);
+
+    private final HttpClient client;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private final Recorder reads = new Recorder(3);
+
+    private final Recorder transfers = new Recorder(3);
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    private Traffic(String base, int accounts, double skew, int readPercent) {
+      this.base = base;
+      this.readPercent = readPercent;
+      this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(responses).build();
+      // Cumulative Zipf weights, rank 1 being the most popular account
+      this.popularity = new double[accounts];
+      double total = 0;
+      for (int i = 0; i < accounts; i++) {
+        total += 1 / Math.pow(i + 1, skew);
+        popularity[i] = total;
+      }
+      for (int i = 0; i < accounts; i++) {
+        popularity[i] /= total;
+      }
+    }
+
+    /**
+     * Sends {@code rate} requests per second for {@code duration}.
+     *
+     * @return requests sent
+     */
+    private long generate(int rate, Duration duration) {
+      long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+      long start = System.nanoTime();
+      long end = start + duration.toNanos();
+      long sent = 0;
+      for (long due = start; due < end; due += intervalNanos) {
+        long wait = due - System.nanoTime();
+        if (wait > 0) {
+          LockSupport.parkNanos(wait);
+        }
+        if (inFlight.get() >= MAX_IN_FLIGHT) {
+          dropped.increment();
+          continue;
+        }
+        send(due);
+        sent++;
+      }
+      awaitInFlight();
+      return sent;
+    }
+
+    private void send(long due) {
+      int from = account();
+      HttpRequest request;
+      Recorder recorder;
+      if (random.nextInt(100) < readPercent) {
+        request = HttpRequest.newBuilder(URI.create(base + "/Id-" + from)).GET().build();
+        recorder = reads;
+      } else {
+        int to = account();
+        if (to == from) {
+          to = (from + 1) % popularity.length;
+        }
+        request = HttpRequest.newBuilder(URI.create(base + "/transfer?fromAccountId=Id-" + from
+                + "&toAccountId=Id-" + to + "&amount=0.01")).POST(HttpRequest.BodyPublishers.noBody()).build();
+        recorder = transfers;
+      }
+      inFlight.incrementAndGet();
+      CompletableFuture<HttpResponse<Void>> response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+      response.whenComplete((result, failure) -> {
+        // From when the request was due, so time spent queued behind a slow server counts
+        recorder.recordValue(Math.max(0, (System.nanoTime() - due) / 1000));
+        if (failure != null || result.statusCode() >= 300) {
+          errors.increment();
+        }
+        inFlight.decrementAndGet();
+      });
+    }
+
+    private int account() {
+      int index = Arrays.binarySearch(popularity, random.nextDouble());
+      return Math.min(index >= 0 ? index : -index - 1, popularity.length - 1);
+    }
+
+    private void awaitInFlight() {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+      while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+      }
+    }
+
+    private void reset() {
+      reads.reset();
+      transfers.reset();
+      dropped.reset();
+      errors.reset();
+    }
+
+    private void shutdown() {
+      responses.shutdownNow();
+    }
+  }
+}